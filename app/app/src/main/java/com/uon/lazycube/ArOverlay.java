@@ -1,8 +1,6 @@
 package com.uon.lazycube;
 
-import static com.logic.FaceDetector.get_faces;
-import static com.logic.FaceDetector.order_face;
-import static com.uon.lazycube.Detector.detectionToPredictionList;
+import static com.uon.lazycube.Detector.detectionToPredictionBatch;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
 
@@ -26,7 +24,9 @@ import com.uon.lazycubeapp.R;
 import com.logic.CubeColour;
 import com.logic.DetectionCenter;
 import com.logic.Face;
-import com.logic.PredictionList;
+import com.logic.FaceDetector;
+import com.logic.PredictionBatch;
+import com.logic.ScanSnapshot;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -54,6 +54,12 @@ public class ArOverlay extends View implements DetectionObserver {
     // Paint to draw bitmap colour
     private Paint paint;
 
+    // Prediction batch reused for every redraw
+    private final PredictionBatch predictionBatch = new PredictionBatch();
+    // Face detector used only by this overlay, so its scale estimate
+    // isn't shared with other threads
+    private final FaceDetector faceDetector = new FaceDetector();
+
     // Interface for retrieving scanned faces
     private IFaceScanned faceScanned;
 
@@ -140,21 +146,22 @@ public class ArOverlay extends View implements DetectionObserver {
         float scaleFactor = max(widthRatio, heightRatio);
 
         // Time face detection
-        // Get list of predictions for internal logic to use
-        PredictionList predictions = detectionToPredictionList(currentResult, scaleFactor);
+        // Get batch of predictions for internal logic to use
+        PredictionBatch predictions = detectionToPredictionBatch(currentResult, scaleFactor, predictionBatch);
         // Get list of faces, an ordered list of points from top left
         // to bottom right
-        ArrayList<ArrayList<DetectionCenter>> faces = get_faces(predictions);
+        ArrayList<ArrayList<DetectionCenter>> faces = faceDetector.get_faces(predictions);
 
-        // Get the faces already scanned from adder queue
-        List<Face> scannedFaces = faceScanned.getScannedFaces();
+        // Get the faces already scanned from adder queue, as one consistent
+        // snapshot while the detector keeps adding faces
+        ScanSnapshot snapshot = faceScanned.getScanSnapshot();
         // Diff list to show what faces are different from last frame
         List<DetectionCenter> diffFaces = new ArrayList<>(currentFaces);
 
         // Loop through all detected faces
         for (ArrayList<DetectionCenter> faceList : faces) {
             // Order the points within the given face
-            ArrayList<DetectionCenter> points = order_face(faceList);
+            ArrayList<DetectionCenter> points = faceDetector.order_face(faceList);
             // Create logic face from ordered points
             Face logicFace = new Face(points);
 
@@ -207,16 +214,7 @@ public class ArOverlay extends View implements DetectionObserver {
             int timesSeen = faceSeenCount.get(faceCenter.getColour());
             // Check faces in frame have been scanned and in the adder queue list
             // of faces
-            boolean isScanned = false;
-            for(Face face : scannedFaces){
-                if (face.getCentreColour() == faceCenter.getColour()){
-                    // this if could maybe cause issues due to the fact that it checks being based
-                    // off of the centre colour which if guessed wrong will add values for the whole
-                    // face colours wrongly
-                    isScanned = true;
-                    break;
-                }
-            }
+            boolean isScanned = snapshot.isScanned(faceCenter.getColour());
             // Get the opacity of the face
             int opacity = faceOpacities.get(faceCenter.getColour());
             // Get average width/height
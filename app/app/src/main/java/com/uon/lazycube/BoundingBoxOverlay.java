@@ -1,8 +1,6 @@
 package com.uon.lazycube;
 
-import static com.logic.FaceDetector.get_faces;
-import static com.logic.FaceDetector.order_face;
-import static com.uon.lazycube.Detector.detectionToPredictionList;
+import static com.uon.lazycube.Detector.detectionToPredictionBatch;
 import static java.lang.Math.max;
 
 import android.content.Context;
@@ -15,21 +13,12 @@ import android.view.View;
 
 import androidx.annotation.NonNull;
 
-import com.logic.AdderQueue;
-import com.logic.Cube;
-import com.logic.CubeColour;
-import com.logic.CubeValidator;
 import com.logic.DetectionCenter;
-import com.logic.Face;
-import com.logic.FaceAdder;
-import com.logic.Prediction;
-import com.logic.PredictionList;
-import com.logic.Square;
-
-import org.tensorflow.lite.task.vision.detector.Detection;
+import com.logic.FaceDetector;
+import com.logic.PredictionBatch;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.List;
 
 
 /**
@@ -42,33 +31,37 @@ public class BoundingBoxOverlay extends View implements DetectionObserver {
 
     // The current detection result from the model
     private DetectionResult currentResult;
-    // Hashmap of colours, to display a color for each of the model's classes
-    private final HashMap<String, Integer> boxColours;
+    // Colours to display for each class index of the prediction batch
+    // (Orange, Green, Red, Blue, White, Yellow, Face)
+    private final int[] boxColours = {
+            Color.rgb(255,125,0),
+            Color.rgb(0,255,0),
+            Color.rgb(255,0,0),
+            Color.rgb(0,0,255),
+            Color.rgb(255,255,255),
+            Color.rgb(255,255,0),
+            Color.rgb(0,0,0)
+    };
+    // Prediction batch reused for every redraw
+    private final PredictionBatch predictionBatch = new PredictionBatch();
+    // Face detector used only by this overlay, so its scale estimate
+    // isn't shared with other threads
+    private final FaceDetector faceDetector = new FaceDetector();
+    // Box reused for drawing each prediction
+    private final RectF drawingBox = new RectF();
     // Debug info class
     DebugInfo info = DebugInfo.getInstance();
     // Whether the bounding box debug info is visible or ont
     private boolean visible = false;
 
     /**
-     * Constructs a new overlay. Initialises the boxColours hashmap with
-     * box colours
+     * Constructs a new overlay.
      * @param context Context for current application
      * @param attrs A collection of attributes, as found associated with a tag
      *              in an XML document.
      */
     public BoundingBoxOverlay(Context context, AttributeSet attrs) {
         super(context, attrs);
-
-        // Init colour hashmap
-        boxColours = new HashMap<>();
-        boxColours.put("Green", Color.rgb(0,255,0));
-        boxColours.put("Red", Color.rgb(255,0,0));
-        boxColours.put("White", Color.rgb(255,255,255));
-        boxColours.put("Blue", Color.rgb(0,0,255));
-        boxColours.put("Orange", Color.rgb(255,125,0));
-        boxColours.put("Yellow", Color.rgb(255,255,0));
-        boxColours.put("Face", Color.rgb(0,0,0));
-
     }
 
     /**
@@ -80,7 +73,7 @@ public class BoundingBoxOverlay extends View implements DetectionObserver {
      * @param y Start draw y position
      * @param paint Paint to draw text with
      */
-    private void drawMultiLineString(Canvas canvas, ArrayList<String> lines,
+    private void drawMultiLineString(Canvas canvas, List<String> lines,
                                      int x, int y, Paint paint) {
         for (String line : lines) {
             // Draw the text
@@ -114,27 +107,20 @@ public class BoundingBoxOverlay extends View implements DetectionObserver {
         float scaleFactor = max(widthRatio, heightRatio);
 
         // Time face detection
-        // Get list of predictions for internal logic to use
-        PredictionList predictions = detectionToPredictionList(currentResult, scaleFactor);
+        // Get batch of predictions for internal logic to use
+        PredictionBatch predictions = detectionToPredictionBatch(currentResult, scaleFactor, predictionBatch);
         // Get list of faces, an ordered list of points from top left
         // to bottom right
-        ArrayList<ArrayList<DetectionCenter>> faces = get_faces(predictions);
-
-        // For each object detection result
-        for (Detection result : this.currentResult.getResults()) {
-            RectF boundingBox = result.getBoundingBox();
-            // Rescale bounding box
-            RectF drawingBox = new RectF(
-                    boundingBox.left * scaleFactor,
-                    boundingBox.top * scaleFactor,
-                    boundingBox.right * scaleFactor,
-                    boundingBox.bottom * scaleFactor
-            );
-            // Get detection class (e.g. White, Green, Blue, ...)
-            String detectionClass = result.getCategories().get(0).getLabel();
-            // Create a paint corresponding to the class name
+        ArrayList<ArrayList<DetectionCenter>> faces = faceDetector.get_faces(predictions);
+
+        // For each object detection result (boxes are already rescaled)
+        int[] classes = predictions.getClasses();
+        int[] boxes = predictions.getBoxes();
+        for (int i = 0; i < predictions.getLength(); i++) {
+            drawingBox.set(boxes[i * 4], boxes[i * 4 + 1], boxes[i * 4 + 2], boxes[i * 4 + 3]);
+            // Create a paint corresponding to the detection class (e.g. White, Green, Blue, ...)
             Paint paint = new Paint();
-            paint.setColor(boxColours.get(detectionClass));
+            paint.setColor(boxColours[classes[i]]);
             paint.setStrokeWidth(8);
             paint.setStyle(Paint.Style.STROKE);
             // Draw bounding box
@@ -150,7 +136,7 @@ public class BoundingBoxOverlay extends View implements DetectionObserver {
         // For every face, display indexes of each square, from 0 to 8
         // (top left to bottom right)
         for (ArrayList<DetectionCenter> face : faces) {
-            ArrayList<DetectionCenter> points = order_face(face);
+            ArrayList<DetectionCenter> points = faceDetector.order_face(face);
             for (int i = 0; i < points.size(); i++) {
                 canvas.drawText(String.valueOf(i), points.get(i).getX(), points.get(i).getY(), paint);
             }
@@ -170,7 +156,7 @@ public class BoundingBoxOverlay extends View implements DetectionObserver {
         canvas.drawText("FPS: " + info.getFps() + " ms", 75, 450, paint);
 
         // Get a list of debug info to draw to the canvas
-        ArrayList<String> log = new ArrayList<>(info.getLogOutput());
+        List<String> log = info.getLogOutput();
         drawMultiLineString(canvas, log, 75, 500, paint);
         // Clear the log data, so next frame can populate with new data
         info.clearLog();
@@ -68,6 +68,7 @@ import com.google.android.material.snackbar.BaseTransientBottomBar;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.logic.Cube;
+import com.logic.CubeCodec;
 import com.logic.CubeColour;
 
 import java.util.HashMap;
@@ -169,7 +170,7 @@ public class CameraFragment extends Fragment {
                 // Set button on click to launch cube visualisation
                 cubeActivityBtn.setOnClickListener(v -> {
                         Intent intent = new Intent(requireActivity(), CubeActivity.class);
-                        intent.putExtra("cube", cube);
+                        intent.putExtra("cube", CubeCodec.encodeStickers(cube));
                         requireActivity().startActivity(intent);
                 });
 
@@ -226,6 +227,8 @@ public class CameraFragment extends Fragment {
                 // Update debug mode
                 boolean debugMode = prefs.getBoolean("dev_mode", false);
                 debugOverlay.setVisible(debugMode);
+                // Record detection results in debug mode, to replay them later
+                detector.setRecording(debugMode);
                 // Set scanning turbo mode
                 boolean turboMode = prefs.getBoolean("turbo_mode", false);
                 detector.setTurbo(turboMode);
@@ -257,8 +260,13 @@ public class CameraFragment extends Fragment {
          * a reset message to the user
          */
         private void resetDetection() {
-                // Reset detector
+                // Reset detector, finishing the old detector's recording and
+                // deleting its journal so the new detector doesn't resume
+                // the old scan
+                detector.setRecording(false);
+                detector.closeJournal(true);
                 initDetector();
+                setPreferences();
                 vibrateMotor(20);
                 // Notify user with a toast
                 Toast toast = Toast.makeText(requireActivity(), "Scanning Reset", Toast.LENGTH_SHORT);
@@ -679,6 +687,11 @@ public class CameraFragment extends Fragment {
                 super.onDestroy();
                 // Required method by View
                 // TODO shutdown thread?
+                // Keep the journal so the scan can be resumed
+                if (detector != null) {
+                        detector.closeJournal(false);
+                        detector.setRecording(false);
+                }
         }
 
         /**
@@ -17,6 +17,7 @@ import com.catalinjurjiu.animcubeandroid.AnimCube;
 import cs.min2phase.Search;
 import com.uon.lazycubeapp.R;
 import com.logic.Cube;
+import com.logic.CubeCodec;
 import com.airbnb.lottie.LottieAnimationView;
 
 import java.util.Timer;
@@ -86,7 +87,7 @@ public class CubeActivity extends LocaleActivity {
         //Get AnimationView
         animationView = findViewById(R.id.complete_animation);
         // Get the completed scanned cube
-        Cube logicCube = (Cube) getIntent().getSerializableExtra("cube");
+        Cube logicCube = CubeCodec.decodeStickers(getIntent().getByteArrayExtra("cube"));
 
         // Get the cube solver and get solution sequence
 
@@ -1,31 +1,35 @@
 package com.uon.lazycube;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Class for storing debug info of different execution
- * times for stages within the detection pipeline
+ * times for stages within the detection pipeline.
+ * <br>
+ * Written by the detection thread and read by the UI thread. The log is
+ * copy-on-write: every change publishes a new unmodifiable list, so readers
+ * never lock and never see a list being changed.
  */
 public class DebugInfo {
     // Time (in ms) for TFL inference
-    private long inferenceTime = 0;
+    private volatile long inferenceTime = 0;
     // Time (in ms) for face detection and ordering
-    private long faceDetectionTime = 0;
+    private volatile long faceDetectionTime = 0;
     // Time (in ms) for adding a face to the internal cube rep.
-    private long faceAdderTime = 0;
-    // Debug log output
-    private final ArrayList<String> logOutput = new ArrayList<>();
+    private volatile long faceAdderTime = 0;
+    // Debug log output, replaced rather than changed
+    private volatile List<String> logOutput = Collections.emptyList();
 
     // Singleton object
-    private static DebugInfo instance;
+    private static final DebugInfo instance = new DebugInfo();
 
     /**
      * Get the singleton object for debug info
      * @return Get the singleton instance
      */
     public static DebugInfo getInstance() {
-        if (instance == null)
-            instance = new DebugInfo();
         return instance;
     }
 
@@ -41,7 +45,11 @@ public class DebugInfo {
         return faceAdderTime;
     }
 
-    public ArrayList<String> getLogOutput() {return logOutput;};
+    /**
+     * Get the current debug log output
+     * @return Unmodifiable list of log lines, which never changes
+     */
+    public List<String> getLogOutput() {return logOutput;}
 
     /**
      * Get the fps for scanning
@@ -68,14 +76,17 @@ public class DebugInfo {
      * Add debug log output to display to the screen
      * @param output Text to display on a line in the log output
      */
-    public void addLog(String output) {
-        logOutput.add(output);
+    public synchronized void addLog(String output) {
+        List<String> log = new ArrayList<>(logOutput.size() + 1);
+        log.addAll(logOutput);
+        log.add(output);
+        logOutput = Collections.unmodifiableList(log);
     }
 
     /**
      * Removes all log data
      */
-    public void clearLog() {
-        logOutput.clear();
+    public synchronized void clearLog() {
+        logOutput = Collections.emptyList();
     }
 }
@@ -1,32 +1,32 @@
 package com.uon.lazycube;
 
-import static com.logic.FaceDetector.get_faces;
-import static com.logic.FaceDetector.order_face;
-
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.RectF;
 
 import com.logic.AdderQueue;
 import com.logic.Cube;
-import com.logic.CubeColour;
-import com.logic.CubeValidator;
-import com.logic.DetectionCenter;
+import com.logic.CubeState;
 import com.logic.Face;
-import com.logic.Prediction;
-import com.logic.PredictionList;
-import com.logic.Square;
+import com.logic.FrameLog;
+import com.logic.PredictionBatch;
+import com.logic.ScanEvent;
+import com.logic.ScanJournal;
+import com.logic.ScanSession;
+import com.logic.ScanSnapshot;
 
 import org.tensorflow.lite.support.image.ImageProcessor;
 import org.tensorflow.lite.support.image.TensorImage;
 import org.tensorflow.lite.support.image.ops.Rot90Op;
+import org.tensorflow.lite.support.label.Category;
 import org.tensorflow.lite.task.core.BaseOptions;
 import org.tensorflow.lite.task.vision.detector.Detection;
 import org.tensorflow.lite.task.vision.detector.ObjectDetector;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
 /**
@@ -44,10 +44,15 @@ public class Detector implements IFaceScanned{
     private final int NUM_THREADS = 2;
     // Number of max results to detect
     private final int NUM_RESULTS = 30;
-    // Time (in ms) until a complete fail message appears
-    private final long COMPLETE_FAIL_LENGTH = 15000;
-    // Time (in ms) until cube rotation hint is shown
-    private final long ROTATE_HINT_LENGTH = 5000;
+    // Maps the model's class indexes to the CubeColour ordinals used by
+    // the logic module (index 6 is a whole face)
+    private static final int[] DETECTION_CLASS_INDEXES = {3, 1, 0, 2, 4, 5, 6};
+    // Name of the file the scan session is journalled to, so it can be
+    // resumed if the app is killed
+    private static final String JOURNAL_FILE = "scan.journal";
+    // Name of the file detection results are recorded to in developer
+    // mode, so the session can be replayed off the device
+    private static final String FRAME_LOG_FILE = "scan.frames";
 
     // TFL object detection object
     private ObjectDetector objectDetector;
@@ -60,20 +65,20 @@ public class Detector implements IFaceScanned{
     // has been found
     private DetectionProgress detectionProgressCallback;
 
+    // Prediction batch reused for every analysed frame
+    private final PredictionBatch predictionBatch = new PredictionBatch(NUM_RESULTS);
     // Adder queue to submit scanned faces to the face adder
-    private final AdderQueue adderQueue = new AdderQueue();
-    // Whether the correct internal cube config has been found
-    private boolean completed = false;
-    // Time when first fail message was sent
-    private long failTime = 0;
-    // Time since last successful face scan
-    private long lastFaceScanTime = 0;
-    // Last length of the scanned face list
-    private int lastFaceListLength = -1;
-    // Whether a complete fail has been made
-    private boolean failed = false;
-    // Used to count how many times a face is failed to be added
-    private final HashMap<CubeColour, Integer> failCount = new HashMap<>();
+    private final AdderQueue adderQueue;
+    // Scan session finding faces in each frame and adding them to the
+    // adder queue
+    private final ScanSession scanSession;
+    // File the scan session is journalled to
+    private final File journalFile;
+    // Journal recording the scan session, null if it couldn't be opened
+    // or has been closed
+    private volatile ScanJournal journal;
+    // Recorder of every frame's detection results, null if not recording
+    private volatile FrameLog.Recorder frameRecorder;
 
     /**
      * Constructs a new Detector object for TFL object detection using the
@@ -84,6 +89,80 @@ public class Detector implements IFaceScanned{
         this.context = context;
         // Initialise TFL detector object
         initDetector();
+        // Resume the last scan session, if it wasn't completed
+        journalFile = new File(context.getFilesDir(), JOURNAL_FILE);
+        adderQueue = recoverQueue();
+        scanSession = new ScanSession(adderQueue, System::currentTimeMillis);
+        scanSession.addListener(this::onScanEvent);
+        try {
+            journal = new ScanJournal(journalFile);
+            adderQueue.setJournal(journal);
+        } catch (IOException e) {
+            System.out.println("Unable to open scan journal");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Rebuilds the adder queue from the journal of the last scan session
+     * @return Recovered adder queue, or a new one if there is no session
+     * to resume
+     */
+    private AdderQueue recoverQueue() {
+        try {
+            return ScanJournal.recover(journalFile);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Unable to recover scan journal");
+            e.printStackTrace();
+            return new AdderQueue();
+        }
+    }
+
+    /**
+     * Stops journalling the scan session. Safe to call while frames are
+     * being detected, as a closed journal drops any further records
+     * @param delete Whether to delete the journal, so the session isn't
+     *               resumed next time
+     */
+    public void closeJournal(boolean delete) {
+        ScanJournal journal = this.journal;
+        if (journal == null)
+            return;
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.out.println("Unable to close scan journal");
+            e.printStackTrace();
+        }
+        this.journal = null;
+        if (delete && !journalFile.delete())
+            System.out.println("Unable to delete scan journal");
+    }
+
+    /**
+     * Starts or stops recording the detection results of every frame to a
+     * {@link FrameLog}, replacing the last recording
+     * @param record Whether to record frames
+     */
+    public void setRecording(boolean record) {
+        FrameLog.Recorder recorder = frameRecorder;
+        if (record && recorder == null) {
+            try {
+                File file = new File(context.getFilesDir(), FRAME_LOG_FILE);
+                frameRecorder = new FrameLog.Recorder(new FileOutputStream(file));
+            } catch (IOException e) {
+                System.out.println("Unable to open frame log");
+                e.printStackTrace();
+            }
+        } else if (!record && recorder != null) {
+            frameRecorder = null;
+            try {
+                recorder.close();
+            } catch (IOException e) {
+                System.out.println("Unable to close frame log");
+                e.printStackTrace();
+            }
+        }
     }
 
     /**
@@ -140,198 +219,108 @@ public class Detector implements IFaceScanned{
     }
 
     /**
-     * Converts TFL detection results to a PredictionList
-     * class compatible with LazyCubeLogic code.
+     * Converts TFL detection results to a PredictionBatch
+     * compatible with LazyCubeLogic code, filling the given batch in place
+     * so it can be reused from frame to frame.
      * <br> Resizes bounding boxes to the correct size for
      * the phone's screen, given a scaling factor
      *
      * @param results TFL detection result object
      * @param factor Factor for rescaling bounding boxes by
-     * @return PredictionList object to use for internal cube logic
+     * @param batch PredictionBatch to fill, replacing its current contents
+     * @return The filled PredictionBatch to use for internal cube logic
      */
-    public static PredictionList detectionToPredictionList(DetectionResult results, float factor) {
-        final int[] detectionClassIndexes = {3, 1, 0, 2, 4, 5, 6};
-
-        ArrayList<Prediction> predictions = new ArrayList<>();
-        // For every TFL result, add to the prediction list
+    public static PredictionBatch detectionToPredictionBatch(DetectionResult results, float factor,
+                                                            PredictionBatch batch) {
+        batch.clear();
+        // For every TFL result, add to the prediction batch
         for (Detection result : results.getResults()) {
             // Get bounding box and resize to be the correct size for the phone
             RectF boundingBox = result.getBoundingBox();
-            int[] box = {(int) (boundingBox.left * factor),
+            Category category = result.getCategories().get(0);
+            batch.add(DETECTION_CLASS_INDEXES[category.getIndex()],
+                    (int) (boundingBox.left * factor),
                     (int) (boundingBox.top * factor),
                     (int) (boundingBox.right * factor),
-                    (int) (boundingBox.bottom * factor)};
-
-            int detectionIndex = result.getCategories().get(0).getIndex();
-            int classIndex = detectionClassIndexes[detectionIndex];
-            // TODO scores/prediction percentages not used
-            Prediction prediction = new Prediction(
-                    (int) (result.getCategories().get(0).getScore() * 100),
-                    box,
-                    classIndex
-            );
-            predictions.add(prediction);
+                    (int) (boundingBox.bottom * factor),
+                    category.getScore());
         }
-        return new PredictionList(predictions);
+        return batch;
     }
 
     /**
-     * Add detection results into the internal cube via the adder queue,
-     * if the specific conditions are met
+     * Add detection results into the internal cube via the scan session,
+     * which notifies the progress callback of its events
      * @param detectionResult Detection results to add
      */
     private void addResults(DetectionResult detectionResult) {
-        long start = System.currentTimeMillis();
-        // Get list of predictions for internal logic to use
-        PredictionList predictions = detectionToPredictionList(detectionResult, 1.0f);
-        // Get list of faces, an ordered list of points from top left
-        // to bottom right
-        ArrayList<ArrayList<DetectionCenter>> faces = get_faces(predictions);
-        // Set face detection time
+        // Get batch of predictions for internal logic to use
+        PredictionBatch predictions = detectionToPredictionBatch(detectionResult, 1.0f, predictionBatch);
+        long time = System.currentTimeMillis();
+        recordFrame(predictions, time);
+        scanSession.addFrame(predictions, time);
+        // Set face detection and face adder time metrics to debug info
         DebugInfo info = DebugInfo.getInstance();
-        info.setFaceDetectionTime(System.currentTimeMillis() - start);
-
-        // For every face, display indexes of each square, from 0 to 8
-        // (top left to bottom right)
-        for (ArrayList<DetectionCenter> face : faces) {
-            ArrayList<DetectionCenter> points = order_face(face);
-            // Create logic face from ordered points
-            Face logicFace = new Face(points);
-            // Add to adder queue
-            adderQueue.addElement(logicFace);
-        }
-
-        start = System.currentTimeMillis();
-        // Add faces to the cube that the queue is "confident" enough to be correct
-        List<Face> failedFaces = adderQueue.addCandidateFaces();
-        // Set face adder time metric to debug info
-        info.setFaceAdderTime(System.currentTimeMillis() - start);
-
-        // If there is an unfixable parity issue
-        if (failedFaces == null) {
-            detectionProgressCallback.notifyFail();
-            return;
-        }
-
-        // Notify scanning fragment of faces failed to be added to
-        // internal cube representation, needing to be rescanned
-        for (Face face : failedFaces) {
-            detectionProgressCallback.notifyFaceRescan(face.getCentreColour());
-        }
-
-        // Get current working internal cube
-        Cube internalCube = adderQueue.getCube();
-        // Update debug info with current scanned faces, failed faces and the cube
+        info.setFaceDetectionTime(scanSession.getFaceDetectionTime());
+        info.setFaceAdderTime(scanSession.getFaceAdderTime());
+        // Update debug info with current scanned faces and the cube
         debugShowFaces("Scanned: ", adderQueue.getFaceQueue(), info);
-        debugShowFaces("FAILED: ", failedFaces, info);
-        debugShowCube(internalCube, info);
-
-
-        // If new face added to adder queue
-        if (lastFaceListLength != adderQueue.getQueueLength()) {
-            lastFaceListLength = adderQueue.getQueueLength();
-            lastFaceScanTime = System.currentTimeMillis();
-
-            // Update that a new face has been scanned
-            if (adderQueue.getQueueLength() != 0) {
-                CubeColour lastScanned = getLastScannedFace();
-                detectionProgressCallback.notifyFaceScan(lastScanned);
-            }
-        }
-
-        long scanTimeDelta = System.currentTimeMillis() - lastFaceScanTime;
-        long failTimeDelta = System.currentTimeMillis() - failTime;
-
-        // If the time since last new scan is long enough
-        if (scanTimeDelta > ROTATE_HINT_LENGTH && failTime == 0) {
-            // Notify to display rotation hint
-            detectionProgressCallback.notifyProgress(null, ScanProgress.ROTATE_HINT);
-        } else {
-            // If new face scanned, notify to hide rotation hint
-            detectionProgressCallback.notifyProgress(null, ScanProgress.ROTATE_HINT_STOP);
-        }
-
-        // If faces failed to be added to the cube representation (e.g. some
-        // scanning error)
-        if (failedFaces.size() > 0 && failTime == 0) {
-            // Notify of "soft" scan error
-            detectionProgressCallback.notifyProgress(null, ScanProgress.FAIL);
-
-            // Resets the times seen on faces that failed to enter >= FAIL_THRESH times
-            resetFaces(failedFaces);
-
-            failTime = System.currentTimeMillis();
-        }
-        // If faces failed to be added, but wasn't fixed for x seconds (e.g. 20s)
-        else if (failTimeDelta > COMPLETE_FAIL_LENGTH && !failed && failTime != 0) {
-            // Notify suggestion of complete fail
-            detectionProgressCallback.notifyProgress(null, ScanProgress.COMPLETE_FAIL);
-            //resetFaces(CubeColour.values());
-            failed = true;
-        }
-
-        // If the face adder cube is value
-        // If the cube is complete (no nulls) and the cube is value
-        if (internalCube.isComplete()
-                && new CubeValidator(internalCube).isCubeValid()) {
-            // Set detection as completed
-            completed = true;
-            // Invoke call back to camera activity
-            detectionProgressCallback.notifyProgress(internalCube, ScanProgress.COMPLETED);
-        }
+        debugShowCube(scanSession.getCube(), info);
     }
 
     /**
-     * Notifies a "face rescan" for each face failed to be added
-     * to the internal cube that have failed to be specified number
-     * of times
-     * @param failedFaces Failed faces added to the internal cube
+     * Records a frame's detection results if recording, stopping recording
+     * if the frame can't be written
+     * @param predictions Detection results of the frame
+     * @param time Time the frame was captured, in milliseconds
      */
-    private void resetFaces(List<Face> failedFaces){
-        for (Face face : failedFaces){
-            CubeColour colour = face.getCentreColour();
-            // Update failed count for the face
-            if(failCount.containsKey(colour)){
-                failCount.replace(colour, failCount.get(colour) + 1);
-            }
-            else {
-                failCount.put(colour, 1);
-            }
-            // If already failed before, notify to rescan the face again
-            if(failCount.get(colour) >= 1){
-                System.out.println("RESET FACE: " + colour);
-                detectionProgressCallback.notifyFaceRescan(colour);
-                adderQueue.resetFace(colour);
-                failCount.replace(colour, 0);
-            }
-        }
-    }
-    private void resetFaces(CubeColour[] colours){
-        for (CubeColour colour : colours){
-            if(failCount.containsKey(colour)){
-                failCount.replace(colour, failCount.get(colour) + 1);
-            }
-            else {
-                failCount.put(colour, 1);
-            }
-            if(failCount.get(colour) >= 1){
-                System.out.println("RESET FACE: " + colour);
-                detectionProgressCallback.notifyFaceRescan(colour);
-                adderQueue.resetFace(colour);
-                failCount.replace(colour, 0);
-            }
+    private void recordFrame(PredictionBatch predictions, long time) {
+        FrameLog.Recorder recorder = frameRecorder;
+        if (recorder == null)
+            return;
+        try {
+            recorder.record(predictions, time);
+        } catch (IOException e) {
+            System.out.println("Unable to record frame");
+            e.printStackTrace();
+            setRecording(false);
         }
     }
 
-
     /**
-     * Gets the last face scanned colour put in the adder buffer
-     * @return Center colour of last face scanned
+     * Passes an event of the scan session on to the progress callback
+     * @param event Event emitted by the scan session
      */
-    private CubeColour getLastScannedFace() {
-        Face lastFaceScanned = adderQueue.getFaceQueue().get(adderQueue.getQueueLength() - 1);
-        CubeColour lastScanned = lastFaceScanned.getCentreColour();
-        return lastScanned;
+    private void onScanEvent(ScanEvent event) {
+        switch (event.getType()) {
+            case FACE_CONFIRMED:
+                detectionProgressCallback.notifyFaceScan(event.getColour());
+                break;
+            case RESCAN_NEEDED:
+                DebugInfo.getInstance().addLog("FAILED: " + event.getColour());
+                detectionProgressCallback.notifyFaceRescan(event.getColour());
+                break;
+            case ROTATE_HINT:
+                detectionProgressCallback.notifyProgress(null, ScanProgress.ROTATE_HINT);
+                break;
+            case ROTATE_HINT_STOP:
+                detectionProgressCallback.notifyProgress(null, ScanProgress.ROTATE_HINT_STOP);
+                break;
+            case SCAN_FAIL:
+                detectionProgressCallback.notifyProgress(null, ScanProgress.FAIL);
+                break;
+            case COMPLETE_FAIL:
+                detectionProgressCallback.notifyProgress(null, ScanProgress.COMPLETE_FAIL);
+                break;
+            case COMPLETED:
+                // The session is finished, so don't resume it
+                closeJournal(true);
+                detectionProgressCallback.notifyProgress(event.getCube(), ScanProgress.COMPLETED);
+                break;
+            case PARITY_FAIL:
+                detectionProgressCallback.notifyFail();
+                break;
+        }
     }
 
     /**
@@ -354,17 +343,16 @@ public class Detector implements IFaceScanned{
      * @param info DebugInfo object instance
      */
     private void debugShowCube(Cube cube, DebugInfo info) {
-        String line = "";
-        int index = 0;
+        CubeState state = cube.getState();
+        StringBuilder line = new StringBuilder();
         // For each colour in 54 length
-        for (Square square : cube.getLongArray()) {
+        for (int index = 0; index < 54; index++) {
             // Get first character in each colour
-            line += square.getColour().toString().charAt(0) + " ";
-            index++;
+            line.append(state.getColour(index).name().charAt(0)).append(' ');
             // Add new line every 9 colours (a face)
-            if (index % 9 == 0) {
-                info.addLog(line);
-                line = "";
+            if ((index + 1) % 9 == 0) {
+                info.addLog(line.toString());
+                line.setLength(0);
             }
         }
     }
@@ -375,7 +363,7 @@ public class Detector implements IFaceScanned{
      */
     public void detect(Bitmap bitmap) {
         // Stop detection when the config has been found
-        if (completed)
+        if (scanSession.isCompleted())
             return;
         long start = System.currentTimeMillis();
         // Rotate image for processing
@@ -404,7 +392,7 @@ public class Detector implements IFaceScanned{
     }
 
     @Override
-    public List<Face> getScannedFaces() {
-        return adderQueue.getFaceQueue();
+    public ScanSnapshot getScanSnapshot() {
+        return adderQueue.getSnapshot();
     }
 }
@@ -1,8 +1,6 @@
 package com.uon.lazycube;
 
-import com.logic.Face;
-
-import java.util.List;
+import com.logic.ScanSnapshot;
 
 /**
  * Interface used as a callback to retrieve scanned
@@ -10,8 +8,9 @@ import java.util.List;
  */
 public interface IFaceScanned {
      /**
-      * Getter for retrieving a list of already scanned faces
-      * @return List of scanned faces
+      * Getter for retrieving the latest snapshot of the scan, including the
+      * already scanned faces. Safe to call from any thread
+      * @return Latest scan snapshot
       */
-     List<Face> getScannedFaces();
+     ScanSnapshot getScanSnapshot();
 }
@@ -1,7 +1,11 @@
 package com.logic;
 
-import static com.logic.PermutationUtil.permute;
-
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -12,44 +16,78 @@ import java.util.List;
  * @description Stores cube faces within an internal buffer, until all 6 faces
  * of a cube are added, where the {@link FaceAdder} will attempt to combine
  * them into a valid cube representation. If a face is added twice, the
- * confidence values of each colour are updated.
+ * confidence values of each colour are updated. Once 5 faces are added, the
+ * last face is filled in from their pieces where it can only be one thing.
  */
 public class AdderQueue {
     // Threshold for the number of correct squares to
-    // consider a rotation of a face to be the same
-    // as a face already in the cube
+    // consider a rotation of a face to be another sighting
+    // of a face already in the queue, rather than a new hypothesis
     private static final int ROTATION_THRESH = 7;
-    // Average number of frames a face's colours
-    // have to be seen for to try to add the face to the internal cube
-    private final int AVERAGE_FRAME_THRESH = 10;
-    // the percentage of the most times seen does the second need to be to try swapping it
-    private static final double SWAP_THRESH = 0.3;
-
-    // Current threshold for average number of frames needed to add
-    // a face to the internal cube
-    private int currentFrameThresh = AVERAGE_FRAME_THRESH;
+    // Maximum number of competing faces kept in the queue for each
+    // centre colour
+    private static final int MAX_HYPOTHESES = 3;
+    // Number of frames recorded in the journal between snapshots
+    public static final int SNAPSHOT_INTERVAL = 256;
+    // Version of the format written by saveState
+    private static final int STATE_FORMAT = 1;
+    // Number of frames a face's colours have to be seen for to
+    // add the face to the internal cube in turbo mode
+    private static final int TURBO_FRAME_THRESH = 1;
+    // Default fraction of a square's confidence lost each frame it is seen,
+    // so faces are confirmed and corrected from the last few dozen frames
+    public static final double DEFAULT_CONFIDENCE_DECAY = 1.0 / 32;
+
+    // Whether faces are added after a fixed number of frames, rather than
+    // once their colours are settled
+    private boolean turbo = false;
+    // Test deciding when every colour of a face is settled
+    private SequentialConfirmation confirmation = new SequentialConfirmation();
+    // Confidence decay rate of the faces being scanned this session
+    private double confidenceDecay = DEFAULT_CONFIDENCE_DECAY;
 
     // Face adder to add faces to the internal cube
     private FaceAdder faceAdder = new FaceAdder();
-
-    // Queue used store newly added faces, who have been
-    // scanned < currentFrameThresh number of frames
+    // Finds the pieces causing a parity issue, and face rotations fixing it
+    private final CubieDiagnosis diagnosis = new CubieDiagnosis();
+    // Rebuilds the most likely valid cube from the squares' confidence in
+    // the background
+    private final CandidateSearch search = new CandidateSearch();
+    // Search running in the background, or null if there isn't one
+    private CandidateSearch.Task pendingSearch;
+    // Faces that failed to be added when the search was started, reported
+    // if it fails, or null if it was started for a parity issue
+    private List<Face> searchFailedFaces;
+    // Fills in the last face from the pieces of the other five
+    private final CubeCompletion completion = new CubeCompletion();
+
+    // Queue used to store every face seen, along with the
+    // confidence of each of its squares' colours. Faces seen with the
+    // same centre colour compete, and only the one with the most evidence
+    // is added to the faceBuffer
     private final List<Face> faceQueue = new ArrayList<>();
+    // Faces in faceQueue by their current signature, to find a face seen
+    // again in any rotation with one lookup. Faces whose colours come to
+    // read the same share a signature, so each is kept under it
+    private final HashMap<Long, List<Face>> signatureIndex = new HashMap<>();
     // Waiting buffer for "confident" faces to be added to the internal cube,
     // once all 6 faces have been scanned
     private final List<Face> faceBuffer = new ArrayList<>();
 
-    // Buffer to store whether a face has been added or not
-    private final HashMap<CubeColour, Boolean> inBuffer ;
+    // Latest published view of the scan, read by other threads
+    private volatile ScanSnapshot snapshot = ScanSnapshot.EMPTY;
+    // Version of the last published snapshot
+    private long snapshotVersion = 0;
+
+    // Journal recording the session, or null if it isn't recorded
+    private ScanJournal journal;
+    // Frames recorded since the last snapshot in the journal
+    private int framesSinceSnapshot = 0;
 
     /**
      * Initialises a new AdderQueue
      */
     public AdderQueue() {
-        inBuffer = new HashMap<>();
-        for (CubeColour colour : CubeColour.values()) {
-            inBuffer.put(colour, false);
-        }
     }
 
     /**
@@ -62,197 +100,574 @@ public class AdderQueue {
 
     /**
      * Get face buffer that will be added to the internal
-     * cube representation with {@code AdderQueue.flushBufferToAdder()}
+     * cube representation with {@code AdderQueue.flushBufferToAdder()}.
+     * Only safe to use on the thread adding faces, other threads should use
+     * {@link #getSnapshot()}
      * @return List of faces in the buffer
      */
     public List<Face> getFaceQueue() {
         return faceBuffer;
     }
 
+    /**
+     * Gets the latest published view of the scan. Safe to call from any
+     * thread, the snapshot never changes once published
+     * @return Latest scan snapshot
+     */
+    public ScanSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Publishes a new snapshot of the confirmed faces, the progress of every
+     * face being scanned and the current cube
+     */
+    private void publishSnapshot() {
+        int[] progress = new int[CubeColour.values().length];
+        for (Face face : faceQueue) {
+            int colour = face.getCentreColour().ordinal();
+            progress[colour] = Math.max(progress[colour], face.getMinTimesSeen());
+        }
+        snapshot = new ScanSnapshot(++snapshotVersion, faceBuffer, progress, faceAdder.getCube());
+        if (journal != null && framesSinceSnapshot >= SNAPSHOT_INTERVAL) {
+            journal.recordSnapshot(saveState());
+            framesSinceSnapshot = 0;
+        }
+    }
+
+    /**
+     * Sets the journal to record this session in, so it can be recovered with
+     * {@link ScanJournal#recover(java.io.File)}. A snapshot of the queue is
+     * recorded straight away, followed by every face, reset and setting change,
+     * with another snapshot every {@value #SNAPSHOT_INTERVAL} frames
+     * @param journal Journal to record in, or {@code null} to stop recording
+     */
+    public void setJournal(ScanJournal journal) {
+        this.journal = journal;
+        if (journal != null) {
+            journal.recordSnapshot(saveState());
+            framesSinceSnapshot = 0;
+        }
+    }
+
+    /**
+     * Encodes the whole state of the queue: its settings, every face being
+     * scanned with the confidence of each of its squares, the faces in the
+     * buffer and the internal cube
+     * @return Encoded state
+     */
+    byte[] saveState() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        try {
+            output.writeByte(STATE_FORMAT);
+            output.writeBoolean(turbo);
+            output.writeDouble(confidenceDecay);
+            output.writeDouble(confirmation.getErrorRate());
+            output.writeDouble(confirmation.getAccuracy());
+            output.writeLong(snapshotVersion);
+            ScanJournal.writeVarint(output, faceQueue.size());
+            for (Face face : faceQueue) {
+                CubeState state = face.getState();
+                ColourHistogram confidence = state.getConfidence();
+                for (int i = 0; i < 9; i++) {
+                    int index = face.getOffset() + i;
+                    output.writeByte(state.getColours()[index]);
+                    for (int colour = 0; colour < ColourHistogram.COLOUR_COUNT; colour++) {
+                        ScanJournal.writeVarint(output, confidence.getStored(index, colour));
+                    }
+                }
+            }
+            ScanJournal.writeVarint(output, faceBuffer.size());
+            for (Face face : faceBuffer) {
+                ScanJournal.writeVarint(output, faceQueue.indexOf(face));
+            }
+            output.write(CubeCodec.encodeStickers(faceAdder.getCube()));
+        } catch (IOException e) {
+            // Not thrown when writing to memory
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Replaces the whole state of the queue with one from {@link #saveState()}
+     * @param data Encoded state
+     * @throws IllegalArgumentException If the state can't be decoded
+     */
+    void restoreState(byte[] data) {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+        try {
+            int format = input.readUnsignedByte();
+            if (format != STATE_FORMAT)
+                throw new IllegalArgumentException("Unknown state format " + format);
+            turbo = input.readBoolean();
+            confidenceDecay = input.readDouble();
+            confirmation = new SequentialConfirmation(input.readDouble(), input.readDouble());
+            snapshotVersion = input.readLong();
+            cancelSearch();
+            faceQueue.clear();
+            signatureIndex.clear();
+            faceBuffer.clear();
+            int faces = ScanJournal.readVarint(input);
+            for (int f = 0; f < faces; f++) {
+                Face face = new Face();
+                CubeState state = face.getState();
+                state.getConfidence().setDecay(confidenceDecay);
+                for (int i = 0; i < 9; i++) {
+                    int colour = input.readUnsignedByte();
+                    for (int c = 0; c < ColourHistogram.COLOUR_COUNT; c++) {
+                        state.getConfidence().setStored(i, c, ScanJournal.readVarint(input));
+                    }
+                    state.setColourValue(i, CubeState.COLOURS[colour]);
+                }
+                faceQueue.add(face);
+                indexFace(face);
+            }
+            int buffered = ScanJournal.readVarint(input);
+            for (int i = 0; i < buffered; i++) {
+                faceBuffer.add(faceQueue.get(ScanJournal.readVarint(input)));
+            }
+            byte[] stickers = new byte[CubeCodec.STICKER_BYTES];
+            input.readFully(stickers);
+            faceAdder = new FaceAdder(CubeCodec.decodeStickers(stickers));
+        } catch (IOException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid queue state", e);
+        }
+        publishSnapshot();
+    }
+
     /**
      * Adds a Face object to the {@code faceQueue}. If the {@code faceQueue} already contains
-     * an element with the same center color as the Face object, the Face object at the
-     * specified index in the {@code faceQueue} is updated using the
-     * {@code AdderQueue.addFaceInstance} method.
+     * the same face, possibly rotated, it is found through its signature (see
+     * {@link FaceSignature}) and updated using the {@code AdderQueue.addFaceInstance} method.
+     * Otherwise the face is matched to the stored face it differs from by the fewest squares
+     * (see {@code AdderQueue.findMatch}), so a face with a misread centre still updates the
+     * right face. A face that matches nothing is added as a new hypothesis, competing with
+     * any other faces with the same centre colour (see {@code AdderQueue.promote}).
      *
      * @param face The Face object to be added to the {@code faceQueue}
      */
     public void addElement(Face face){
-        boolean inList = false;
-        int index = 0;
-        // Check if face is in face queue
-        for(Face faceLoop : faceQueue){
-            if (face.getCentreColour() == faceLoop.getCentreColour()){
-                // this "if statement" could maybe cause issues due to the fact that it
-                // checks being based off of the centre colour which if guessed
-                // wrong will add values for the whole face colours wrongly
-                inList = true;
-                break;
+        if (journal != null) {
+            journal.recordFrame(face);
+            framesSinceSnapshot++;
+        }
+        int rotation = FaceSignature.canonicalRotation(face);
+        Face queueFace = findIndexed(FaceSignature.pack(face, rotation));
+        if (queueFace != null) {
+            // Both faces read the same at their canonical rotations, so the
+            // difference between them lines the new face up with the stored one
+            rotation = (rotation - FaceSignature.canonicalRotation(queueFace) + Face.ROTATIONS) % Face.ROTATIONS;
+        } else {
+            int match = findMatch(face);
+            if (match != -1) {
+                queueFace = faceQueue.get(match / Face.ROTATIONS);
+                rotation = match % Face.ROTATIONS;
             }
-            index++;
         }
+
         // If the face is already in the queue, update face colours
-        if (inList) {
-            face = fixRotation(face, index);
-            addFaceInstance(face, index);
+        if (queueFace != null) {
+            long signature = FaceSignature.signature(queueFace);
+            addFaceInstance(face, rotation, queueFace);
+            long newSignature = FaceSignature.signature(queueFace);
+            if (newSignature != signature) {
+                unindexFace(queueFace, signature);
+                indexFace(queueFace);
+            }
         }
         else {
+            face.getState().getConfidence().setDecay(confidenceDecay);
             faceQueue.add(face);
+            indexFace(face);
+            pruneHypotheses(face.getCentreColour());
+            queueFace = face;
         }
 
-        // If the face has been detected for num frames > currentFrameThresh,
-        // add to the faceBuffer
-        Face queueFace = faceQueue.get(index);
-        CubeColour queueFaceColour = queueFace.getCentreColour();
-        if (queueFace.getMinTimesSeen() > currentFrameThresh &&
-                !inBuffer.get(queueFaceColour)) {
-            faceBuffer.add(queueFace);
-            inBuffer.put(queueFaceColour, true);
+        // If the face's colours are settled, add to the faceBuffer
+        promote(queueFace);
+    }
+
+    /**
+     * @param signature Signature of a face (see {@link FaceSignature})
+     * @return Face in the {@code faceQueue} with the signature and the most
+     *         evidence (see {@code AdderQueue.getEvidence}), or {@code null}
+     *         if there are none
+     */
+    private Face findIndexed(long signature) {
+        List<Face> faces = signatureIndex.get(signature);
+        if (faces == null)
+            return null;
+        Face strongest = faces.get(0);
+        for (int i = 1; i < faces.size(); i++) {
+            if (getEvidence(faces.get(i)) > getEvidence(strongest))
+                strongest = faces.get(i);
         }
+        return strongest;
     }
 
     /**
-     * Takes a face and the index decided to check against in this object's {@code faceQueue} and
-     * will rotate it until it is out of rotations or there are enough squares that match
-     * the new face's (based on ROTATIONTHRESH). If this threshold is not reached this function
-     * will use the most similar rotation it found
-     * @param face - New face that will be rotated
-     * @param index - index in {@code faceQueue} of face to check against
-     * @return The new correctly rotated face
+     * Adds a face in the {@code faceQueue} to the {@code signatureIndex},
+     * under its current signature
+     * @param face Face to index
      */
-    private Face fixRotation(Face face, int index){
-        int count = 0;
-        int countStore = 0;
-        int indexStore = 0;
-        // outer loop for each rotation
-        for(int j = 0; j < 4; j++){
-            // inner loop for each square in the rotation
-            for (int i = 0; i < 9; i++){
-                if(compareSquare(face.getSquare(i), faceQueue.get(index).getSquare(i))){
-                    count++;
-                }
+    private void indexFace(Face face) {
+        signatureIndex.computeIfAbsent(FaceSignature.signature(face), key -> new ArrayList<>(1)).add(face);
+    }
+
+    /**
+     * Removes a face from the {@code signatureIndex}, leaving any other faces
+     * with the same signature
+     * @param face Face to remove
+     * @param signature Signature the face was indexed under
+     */
+    private void unindexFace(Face face, long signature) {
+        List<Face> faces = signatureIndex.get(signature);
+        if (faces == null)
+            return;
+        faces.remove(face);
+        if (faces.isEmpty())
+            signatureIndex.remove(signature);
+    }
+
+    /**
+     * @param face Face in the {@code faceQueue}
+     * @return Whether the face can be found in the {@code signatureIndex}
+     *         under its current signature
+     */
+    boolean isIndexed(Face face) {
+        List<Face> faces = signatureIndex.get(FaceSignature.signature(face));
+        return faces != null && faces.contains(face);
+    }
+
+    /**
+     * Adds a face to the {@code faceBuffer} if it is confirmed and has more
+     * evidence than any other face in the {@code faceQueue} with the same
+     * centre colour. A weaker face with that centre colour already in the
+     * buffer is replaced by it
+     * @param face Face in the {@code faceQueue} that was just updated
+     */
+    private void promote(Face face) {
+        CubeColour colour = face.getCentreColour();
+        if (!isConfirmed(face) || strongestHypothesis(colour) != face)
+            return;
+        int index = faceBuffer.indexOf(face);
+        for (int i = faceBuffer.size() - 1; i >= 0; i--) {
+            Face other = faceBuffer.get(i);
+            if (other == face || other.getCentreColour() != colour)
+                continue;
+            cancelSearch();
+            if (index == -1) {
+                faceBuffer.set(i, face);
+                index = i;
+            } else {
+                // The face was already in the buffer before its centre
+                // colour changed
+                faceBuffer.remove(i);
+                if (i < index)
+                    index--;
             }
-            // ROTATIONTHRESH is the minimum amount of squares needed to be the
-            // same for a face to be identified as in the correct rotation
-            if(count >= ROTATION_THRESH){
-                countStore = count;
-                break;
-            } else if (count > countStore) {
-                countStore = count;
-                indexStore = j;
+        }
+        if (index == -1) {
+            cancelSearch();
+            faceBuffer.add(face);
+        }
+    }
+
+    /**
+     * @param colour Centre colour
+     * @return Face in the {@code faceQueue} with the centre colour and the
+     *         most evidence (see {@code AdderQueue.getEvidence}), or
+     *         {@code null} if there are none
+     */
+    private Face strongestHypothesis(CubeColour colour) {
+        Face strongest = null;
+        int strongestEvidence = -1;
+        for (Face face : faceQueue) {
+            if (face.getCentreColour() != colour)
+                continue;
+            int evidence = getEvidence(face);
+            if (evidence > strongestEvidence) {
+                strongest = face;
+                strongestEvidence = evidence;
             }
-            face = face.rotate();
         }
-        //if the minimum threshold is not met it will rotate back around to the
-        // most similar rotation it found
-        if(countStore < ROTATION_THRESH){
-            for(int i = 0; i < (indexStore + 1); i++){
-                face = face.rotate();
+        return strongest;
+    }
+
+    /**
+     * @param colour Centre colour
+     * @return Number of faces in the {@code faceQueue} with the centre colour
+     */
+    int getHypothesisCount(CubeColour colour) {
+        int count = 0;
+        for (Face face : faceQueue) {
+            if (face.getCentreColour() == colour)
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Removes the faces with the least evidence for a centre colour from the
+     * {@code faceQueue}, once there are more than {@code MAX_HYPOTHESES}.
+     * Faces in the {@code faceBuffer} are kept
+     * @param colour Centre colour
+     */
+    private void pruneHypotheses(CubeColour colour) {
+        int count = 0;
+        Face weakest = null;
+        for (Face face : faceQueue) {
+            if (face.getCentreColour() != colour)
+                continue;
+            count++;
+            if (!faceBuffer.contains(face)
+                    && (weakest == null || getEvidence(face) < getEvidence(weakest))) {
+                weakest = face;
             }
         }
+        if (count > MAX_HYPOTHESES && weakest != null) {
+            faceQueue.remove(weakest);
+            unindexFace(weakest, FaceSignature.signature(weakest));
+        }
+    }
+
+    /**
+     * Evidence gathered for a face, the total number of frames each square
+     * has been seen as its current colour
+     * @param face Face in the {@code faceQueue}
+     * @return Evidence for the face
+     */
+    private static int getEvidence(Face face) {
+        CubeState state = face.getState();
+        int evidence = 0;
+        for (int i = 0; i < 9; i++) {
+            evidence += state.getTimesSeen(face.getOffset() + i);
+        }
+        return evidence;
+    }
 
-        return face;
+    /**
+     * Checks whether a face in the {@code faceQueue} is confident enough to be
+     * added to the internal cube. In turbo mode this is once every square has
+     * been seen for more than {@code TURBO_FRAME_THRESH} frames, otherwise once
+     * every square is settled by the {@link SequentialConfirmation} test
+     * @param face Face in the {@code faceQueue}
+     * @return Whether the face is confirmed
+     */
+    private boolean isConfirmed(Face face) {
+        if (turbo)
+            return face.getMinTimesSeen() > TURBO_FRAME_THRESH;
+        return confirmation.isSettled(face);
     }
 
     /**
-     * Compares the colour that represents each inputted square
-     * @param square1 - First square to check with
-     * @param square2 - Second square to check against
-     * @return true or false depending on if the CubeColour is the same
+     * Finds the stored face most like a face that has no exact match in the
+     * {@code faceQueue}, by the number of squares that differ between them in
+     * each rotation. A face only matches if at most {@code 9 - ROTATION_THRESH}
+     * squares differ, and a face with the same centre colour is preferred when
+     * as many squares differ.
+     * @param face New face to find a match for
+     * @return Index in {@code faceQueue} of the match times {@code Face.ROTATIONS},
+     *         plus the number of clockwise rotations that line the new face up with it.
+     *         -1 if no face matches
      */
-    private boolean compareSquare(Square square1, Square square2){
-        return square1.getColour() == square2.getColour();
+    private int findMatch(Face face) {
+        long[] packed = new long[Face.ROTATIONS];
+        for (int r = 0; r < Face.ROTATIONS; r++) {
+            packed[r] = FaceSignature.pack(face, r);
+        }
+        int best = -1;
+        int bestCost = Integer.MAX_VALUE;
+        for (int i = 0; i < faceQueue.size(); i++) {
+            Face queueFace = faceQueue.get(i);
+            long queuePacked = FaceSignature.pack(queueFace, 0);
+            boolean sameCentre = queueFace.getCentreColour() == face.getCentreColour();
+            for (int r = 0; r < Face.ROTATIONS; r++) {
+                int distance = FaceSignature.distance(packed[r], queuePacked);
+                if (distance > 9 - ROTATION_THRESH)
+                    continue;
+                int cost = distance * 2 + (sameCentre ? 0 : 1);
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    best = i * Face.ROTATIONS + r;
+                }
+            }
+        }
+        return best;
     }
 
     /**
-     * Updates the Face object at the specified index in the faceList list by iterating
+     * Updates the given Face object from the {@code faceQueue} by iterating
      * through its squares and calling the {@code AdderQueue.addSquareInstance}
-     * method for each square.
+     * method for each square. The centre is counted as seen too, so when a face is
+     * matched to one with a different centre colour, the colour seen most wins.
      *
      * @param face the Face object to be added to the {@code faceQueue}
-     * @param index the index of the Face object in the {@code faceQueue} to be updated
+     * @param rotation number of clockwise rotations to read {@code face} with
+     * @param storedFace the Face object in the {@code faceQueue} to be updated
      */
-    private void addFaceInstance(Face face, int index){
+    private void addFaceInstance(Face face, int rotation, Face storedFace){
         for(int i = 0; i < 9 ; i++){
-            addSquareInstance(face, index, i);
+            addSquareInstance(face, rotation, storedFace, i);
         }
     }
 
 
     /**
-     * Updates the square at the specified index in the Face object at the specified index
-     * in the {@code faceQueue} with the square in the Face object passed to the addElement
-     * method. The method calculates the average color confidence of the two squares and
-     * sets the color confidence of the updated square accordingly.
+     * Updates the square at the specified index in the given Face object from the
+     * {@code faceQueue} with the square in the Face object passed to the addElement
+     * method, read through the given rotation.
      *
      * @param face the Face object passed to the addElement method
-     * @param faceIndex the index of the Face object in the faceList list to be updated
+     * @param rotation number of clockwise rotations to read {@code face} with
+     * @param storedFace the Face object in the {@code faceQueue} to be updated
      * @param squareIndex the index of the square in the Face object to be updated
      */
-    private void addSquareInstance(Face face, int faceIndex, int squareIndex){
-        Face storedFace = faceQueue.get(faceIndex);
-
-        Square newSquare = storedFace.getSquare(squareIndex);
-
-        newSquare.incrementColour(face.getSquare(squareIndex).getColour());
-        faceQueue.get(faceIndex).setSquare(squareIndex, newSquare);
-
+    private void addSquareInstance(Face face, int rotation, Face storedFace, int squareIndex){
+        storedFace.addSquareSeen(squareIndex, face.getSquareColour(squareIndex, rotation));
     }
 
     /**
      * Once all 6 faces have been scanned and added to {@code faceQueue},
      * adds the faces that the queue is "confident" enough to
-     * the internal cube representation
+     * the internal cube representation, then publishes a new
+     * {@link ScanSnapshot}. Once 5 faces are confident, the last face is
+     * filled in from the pieces of the other five if it can only be one
+     * thing (see {@link CubeCompletion}), so it doesn't need to be scanned.
+     * If faces fail to be added, or the cube has a parity issue face
+     * rotations can't fix, a search for the most likely valid cube is
+     * started in the background. While it runs, later calls only check
+     * whether it has finished, and report no failed faces
      * @return List of faces that failed to be added. <br> Returns {@code null}
      *         if an unsolvable error (parity issue) is found.
      */
     public List<Face> addCandidateFaces() {
+        if (journal != null)
+            journal.recordCandidates();
         List<Face> failedFaces = new ArrayList<>();
+        // While a search for the cube is running, poll it rather than adding
+        // the same faces again
+        if (pendingSearch != null) {
+            if (pendingSearch.isDone())
+                failedFaces = finishSearch();
+            publishSnapshot();
+            return failedFaces;
+        }
+
         // If the adder queue has faces
         if (getQueueLength() == 6) {
             failedFaces = flushBufferToAdder();
+            // Search for the next most likely colours of the squares before
+            // asking for the failed faces to be rescanned
+            if (!failedFaces.isEmpty()) {
+                startSearch(failedFaces);
+                failedFaces = new ArrayList<>();
+            }
+        }
+        else if (getQueueLength() == 5) {
+            completeLastFace();
         }
 
-        // Try to fix cube parity issues - try different orders
-        // of face additions in the hope the parity issue goes away
-        // TODO Change temporary parity fix
-        if (faceAdder.getCube().isComplete() && faceAdder.getCube().parityCheckFail()) {
-            boolean parityFix = fixCubeParity();
-            if (!parityFix) {
-                return null;
-            }
+        // Try to fix cube parity issues by rotating faces, then by
+        // changing colours
+        if (pendingSearch == null && faceAdder.getCube().isComplete()
+                && diagnosis.verify(faceAdder.getCube().getState().getColours()) != CubieDiagnosis.VALID
+                && !fixCubeParity()) {
+            startSearch(null);
         }
+        publishSnapshot();
         return failedFaces;
     }
 
     /**
-     * Temporary solution to try to fix cube parity issues by
-     * trying different orders of face additions in the hope the
-     * parity issue gets fixed
+     * Adds the 5 faces in the buffer to the internal cube, and fills in the
+     * last face from their pieces. The last face is only added if the faces
+     * fit together and give exactly one solvable cube, otherwise it still
+     * needs to be scanned
+     */
+    private void completeLastFace() {
+        int missing = (1 << 6) - 1;
+        for (Face face : faceBuffer) {
+            missing &= ~(1 << face.getCentreColour().ordinal());
+        }
+        int lastFace = Integer.numberOfTrailingZeros(missing);
+        // Drop the last face if it was filled in before, as the other faces
+        // may have changed since
+        faceAdder.removeFace(CubeState.COLOURS[lastFace]);
+        if (!flushBufferToAdder().isEmpty())
+            return;
+        Cube completed = completion.complete(faceAdder.getCube());
+        if (completed != null)
+            faceAdder.addFace(completed.getFace(lastFace));
+    }
+
+    /**
+     * Tries to fix cube parity issues. The cube is converted to cubie form
+     * once to find the pieces at fault, along with the fewest face rotations
+     * that give a solvable cube (see {@link CubieDiagnosis})
      * @return Boolean whether the parity issue was fixed or not
      */
     private boolean fixCubeParity() {
-        int[] perm = {0,1,2,3,4,5};
-        List<List<Integer>> perms = permute(perm);
-        for (List<Integer> p : perms) {
-            System.out.println("Trying face perm: " + p);
-            faceAdder = new FaceAdder();
-            for (int i = 0; i < faceBuffer.size(); i++) {
-                Face face = faceBuffer.get(p.get(i));
-                if (!faceAdder.addFace(face)) {
-                    System.out.println("FAILED TO ADD " + face.getCentreColour());
-//                    if(!tryColourSwaps(faceBuffer.indexOf(face))){
-//                        failedFaces.add(face);
-//                    }
-                }
-            }
-            if (!faceAdder.getCube().parityCheckFail()) {
-                System.out.println("Fixed with perm : " + p);
-                return true;
-            }
+        Cube cube = faceAdder.getCube();
+        diagnosis.diagnose(cube);
+        if (!diagnosis.hasRotationFix())
+            return false;
+        faceAdder = new FaceAdder(diagnosis.applyRotationFix(cube));
+        return true;
+    }
+
+    /**
+     * Starts rebuilding the cube from every face in the buffer in the
+     * background, using the colours each square has been seen as (see
+     * {@link CandidateSearch})
+     * @param failedFaces Faces that failed to be added, or {@code null} if
+     *                    the search is for a parity issue
+     */
+    private void startSearch(List<Face> failedFaces) {
+        Cube scanned = new Cube();
+        for (Face face : faceBuffer) {
+            faceAdder.addFaceToConfig(scanned, face);
         }
-        System.out.println("Failed to create correct config ... must be parity issue...");
-        return false;
+        pendingSearch = search.submit(scanned);
+        searchFailedFaces = failedFaces;
+    }
+
+    /**
+     * Uses the result of a finished search
+     * @return Empty list if a valid cube was found. Otherwise the faces that
+     *         failed to be added, or {@code null} for a parity issue
+     */
+    private List<Face> finishSearch() {
+        Cube reconstructed = pendingSearch.getResult();
+        List<Face> failedFaces = searchFailedFaces;
+        pendingSearch = null;
+        searchFailedFaces = null;
+        if (reconstructed == null)
+            return failedFaces;
+        faceAdder = new FaceAdder(reconstructed);
+        return new ArrayList<>();
+    }
+
+    /**
+     * Stops the background search, as the faces it was started from have
+     * changed
+     */
+    private void cancelSearch() {
+        if (pendingSearch == null)
+            return;
+        pendingSearch.cancel();
+        pendingSearch = null;
+        searchFailedFaces = null;
+    }
+
+    /**
+     * @return Search running in the background, or {@code null} if there
+     *         isn't one
+     */
+    CandidateSearch.Task getPendingSearch() {
+        return pendingSearch;
     }
 
     /**
@@ -273,93 +688,6 @@ public class AdderQueue {
         return failedFaces;
     }
 
-    /**
-     * This method tries to swap squares in a face based on the number of times they have been seen.
-     * If a square's second colour has been seen more times than the SWAP_THRESH times the highest colour's seen count,
-     * the colour is then swapped and then checked to be added. If the add is successful the function finishes as it found
-     * a correct face variation
-     * @param faceIndex The index of the face in the faceList to be considered for swaps.
-     * @return true if a swap was successful, false otherwise.
-     */
-    private boolean tryColourSwaps(int faceIndex){
-        Face face = faceBuffer.get(faceIndex);
-        List<Integer> squaresToSwap = new ArrayList<>();
-
-        // Find all squares that can be swapped
-        for(int i = 0; i < 9 ; i++){
-            Square square = face.getSquare(i);
-            int secondCount = square.getSecondTimesSeenCount();
-
-            if(secondCount > SWAP_THRESH * square.getTimesSeen()){
-                squaresToSwap.add(i);
-            }
-        }
-        if(squaresToSwap.size() > 0 && squaresToSwap.size() < 4){
-            // Check every permutation of the squares that can be swapped
-            List<List<Integer>> permutations = getSubsets(squaresToSwap);
-            for (List<Integer> permutation : permutations) {
-                // Make a copy of the face to modify
-                Face modifiedFace = face;
-
-                // Swap the squares according to the current permutation
-                for (int i = 0; i < permutation.size(); i++) {
-                    Square square = modifiedFace.getSquare(permutation.get(i));
-                    CubeColour secondColour = square.getSecondTimesSeenColour();
-                    swapSquare(faceIndex, permutation.get(i), secondColour);
-                }
-
-                // Attempt to add the modified face to the faceAdder
-                if (faceAdder.addFace(modifiedFace)) {
-                    System.out.println("SUCCESSFUL ON SWAP TO " + permutation);
-                    for(int i = 0 ; i < permutation.size() ; i++){
-                        Square squareChange = modifiedFace.getSquare(permutation.get(i));
-                        squareChange.setColour(squareChange.getColour(), Integer.MAX_VALUE);
-                        modifiedFace.setSquare(permutation.get(i), squareChange);
-                    }
-                    faceBuffer.set(faceIndex, modifiedFace);
-                    return true;
-                } else {
-                    System.out.println("FAILED ON SWAP TO " + permutation);
-                }
-            }
-        }
-
-
-        return false;
-    }
-
-    private List<List<Integer>> getSubsets(List<Integer> inputList) {
-        List<List<Integer>> subsets = new ArrayList<>();
-        int n = inputList.size();
-
-        // Generate all possible binary numbers with n digits
-        for (int i = 0; i < (1 << n); i++) {
-            List<Integer> subset = new ArrayList<>();
-
-            // Check each bit in the binary number
-            for (int j = 0; j < n; j++) {
-                if ((i & (1 << j)) > 0) {
-                    // If the bit is set, add the corresponding element to the subset
-                    subset.add(inputList.get(j));
-                }
-            }
-
-            if(subset.size() != 0){
-                subsets.add(subset);
-            }
-        }
-
-        return subsets;
-    }
-
-
-    private void swapSquare(int faceIndex, int squareIndex, CubeColour colour){
-        Face face = faceBuffer.get(faceIndex);
-        Square square = face.getSquare(squareIndex);
-        square.setColourValue(colour);
-        face.setSquare(squareIndex, square);
-    }
-
     /**
      * Gets the current working internal cube representation
      * @return Internal cube representation
@@ -369,6 +697,8 @@ public class AdderQueue {
     }
 
     public void resetFace(CubeColour faceColour){
+        if (journal != null)
+            journal.recordReset(faceColour);
         // -1 represents if the the face is even inside of faceBuffer and catches when this is not true
         int index = -1;
         for(int i = 0; i < faceBuffer.size() ; i++){
@@ -377,23 +707,66 @@ public class AdderQueue {
             }
         }
         if(index != -1){
+            cancelSearch();
             faceBuffer.remove(index);
-            inBuffer.replace(faceColour, false);
+            // Keep the other faces of the internal cube in place, so the face
+            // only has to be fitted back in once it is rescanned
+            faceAdder.removeFace(faceColour);
+            publishSnapshot();
         }
     }
 
     /**
-     * Sets turbo mode, reducing the average frame threshold for adding
-     * faces to the internal cube representation to just 1 frame.
-     * @param turboEnabled Whether to reduce the threshold or not
+     * Sets how quickly old sightings of a square's colours are forgotten for
+     * every face scanned in this session, including faces already being
+     * scanned (see {@link ColourHistogram#setDecay(double)})
+     * @param rate Fraction of a square's confidence lost each frame it is
+     *             seen, 0 to count every frame equally
+     * @throws IllegalArgumentException If the rate isn't in [0, 1)
      */
-    public void setTurbo(boolean turboEnabled) {
-        if (turboEnabled) {
-            // Set average threshold needed for detecting a face
-            // to just one frame
-            currentFrameThresh = 1;
-        } else {
-            currentFrameThresh = AVERAGE_FRAME_THRESH;
+    public void setConfidenceDecay(double rate) {
+        ColourHistogram.fixedDecay(rate);
+        if (journal != null)
+            journal.recordDecay(rate);
+        for (Face face : faceQueue) {
+            face.getState().getConfidence().setDecay(rate);
         }
+        confidenceDecay = rate;
+    }
+
+    /**
+     * @return Fraction of a square's confidence lost each frame it is seen
+     */
+    public double getConfidenceDecay() {
+        return confidenceDecay;
+    }
+
+    /**
+     * Sets the test used to decide when a face's colours are settled, e.g.
+     * to trade a higher error rate for faster scanning
+     * @param confirmation Test to confirm faces with
+     */
+    public void setConfirmation(SequentialConfirmation confirmation) {
+        if (journal != null)
+            journal.recordConfirmation(confirmation);
+        this.confirmation = confirmation;
+    }
+
+    /**
+     * @return Test used to decide when a face's colours are settled
+     */
+    public SequentialConfirmation getConfirmation() {
+        return confirmation;
+    }
+
+    /**
+     * Sets turbo mode, adding faces to the internal cube representation
+     * after just 2 frames whether or not their colours are settled.
+     * @param turboEnabled Whether to use the frame threshold or not
+     */
+    public void setTurbo(boolean turboEnabled) {
+        if (journal != null)
+            journal.recordTurbo(turboEnabled);
+        turbo = turboEnabled;
     }
 }
@@ -0,0 +1,116 @@
+package com.logic;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @description Runs {@link CubeReconstructor} searches in the background on
+ * a {@link ForkJoinPool}, so the thread adding faces only submits a search
+ * and polls for its result each frame.
+ * <br>
+ * Each search works on its own copy of the cube and solves its candidates
+ * in parallel on the pool's threads. A search stops as soon as it finds a
+ * valid cube, runs out of budget, or is cancelled (e.g. because the faces
+ * it was started from have changed).
+ */
+public final class CandidateSearch {
+    private final ForkJoinPool pool;
+    // Search limits of each reconstruction
+    private final long budgetNanos;
+    private final int maxCandidates;
+
+    /**
+     * Creates a search on the common pool, with the default limits of
+     * {@link CubeReconstructor}
+     */
+    public CandidateSearch() {
+        this(ForkJoinPool.commonPool(), CubeReconstructor.DEFAULT_BUDGET_NANOS,
+                CubeReconstructor.DEFAULT_MAX_CANDIDATES);
+    }
+
+    /**
+     * Creates a search on the given pool
+     * @param pool Pool to search on
+     * @param budgetNanos Time allowed for each search, in nanoseconds
+     * @param maxCandidates Number of candidate cubes checked before giving up
+     */
+    public CandidateSearch(ForkJoinPool pool, long budgetNanos, int maxCandidates) {
+        this.pool = pool;
+        this.budgetNanos = budgetNanos;
+        this.maxCandidates = maxCandidates;
+    }
+
+    /**
+     * Starts searching for the most likely valid cube in the background
+     * @param cube Cube with every face placed by its center colour, copied
+     *             before this returns
+     * @return Handle to poll for the result
+     */
+    public Task submit(Cube cube) {
+        Task task = new Task(new Cube(cube), new CubeReconstructor(budgetNanos, maxCandidates));
+        pool.execute(task.future);
+        return task;
+    }
+
+    /**
+     * A search running in the background
+     */
+    public final class Task {
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final CubeReconstructor reconstructor;
+        private final ForkJoinTask<Cube> future;
+
+        private Task(Cube cube, CubeReconstructor reconstructor) {
+            this.reconstructor = reconstructor;
+            future = ForkJoinTask.adapt(() -> reconstructor.reconstruct(cube, pool, cancelled));
+        }
+
+        /**
+         * @return Whether the search has finished or been cancelled
+         */
+        public boolean isDone() {
+            return future.isDone();
+        }
+
+        /**
+         * @return Valid cube found by the search, or {@code null} if the
+         * search hasn't finished, found nothing or was cancelled
+         */
+        public Cube getResult() {
+            if (!future.isDone() || cancelled.get())
+                return null;
+            try {
+                return future.join();
+            } catch (CancellationException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Waits for the search to finish
+         * @return Valid cube found by the search, or {@code null} if it found
+         * nothing or was cancelled
+         */
+        public Cube await() {
+            future.quietlyJoin();
+            return getResult();
+        }
+
+        /**
+         * Stops the search, skipping any candidates not yet solved
+         */
+        public void cancel() {
+            cancelled.set(true);
+            future.cancel(false);
+        }
+
+        /**
+         * @return Number of candidate cubes checked, once the search is done
+         */
+        public int getCandidatesChecked() {
+            return future.isDone() ? reconstructor.getCandidatesChecked() : 0;
+        }
+    }
+}
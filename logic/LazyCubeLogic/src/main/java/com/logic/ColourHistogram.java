@@ -0,0 +1,308 @@
+package com.logic;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * @description Confidence histograms for a run of squares. Each square has an
+ * {@code int} counter for every {@link CubeColour}, indexed by
+ * {@code CubeColour.ordinal()}, stored within one flat array.
+ * <br>
+ * The most seen colour (leader) and second most seen colour (runner-up) of
+ * every square are kept up to date as counts change, so both can be read
+ * without scanning the counters. Ties are broken in favour of the lowest
+ * colour ordinal.
+ * <br>
+ * Counts are stored in fixed point, with {@link #ONE} standing for one frame,
+ * and read back rounded to whole frames. By default every frame a colour is
+ * seen adds one to its count. With a decay rate set (see
+ * {@link #setDecay(double)}) the counts become an exponential moving average
+ * instead: before a square's colour is added, all of that square's counts
+ * lose the given fraction of themselves. Old evidence then fades, so a
+ * colour misread for many frames is overtaken after a few frames of the
+ * right colour, rather than as many frames again.
+ */
+public class ColourHistogram implements Serializable {
+    // Version of the serialized form, as a CubeState holds a histogram
+    private static final long serialVersionUID = 1L;
+
+    // Number of counters stored for each square, one for every colour
+    static final int COLOUR_COUNT = CubeColour.values().length;
+    // Number of fractional bits in the stored counts
+    static final int FRACTION_BITS = 10;
+    // Stored count of a colour seen for one frame
+    static final int ONE = 1 << FRACTION_BITS;
+    // Number of fractional bits in the decay rate
+    private static final int DECAY_BITS = 16;
+
+    // Counters for each square, stored at [square * COLOUR_COUNT + colour ordinal]
+    private final int[] counts;
+    // Colour ordinal with the highest count for each square
+    private final byte[] leader;
+    // Colour ordinal with the highest count, excluding the leader, for each square
+    private final byte[] runnerUp;
+    // Fraction of every count removed each time a square is seen, in fixed
+    // point with DECAY_BITS fractional bits, 0 to keep plain counts
+    private int decay;
+
+    /**
+     * Creates histograms for the given number of squares, with all counts
+     * set to 0
+     * @param size Number of squares
+     */
+    public ColourHistogram(int size) {
+        counts = new int[size * COLOUR_COUNT];
+        leader = new byte[size];
+        runnerUp = new byte[size];
+        Arrays.fill(runnerUp, (byte) 1);
+    }
+
+    /**
+     * Creates a copy of another set of histograms
+     * @param histogram Histograms to copy
+     */
+    public ColourHistogram(ColourHistogram histogram) {
+        counts = histogram.counts.clone();
+        leader = histogram.leader.clone();
+        runnerUp = histogram.runnerUp.clone();
+        decay = histogram.decay;
+    }
+
+    /**
+     * Sets the fraction of every count lost each time a square is seen.
+     * Counts already stored are kept
+     * @param rate Decay rate from 0 (plain counts, the default) up to but not
+     *             including 1. Each count settles at about {@code 1 / rate}
+     *             frames for a colour that is always seen
+     * @throws IllegalArgumentException If the rate is out of range
+     */
+    public void setDecay(double rate) {
+        decay = fixedDecay(rate);
+    }
+
+    /**
+     * Converts a decay rate to fixed point
+     * @throws IllegalArgumentException If the rate is out of range
+     */
+    static int fixedDecay(double rate) {
+        if (!(rate >= 0 && rate < 1))
+            throw new IllegalArgumentException("Decay rate must be in [0, 1), got " + rate);
+        return (int) Math.round(rate * (1 << DECAY_BITS));
+    }
+
+    /**
+     * @return Fraction of every count lost each time a square is seen, 0 for
+     * plain counts
+     */
+    public double getDecay() {
+        return decay / (double) (1 << DECAY_BITS);
+    }
+
+    /**
+     * @param index Square to be indexed
+     * @param colour Colour ordinal
+     * @return Count of the colour for the square
+     */
+    public int get(int index, int colour) {
+        return frames(counts[index * COLOUR_COUNT + colour]);
+    }
+
+    /**
+     * @param index Square to be indexed
+     * @return Total of all colour counts for the square
+     */
+    public int getTotal(int index) {
+        int row = index * COLOUR_COUNT;
+        long total = 0;
+        for (int colour = 0; colour < COLOUR_COUNT; colour++) {
+            total += counts[row + colour];
+        }
+        return frames(total);
+    }
+
+    /**
+     * @param index Square to be indexed
+     * @return Colour ordinal with the highest count for the square
+     */
+    public int getLeader(int index) {
+        return leader[index];
+    }
+
+    /**
+     * @param index Square to be indexed
+     * @return Highest colour count for the square
+     */
+    public int getLeaderCount(int index) {
+        return frames(counts[index * COLOUR_COUNT + leader[index]]);
+    }
+
+    /**
+     * @param index Square to be indexed
+     * @return Colour ordinal with the second-highest count for the square
+     */
+    public int getRunnerUp(int index) {
+        return runnerUp[index];
+    }
+
+    /**
+     * @param index Square to be indexed
+     * @return Second-highest colour count for the square
+     */
+    public int getRunnerUpCount(int index) {
+        return frames(counts[index * COLOUR_COUNT + runnerUp[index]]);
+    }
+
+    /**
+     * @param index Square to be indexed
+     * @param colour Colour ordinal
+     * @return Count of the colour for the square as stored, in units of
+     * {@link #ONE} per frame
+     */
+    int getStored(int index, int colour) {
+        return counts[index * COLOUR_COUNT + colour];
+    }
+
+    /**
+     * Replaces the stored count of a colour for a square, e.g. when restoring
+     * counts saved with {@link #getStored(int, int)}
+     * @param index Square to be indexed
+     * @param colour Colour ordinal to set
+     * @param count New count of the colour, in units of {@link #ONE} per frame
+     */
+    void setStored(int index, int colour, int count) {
+        counts[index * COLOUR_COUNT + colour] = count;
+        rank(index);
+    }
+
+    /**
+     * @param index Square to be indexed
+     * @return Stored count of the leader less the stored count of the
+     * runner-up, in units of {@link #ONE} per frame
+     */
+    int getLead(int index) {
+        int row = index * COLOUR_COUNT;
+        return counts[row + leader[index]] - counts[row + runnerUp[index]];
+    }
+
+    /**
+     * Checks whether a colour of a square has a lower count than the leader,
+     * comparing the stored counts rather than whole frames
+     * @param index Square to be indexed
+     * @param colour Colour ordinal
+     * @return True if the leader has been seen more than the colour
+     */
+    boolean isBehindLeader(int index, int colour) {
+        int row = index * COLOUR_COUNT;
+        return counts[row + colour] < counts[row + leader[index]];
+    }
+
+    /**
+     * Adds a frame to the count of a colour for a square. Without decay the
+     * leader and runner-up are updated in constant time, with decay the
+     * square's counts are decayed first and the colours ranked again
+     * @param index Square to be indexed
+     * @param colour Colour ordinal to increment
+     */
+    public void increment(int index, int colour) {
+        int row = index * COLOUR_COUNT;
+        if (decay != 0) {
+            for (int i = row; i < row + COLOUR_COUNT; i++) {
+                counts[i] -= (int) (((long) counts[i] * decay + (1 << (DECAY_BITS - 1))) >> DECAY_BITS);
+            }
+            counts[row + colour] += ONE;
+            rank(index);
+            return;
+        }
+        int count = counts[row + colour] += ONE;
+        int first = leader[index];
+        if (colour == first) {
+            return;
+        }
+        if (beats(count, colour, counts[row + first], first)) {
+            // The old leader is now the best of the remaining colours
+            runnerUp[index] = (byte) first;
+            leader[index] = (byte) colour;
+        } else if (colour != runnerUp[index]
+                && beats(count, colour, counts[row + runnerUp[index]], runnerUp[index])) {
+            runnerUp[index] = (byte) colour;
+        }
+    }
+
+    /**
+     * Replaces the count of a colour for a square. Counts may go down, so the
+     * leader and runner-up are recalculated
+     * @param index Square to be indexed
+     * @param colour Colour ordinal to set
+     * @param count New count of the colour in frames
+     */
+    public void set(int index, int colour, int count) {
+        counts[index * COLOUR_COUNT + colour] = (int) Math.min((long) count << FRACTION_BITS, Integer.MAX_VALUE);
+        rank(index);
+    }
+
+    /**
+     * Copies a run of squares from another set of histograms into this one
+     * @param source Histograms to copy from
+     * @param sourceIndex Index of the first square to copy in {@code source}
+     * @param index Index of the first square to overwrite
+     * @param count Number of squares to copy
+     */
+    void copy(ColourHistogram source, int sourceIndex, int index, int count) {
+        System.arraycopy(source.counts, sourceIndex * COLOUR_COUNT,
+                counts, index * COLOUR_COUNT, count * COLOUR_COUNT);
+        System.arraycopy(source.leader, sourceIndex, leader, index, count);
+        System.arraycopy(source.runnerUp, sourceIndex, runnerUp, index, count);
+    }
+
+    /**
+     * Resets a run of squares to have all counts set to 0
+     * @param index Index of the first square to reset
+     * @param count Number of squares to reset
+     */
+    void clear(int index, int count) {
+        Arrays.fill(counts, index * COLOUR_COUNT, (index + count) * COLOUR_COUNT, 0);
+        Arrays.fill(leader, index, index + count, (byte) 0);
+        Arrays.fill(runnerUp, index, index + count, (byte) 1);
+    }
+
+    /**
+     * Recalculates the leader and runner-up of a square from its counts
+     * @param index Square to be indexed
+     */
+    private void rank(int index) {
+        int row = index * COLOUR_COUNT;
+        int first = 0;
+        int second = 1;
+        if (counts[row + 1] > counts[row]) {
+            first = 1;
+            second = 0;
+        }
+        for (int colour = 2; colour < COLOUR_COUNT; colour++) {
+            int count = counts[row + colour];
+            if (count > counts[row + first]) {
+                second = first;
+                first = colour;
+            } else if (count > counts[row + second]) {
+                second = colour;
+            }
+        }
+        leader[index] = (byte) first;
+        runnerUp[index] = (byte) second;
+    }
+
+    /**
+     * @return Stored count rounded to whole frames
+     */
+    private static int frames(long count) {
+        return (int) ((count + (ONE >> 1)) >> FRACTION_BITS);
+    }
+
+    /**
+     * Checks whether a colour ranks above another, given their counts
+     * @return True if the first colour has the higher count, or the lower
+     * ordinal when counts are equal
+     */
+    private static boolean beats(int count, int colour, int otherCount, int otherColour) {
+        return count > otherCount || (count == otherCount && colour < otherColour);
+    }
+}
@@ -1,7 +1,5 @@
 package com.logic;
 
-import static cs.min2phase.Tools.verify;
-
 import java.io.Serializable;
 import java.util.ArrayList;
 
@@ -11,17 +9,33 @@ import java.util.ArrayList;
  * @description Generates a Rubik's cube with either a default preset or with specified faces
  */
 public class Cube implements Serializable {
-    private Face[] faceList = new Face[6];
-    private final ArrayList<Square> longArray = new ArrayList<>();
+    // Packed colours and confidence values of all 54 squares
+    private final CubeState state;
+    // Views over each face of the packed state
+    private final Face[] faceList = new Face[6];
+    // Views over each square of the packed state, created on first use
+    private transient ArrayList<Square> longArray;
+
+    /**
+     * Creates a cube backed by the given packed state
+     * @param state State holding all 54 squares of the cube
+     */
+    private Cube(CubeState state) {
+        this.state = state;
+        for (int i = 0; i < 6; i++) {
+            faceList[i] = new Face(state, i * 9);
+        }
+    }
 
     /**
      * Creates a cube with specified faces
      * @param faceList - A list of cube faces
      */
     public Cube(Face[] faceList) {
-        this.faceList = faceList;
-
-        setLongArray();
+        this(new CubeState(54));
+        for (int i = 0; i < 6; i++) {
+            setFace(i, faceList[i]);
+        }
     }
 
     /**
@@ -29,18 +43,10 @@ public class Cube implements Serializable {
      * @param inputArray - Array of integers
      */
     public Cube(int[] inputArray) {
-        faceList = new Face[6];
-
-        for(int i = 0; i<6;i++)
-        {
-            faceList[i]=new Face();
-            for(int j = 0; j<9; j++)
-            {
-                faceList[i].setSquare(j, CubeColour.values()[inputArray[9*i+j]],0);
-            }
+        this(new CubeState(54));
+        for (int i = 0; i < 54; i++) {
+            state.setColour(i, CubeState.COLOURS[inputArray[i]], 0);
         }
-
-        setLongArray();
     }
 
     /**
@@ -49,32 +55,16 @@ public class Cube implements Serializable {
      * @param cube Cube object to copy
      */
     public Cube(Cube cube) {
-        faceList = new Face[6];
-
-        for(int i = 0; i<6;i++)
-        {
-            faceList[i]=new Face();
-            for(int j = 0; j<9; j++)
-            {
-                faceList[i].setSquare(j, cube.getFace(i).getSquare(j).getColour(),
-                        cube.getFace(i).getSquare(j).getTimesSeen());
-            }
-        }
+        this(new CubeState(cube.state));
     }
 
     /**
-     * Updates long array representation of the cube
+     * Get the packed state backing this cube
+     * @return Packed cube state (not a copy)
      */
-    private void setLongArray()
+    public CubeState getState()
     {
-        longArray.clear();
-        for (Face face: faceList)
-        {
-            for(int loop = 0 ; loop <9 ; loop++)
-            {
-                longArray.add(face.getSquare(loop));
-            }
-        }
+        return state;
     }
 
     /**
@@ -83,6 +73,12 @@ public class Cube implements Serializable {
      */
     public ArrayList<Square> getLongArray()
     {
+        if (longArray == null) {
+            longArray = new ArrayList<>(54);
+            for (int i = 0; i < 54; i++) {
+                longArray.add(new Square(state, i));
+            }
+        }
         return longArray;
     }
     
@@ -101,11 +97,7 @@ public class Cube implements Serializable {
      * @param face - New face to set to
      */
     public void setFace(int index, Face face) {
-        faceList[index] = new Face();
-        for(int i = 0; i < 9; i ++) {
-            faceList[index].setSquare(i, face.getSquare(i));
-        }
-        setLongArray();
+        state.copySquares(face.getState(), face.getOffset(), index * 9, 9);
     }
 
     /**
@@ -127,15 +119,13 @@ public class Cube implements Serializable {
      */
     public Cube()
     {
-        faceList = new Face[6];
-        faceList[0] = new Face(CubeColour.ORANGE);
-        faceList[1] = new Face(CubeColour.GREEN);
-        faceList[2] = new Face(CubeColour.RED);
-        faceList[3] = new Face(CubeColour.BLUE);
-        faceList[4] = new Face(CubeColour.WHITE);
-        faceList[5] = new Face(CubeColour.YELLOW);
-
-        setLongArray();
+        this(new CubeState(54));
+        state.setColour(4, CubeColour.ORANGE, 1);
+        state.setColour(13, CubeColour.GREEN, 1);
+        state.setColour(22, CubeColour.RED, 1);
+        state.setColour(31, CubeColour.BLUE, 1);
+        state.setColour(40, CubeColour.WHITE, 1);
+        state.setColour(49, CubeColour.YELLOW, 1);
     }
 
     /**
@@ -146,15 +136,12 @@ public class Cube implements Serializable {
      */
     public String[] toCubotStringArray()
     {
+        char[] chars = new char[54];
+        CubeEncoder.encode(state.getColours(), CubeEncoder.CUBOT_SQUARE, CubeEncoder.CUBOT_CHARS, chars, 0);
         String result[] = new String[6];
-
-        result[0]=faceList[2].toCubotString();
-        result[1]=faceList[1].rotate().rotate().toCubotString();
-        result[2]=faceList[0].rotate().rotate().toCubotString();
-        result[3]=faceList[3].rotate().rotate().toCubotString();
-        result[4]=faceList[4].rotate().rotate().toCubotString();
-        result[5]=faceList[5].rotate().rotate().toCubotString();
-
+        for (int i = 0; i < 6; i++) {
+            result[i] = new String(chars, i * 9, 9);
+        }
         return result;
     }
 
@@ -171,47 +158,44 @@ public class Cube implements Serializable {
      */
     public String toMin2PhaseString()
     {
-        StringBuffer buffer = new StringBuffer();
-
-        buffer.append(faceList[4].rotate().rotate().rotate().toMin2PhaseString());
-        buffer.append(faceList[1].toMin2PhaseString());
-        buffer.append(faceList[0].toMin2PhaseString());
-        buffer.append(faceList[5].rotate().toMin2PhaseString());
-        buffer.append(faceList[3].toMin2PhaseString());
-        buffer.append(faceList[2].toMin2PhaseString());
-
-        return buffer.toString();
+        char[] chars = new char[54];
+        writeMin2Phase(chars);
+        return new String(chars);
     }
 
+    /**
+     * Writes the cube in the input format of solver (Min2Phase) into a
+     * buffer, see {@link #toMin2PhaseString()}
+     * @param out Buffer of at least 54 entries to write to
+     */
+    public void writeMin2Phase(char[] out)
+    {
+        CubeEncoder.encode(state.getColours(), Min2PhaseFacelets.SQUARE, CubeEncoder.MIN2PHASE_CHARS, out, 0);
+    }
 
     /**
      * Converts cube into input format of display (animcube)
      * One string of 54 digits, 6 faces of 9 squares (not seperated)
      * In order: 0:White (U),1:Yellow (D),2:Orange (F),3:Red (B),4:Blue (L),5:Green (R)
+     * Faces are rotated so min2phase & animcube line up
      * @return Display String
      */
     public String toDisplayString()
     {
-        StringBuffer buffer = new StringBuffer();
-
-//        Original
-//        buffer.append(faceList[5].rotate().rotate().toDisplayString());
-//        buffer.append(faceList[4].rotate().toDisplayString());
-//        buffer.append(faceList[1].rotate().toDisplayString());
-//        buffer.append(faceList[3].rotate().toDisplayString());
-//        buffer.append(faceList[2].toDisplayString());
-//        buffer.append(faceList[0].rotate().toDisplayString());
-
-        //Reworked so min2phase & animcube line up
-        buffer.append(faceList[4].rotate().rotate().rotate().toDisplayString());
-        buffer.append(faceList[5].toDisplayString());
-        buffer.append(faceList[0].rotate().rotate().rotate().toDisplayString());
-        buffer.append(faceList[2].rotate().rotate().rotate().toDisplayString());
-        buffer.append(faceList[3].rotate().rotate().toDisplayString());
-        buffer.append(faceList[1].rotate().rotate().rotate().toDisplayString());
-
+        char[] chars = new char[54];
+        int length = writeDisplay(chars);
+        return new String(chars, 0, length);
+    }
 
-        return buffer.toString();
+    /**
+     * Writes the cube in the input format of display (animcube) into a
+     * buffer, see {@link #toDisplayString()}. Null squares are left out
+     * @param out Buffer of at least 54 entries to write to
+     * @return Number of digits written
+     */
+    public int writeDisplay(char[] out)
+    {
+        return CubeEncoder.encodeDisplay(state.getColours(), out);
     }
 
     /**
@@ -221,7 +205,7 @@ public class Cube implements Serializable {
         for (int i = 0; i < 54; i++) {
             if (i % 9 == 0)
                 System.out.println();
-            System.out.print(getLongArray().get(i).getColour() + " ");
+            System.out.print(state.getColour(i) + " ");
         }
         System.out.println(" ");
     }
@@ -233,26 +217,20 @@ public class Cube implements Serializable {
      * @return Whether all cube values have been updated or not.
      */
     public boolean isComplete() {
-        int nullCount = 0;
-        for (Face face: faceList)
+        for (int i = 0; i < 54; i++)
         {
-            for(int i = 0 ; i <9 ; i++)
-            {
-                if (face.getSquare(i).getColour() == CubeColour.NULL)
-                    nullCount ++;
-            }
+            if (state.getColour(i) == CubeColour.NULL)
+                return false;
         }
-        return nullCount == 0;
+        return true;
     }
 
     /**
-     * Check if a parity fail has been generated through the min2phase solver
-     * library
+     * Check if a parity fail would be found by the min2phase solver
+     * library, checked directly on the squares (see {@link CubieDiagnosis})
      * @return Whether the cube configuration contains a parity error or not
      */
     public boolean parityCheckFail() {
-        String min2phaseStr = toMin2PhaseString();
-        int error = verify(min2phaseStr);
-        return error != 0;
+        return new CubieDiagnosis().verify(state.getColours()) != CubieDiagnosis.VALID;
     }
 }
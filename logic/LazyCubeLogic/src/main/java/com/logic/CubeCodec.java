@@ -0,0 +1,214 @@
+package com.logic;
+
+/**
+ * @description Compact binary encodings of a {@link Cube}, for handing a
+ * cube between activities, checkpointing and logging without Java
+ * serialisation.
+ * <br>
+ * Three encodings are supported:
+ * <ul>
+ *     <li>Stickers: the colour ordinal of each of the 54 squares in 3 bits,
+ *     {@value #STICKER_BYTES} bytes. Works for any cube, including partly
+ *     scanned ones</li>
+ *     <li>Stickers with confidence: the sticker encoding followed by a 4 bit
+ *     quantised confidence for each square, {@value #CONFIDENCE_BYTES}
+ *     bytes</li>
+ *     <li>Cubies: the position and orientation of each edge and corner, as
+ *     min2phase stores them, {@value #CUBIE_BYTES} bytes. Only for solvable
+ *     cubes</li>
+ * </ul>
+ * Bits are packed least significant first. Decoders throw an
+ * {@link IllegalArgumentException} for data of the wrong length or with
+ * values out of range.
+ */
+public final class CubeCodec {
+    // Size of each encoding in bytes
+    public static final int STICKER_BYTES = (54 * 3 + 7) / 8;
+    public static final int CONFIDENCE_BYTES = STICKER_BYTES + 54 / 2;
+    public static final int CUBIE_BYTES = CubieDiagnosis.EDGES + CubieDiagnosis.CORNERS;
+
+    private static final int SQUARES = FaceletValidator.SQUARES;
+    private static final int COLOURS = CubeColour.values().length;
+    // Highest quantised confidence
+    private static final int MAX_LEVEL = 15;
+
+    private CubeCodec() {
+    }
+
+    /**
+     * Encodes the colour of every square, 3 bits each
+     * @param cube Cube to encode
+     * @return Encoded stickers, {@value #STICKER_BYTES} bytes
+     */
+    public static byte[] encodeStickers(Cube cube) {
+        byte[] data = new byte[STICKER_BYTES];
+        writeStickers(cube.getState().getColours(), data);
+        return data;
+    }
+
+    /**
+     * Decodes a cube from its stickers. Every known square is given a
+     * confidence of 1, as with a face seen once
+     * @param data Encoded stickers, from {@link #encodeStickers(Cube)}
+     * @return Decoded cube
+     */
+    public static Cube decodeStickers(byte[] data) {
+        checkLength(data, STICKER_BYTES);
+        Cube cube = new Cube(readStickers(data));
+        CubeState state = cube.getState();
+        for (int i = 0; i < SQUARES; i++) {
+            if (state.getColour(i) != CubeColour.NULL)
+                state.setColour(i, state.getColour(i), 1);
+        }
+        return cube;
+    }
+
+    /**
+     * Encodes the colour of every square, along with the confidence of that
+     * colour quantised to 4 bits (0 for never seen, otherwise one more than
+     * the log base 2 of the count)
+     * @param cube Cube to encode
+     * @return Encoded stickers and confidences, {@value #CONFIDENCE_BYTES} bytes
+     */
+    public static byte[] encodeStickersWithConfidence(Cube cube) {
+        byte[] data = new byte[CONFIDENCE_BYTES];
+        CubeState state = cube.getState();
+        writeStickers(state.getColours(), data);
+        for (int i = 0; i < SQUARES; i++) {
+            int level = quantise(state.getTimesSeen(i));
+            data[STICKER_BYTES + i / 2] |= (byte) (level << ((i & 1) * 4));
+        }
+        return data;
+    }
+
+    /**
+     * Decodes a cube from its stickers and confidences. Each square's colour
+     * is given the smallest count with its quantised confidence
+     * @param data Encoded stickers and confidences, from
+     *             {@link #encodeStickersWithConfidence(Cube)}
+     * @return Decoded cube
+     */
+    public static Cube decodeStickersWithConfidence(byte[] data) {
+        checkLength(data, CONFIDENCE_BYTES);
+        Cube cube = new Cube(readStickers(data));
+        CubeState state = cube.getState();
+        for (int i = 0; i < SQUARES; i++) {
+            int level = (data[STICKER_BYTES + i / 2] >> ((i & 1) * 4)) & 0xF;
+            state.setColour(i, state.getColour(i), dequantise(level));
+        }
+        return cube;
+    }
+
+    /**
+     * Encodes a solvable cube as its cubies: one byte per edge (piece << 1 |
+     * flip) followed by one byte per corner (twist << 3 | piece)
+     * @param cube Cube to encode
+     * @return Encoded cubies, {@value #CUBIE_BYTES} bytes
+     * @throws IllegalArgumentException If the cube can't be solved
+     */
+    public static byte[] encodeCubies(Cube cube) {
+        CubieDiagnosis diagnosis = new CubieDiagnosis();
+        int error = diagnosis.verify(cube.getState().getColours());
+        if (error != CubieDiagnosis.VALID)
+            throw new IllegalArgumentException("Cube can't be solved, error " + error);
+        byte[] data = new byte[CUBIE_BYTES];
+        System.arraycopy(diagnosis.getEdges(), 0, data, 0, CubieDiagnosis.EDGES);
+        System.arraycopy(diagnosis.getCorners(), 0, data, CubieDiagnosis.EDGES, CubieDiagnosis.CORNERS);
+        return data;
+    }
+
+    /**
+     * Decodes a cube from its cubies, as min2phase's {@code Util.toFaceCube}
+     * does. Every square is given a confidence of 1
+     * @param data Encoded cubies, from {@link #encodeCubies(Cube)}
+     * @return Decoded cube
+     */
+    public static Cube decodeCubies(byte[] data) {
+        checkLength(data, CUBIE_BYTES);
+        // min2phase face index of each facelet
+        int[] facelets = new int[SQUARES];
+        for (int face = 0; face < 6; face++) {
+            facelets[face * 9 + 4] = face;
+        }
+        for (int i = 0; i < CubieDiagnosis.CORNERS; i++) {
+            int corner = data[CubieDiagnosis.EDGES + i];
+            int piece = corner & 7;
+            int twist = corner >> 3;
+            if (corner < 0 || twist > 2)
+                throw new IllegalArgumentException("Invalid corner " + corner);
+            for (int n = 0; n < 3; n++) {
+                facelets[CubieDiagnosis.CORNER_FACELET[i][(n + twist) % 3]] = CubieDiagnosis.CORNER_FACELET[piece][n] / 9;
+            }
+        }
+        for (int i = 0; i < CubieDiagnosis.EDGES; i++) {
+            int edge = data[i];
+            int piece = edge >> 1;
+            int flip = edge & 1;
+            if (edge < 0 || piece >= CubieDiagnosis.EDGES)
+                throw new IllegalArgumentException("Invalid edge " + edge);
+            for (int n = 0; n < 2; n++) {
+                facelets[CubieDiagnosis.EDGE_FACELET[i][(n + flip) % 2]] = CubieDiagnosis.EDGE_FACELET[piece][n] / 9;
+            }
+        }
+        int[] colours = new int[SQUARES];
+        for (int i = 0; i < SQUARES; i++) {
+            colours[Min2PhaseFacelets.SQUARE[i]] = Min2PhaseFacelets.COLOUR_OF_FACE[facelets[i]];
+        }
+        Cube cube = new Cube(colours);
+        for (int i = 0; i < SQUARES; i++) {
+            cube.getState().setColour(i, cube.getState().getColour(i), 1);
+        }
+        return cube;
+    }
+
+    /**
+     * Packs colour ordinals into the start of a buffer, 3 bits each
+     */
+    private static void writeStickers(byte[] colours, byte[] data) {
+        for (int i = 0; i < SQUARES; i++) {
+            int bit = i * 3;
+            int value = colours[i] << (bit & 7);
+            data[bit >> 3] |= (byte) value;
+            if ((bit & 7) > 5)
+                data[(bit >> 3) + 1] |= (byte) (value >> 8);
+        }
+    }
+
+    /**
+     * Unpacks the colour ordinals of every square from the start of a buffer
+     */
+    private static int[] readStickers(byte[] data) {
+        int[] colours = new int[SQUARES];
+        for (int i = 0; i < SQUARES; i++) {
+            int bit = i * 3;
+            int value = (data[bit >> 3] & 0xFF) >> (bit & 7);
+            if ((bit & 7) > 5)
+                value |= (data[(bit >> 3) + 1] & 0xFF) << (8 - (bit & 7));
+            colours[i] = value & 7;
+            if (colours[i] >= COLOURS)
+                throw new IllegalArgumentException("Invalid colour " + colours[i] + " for square " + i);
+        }
+        return colours;
+    }
+
+    /**
+     * @return 4 bit confidence level of a count
+     */
+    static int quantise(int count) {
+        if (count <= 0)
+            return 0;
+        return Math.min(MAX_LEVEL, 32 - Integer.numberOfLeadingZeros(count));
+    }
+
+    /**
+     * @return Smallest count with a confidence level
+     */
+    static int dequantise(int level) {
+        return level == 0 ? 0 : 1 << (level - 1);
+    }
+
+    private static void checkLength(byte[] data, int length) {
+        if (data == null || data.length != length)
+            throw new IllegalArgumentException("Expected " + length + " bytes");
+    }
+}
@@ -0,0 +1,286 @@
+package com.logic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @description Fills in the unknown ({@link CubeColour#NULL}) squares of a
+ * partly scanned cube from the pieces of the cube that are already known.
+ * <br>
+ * Every corner and edge sticker belongs to a piece shared with other faces,
+ * so each piece position can only hold the pieces (and twists or flips)
+ * whose colours match its known stickers. A completion places every piece
+ * once, with corner twists summing to a multiple of 3, an even number of
+ * flipped edges, and edge and corner permutations of the same parity, so
+ * min2phase can solve it. Once five faces are known, every position has at
+ * least two of its corner stickers or one of its edge stickers, which leaves
+ * a single completion for about 9 in 10 random cubes and at most a few for
+ * the rest (when pieces still to be placed share the colours seen of them).
+ * With four faces there are tens of completions.
+ * <br>
+ * Pieces are placed with a backtracking search over the piece tables of
+ * {@link CubieDiagnosis}, positions with the fewest options first, stopping
+ * after a given number of completions. Not thread safe, as the search reuses
+ * this object's arrays.
+ */
+public final class CubeCompletion {
+    // Default number of completions to enumerate
+    public static final int DEFAULT_LIMIT = 128;
+
+    private static final int CORNERS = CubieDiagnosis.CORNERS;
+    private static final int EDGES = CubieDiagnosis.EDGES;
+    private static final int[][] CORNER_FACELET = CubieDiagnosis.CORNER_FACELET;
+    private static final int[][] EDGE_FACELET = CubieDiagnosis.EDGE_FACELET;
+    // Piece positions, corners first then edges
+    private static final int POSITIONS = CORNERS + EDGES;
+    // Facelet index marking an unknown square
+    private static final int UNKNOWN = -1;
+
+    // min2phase face index of each facelet, UNKNOWN if not yet scanned
+    private final byte[] facelets = new byte[Min2PhaseFacelets.FACELETS];
+    // Bit mask of the options that fit the known stickers of each position,
+    // bit (piece * 3 + twist) for corners and (piece * 2 + flip) for edges
+    private final int[] options = new int[POSITIONS];
+    // Positions in the order they are searched
+    private final int[] order = new int[POSITIONS];
+    // Option chosen for each position
+    private final int[] chosen = new int[POSITIONS];
+
+    // State of the search
+    private Cube partial;
+    private List<Cube> completions;
+    private int limit;
+    private int usedCorners;
+    private int usedEdges;
+
+    /**
+     * Finds the only way to complete a cube
+     * @param cube Cube with some squares unknown (not changed)
+     * @return New cube with every square known, or {@code null} if the
+     * cube can't be completed or can be completed in more than one way
+     */
+    public Cube complete(Cube cube) {
+        List<Cube> found = enumerate(cube, 2);
+        return found.size() == 1 ? found.get(0) : null;
+    }
+
+    /**
+     * Finds the ways to complete a cube, up to {@link #DEFAULT_LIMIT}
+     * @param cube Cube with some squares unknown (not changed)
+     * @return New cubes with every square known, empty if the known squares
+     * can't be part of a solvable cube
+     */
+    public List<Cube> enumerate(Cube cube) {
+        return enumerate(cube, DEFAULT_LIMIT);
+    }
+
+    /**
+     * Finds the ways to complete a cube. Squares filled in are set with no
+     * confidence, as they were never seen
+     * @param cube Cube with some squares unknown (not changed)
+     * @param limit Maximum number of completions to find
+     * @return New cubes with every square known, empty if the known squares
+     * can't be part of a solvable cube or the centres aren't all known
+     */
+    public List<Cube> enumerate(Cube cube, int limit) {
+        List<Cube> found = new ArrayList<>();
+        if (limit <= 0 || !toFacelets(cube.getState().getColours()))
+            return found;
+        for (int i = 0; i < CORNERS; i++) {
+            options[i] = cornerOptions(i);
+        }
+        for (int i = 0; i < EDGES; i++) {
+            options[CORNERS + i] = edgeOptions(i);
+        }
+        sortPositions();
+
+        partial = cube;
+        completions = found;
+        this.limit = limit;
+        usedCorners = usedEdges = 0;
+        search(0, 0, 0);
+        partial = null;
+        completions = null;
+        return found;
+    }
+
+    /**
+     * Converts the squares of a cube to min2phase faces, using the centres to
+     * map colours to faces as {@link Min2PhaseFacelets#toFacelets} does
+     * @return False if the centres aren't 6 different known colours
+     */
+    private boolean toFacelets(byte[] squares) {
+        int[] faceOf = {UNKNOWN, UNKNOWN, UNKNOWN, UNKNOWN, UNKNOWN, UNKNOWN, UNKNOWN};
+        for (int face = 0; face < 6; face++) {
+            int colour = squares[Min2PhaseFacelets.SQUARE[face * 9 + 4]];
+            if (colour == CubeColour.NULL.ordinal() || faceOf[colour] != UNKNOWN)
+                return false;
+            faceOf[colour] = face;
+        }
+        for (int i = 0; i < Min2PhaseFacelets.FACELETS; i++) {
+            facelets[i] = (byte) faceOf[squares[Min2PhaseFacelets.SQUARE[i]]];
+        }
+        return true;
+    }
+
+    /**
+     * @return Options of a corner position matching its known stickers. A
+     * corner piece with twist {@code t} has its sticker {@code k} on the
+     * position's facelet {@code (t + k) % 3}
+     */
+    private int cornerOptions(int position) {
+        int mask = 0;
+        for (int piece = 0; piece < CORNERS; piece++) {
+            for (int twist = 0; twist < 3; twist++) {
+                boolean fits = true;
+                for (int k = 0; k < 3 && fits; k++) {
+                    fits = matches(CORNER_FACELET[position][(twist + k) % 3], CORNER_FACELET[piece][k] / 9);
+                }
+                if (fits)
+                    mask |= 1 << (piece * 3 + twist);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @return Options of an edge position matching its known stickers
+     */
+    private int edgeOptions(int position) {
+        int mask = 0;
+        for (int piece = 0; piece < EDGES; piece++) {
+            for (int flip = 0; flip < 2; flip++) {
+                if (matches(EDGE_FACELET[position][flip], EDGE_FACELET[piece][0] / 9)
+                        && matches(EDGE_FACELET[position][1 - flip], EDGE_FACELET[piece][1] / 9))
+                    mask |= 1 << (piece * 2 + flip);
+            }
+        }
+        return mask;
+    }
+
+    private boolean matches(int facelet, int face) {
+        return facelets[facelet] == UNKNOWN || facelets[facelet] == face;
+    }
+
+    /**
+     * Orders the positions by their number of options, so known pieces are
+     * placed first and the search branches as late as possible
+     */
+    private void sortPositions() {
+        for (int i = 0; i < POSITIONS; i++) {
+            order[i] = i;
+        }
+        for (int i = 1; i < POSITIONS; i++) {
+            int position = order[i];
+            int count = Integer.bitCount(options[position]);
+            int j = i;
+            while (j > 0 && Integer.bitCount(options[order[j - 1]]) > count) {
+                order[j] = order[j - 1];
+                j--;
+            }
+            order[j] = position;
+        }
+    }
+
+    /**
+     * Places a piece in each remaining position in turn
+     * @param depth Number of positions placed
+     * @param twist Sum of the corner twists placed
+     * @param flip Sum of the edge flips placed
+     * @return True once enough completions have been found
+     */
+    private boolean search(int depth, int twist, int flip) {
+        if (depth == POSITIONS) {
+            if (twist % 3 == 0 && (flip & 1) == 0 && cornerParity() == edgeParity())
+                completions.add(fill());
+            return completions.size() >= limit;
+        }
+        int position = order[depth];
+        boolean corner = position < CORNERS;
+        int states = corner ? 3 : 2;
+        int remaining = options[position];
+        while (remaining != 0) {
+            int option = Integer.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            int piece = 1 << (option / states);
+            if (corner ? (usedCorners & piece) != 0 : (usedEdges & piece) != 0)
+                continue;
+            chosen[position] = option;
+            boolean done;
+            if (corner) {
+                usedCorners |= piece;
+                done = search(depth + 1, twist + option % 3, flip);
+                usedCorners &= ~piece;
+            } else {
+                usedEdges |= piece;
+                done = search(depth + 1, twist, flip + option % 2);
+                usedEdges &= ~piece;
+            }
+            if (done)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return Parity of the chosen corner permutation
+     */
+    private int cornerParity() {
+        int inversions = 0;
+        for (int i = 0; i < CORNERS; i++) {
+            for (int j = i + 1; j < CORNERS; j++) {
+                if (chosen[i] / 3 > chosen[j] / 3)
+                    inversions++;
+            }
+        }
+        return inversions & 1;
+    }
+
+    /**
+     * @return Parity of the chosen edge permutation
+     */
+    private int edgeParity() {
+        int inversions = 0;
+        for (int i = 0; i < EDGES; i++) {
+            for (int j = i + 1; j < EDGES; j++) {
+                if (chosen[CORNERS + i] / 2 > chosen[CORNERS + j] / 2)
+                    inversions++;
+            }
+        }
+        return inversions & 1;
+    }
+
+    /**
+     * @return Copy of the cube being completed, with its unknown squares set
+     * from the chosen pieces
+     */
+    private Cube fill() {
+        Cube cube = new Cube(partial);
+        CubeState state = cube.getState();
+        for (int i = 0; i < CORNERS; i++) {
+            int piece = chosen[i] / 3;
+            int twist = chosen[i] % 3;
+            for (int k = 0; k < 3; k++) {
+                setUnknown(state, CORNER_FACELET[i][(twist + k) % 3], CORNER_FACELET[piece][k] / 9);
+            }
+        }
+        for (int i = 0; i < EDGES; i++) {
+            int piece = chosen[CORNERS + i] / 2;
+            int flip = chosen[CORNERS + i] % 2;
+            setUnknown(state, EDGE_FACELET[i][flip], EDGE_FACELET[piece][0] / 9);
+            setUnknown(state, EDGE_FACELET[i][1 - flip], EDGE_FACELET[piece][1] / 9);
+        }
+        return cube;
+    }
+
+    /**
+     * Sets a facelet to the colour of a face's centre if it is unknown
+     */
+    private void setUnknown(CubeState state, int facelet, int face) {
+        if (facelets[facelet] != UNKNOWN)
+            return;
+        int square = Min2PhaseFacelets.SQUARE[facelet];
+        int centre = partial.getState().getColours()[Min2PhaseFacelets.SQUARE[face * 9 + 4]];
+        state.setColour(square, CubeState.COLOURS[centre], 0);
+    }
+}
@@ -0,0 +1,89 @@
+package com.logic;
+
+/**
+ * @description Writes the squares of a cube out in the formats used by the
+ * solvers and the display, straight from the packed colour ordinals (see
+ * {@link CubeState}).
+ * <br>
+ * Each format is a 54 entry table giving the cube square written to each
+ * output position, with the face rotations of the format built in, and a
+ * character for each colour ordinal. Encoding is then a single pass with no
+ * face copies or string replacements, into a buffer the caller can reuse.
+ */
+final class CubeEncoder {
+    // Number of squares in a cube
+    static final int SQUARES = 54;
+
+    // min2phase face letter of each colour ordinal, with orange as F and
+    // white as U. Unknown squares are written as N
+    static final char[] MIN2PHASE_CHARS = {'F', 'R', 'B', 'L', 'U', 'D', 'N'};
+    // Cubot.io letter of each colour ordinal, the first letter of its name
+    static final char[] CUBOT_CHARS = {'O', 'G', 'R', 'B', 'W', 'Y', 'N'};
+    // AnimCube digit of each colour ordinal. Unknown squares have no digit
+    // and are left out
+    static final char[] DISPLAY_CHARS = {'2', '5', '3', '4', '0', '1', 0};
+    // Order of the squares of a face in the AnimCube format
+    static final int[] DISPLAY_FACE_ORDER = {6, 7, 8, 3, 4, 5, 0, 1, 2};
+
+    // Cube square written to each position of the Cubot.io face strings, in
+    // order red, green, orange, blue, white, yellow
+    static final int[] CUBOT_SQUARE = layout(new int[][]{{2, 0}, {1, 2}, {0, 2}, {3, 2}, {4, 2}, {5, 2}}, null);
+    // Cube square written to each position of the AnimCube string, in order
+    // white, yellow, orange, red, blue, green
+    static final int[] DISPLAY_SQUARE = layout(new int[][]{{4, 3}, {5, 0}, {0, 3}, {2, 3}, {3, 2}, {1, 3}},
+            DISPLAY_FACE_ORDER);
+
+    private CubeEncoder() {
+    }
+
+    /**
+     * Builds the square table of a format
+     * @param faces Cube face and number of clockwise rotations written for
+     *              each face of the format, in output order
+     * @param faceOrder Order the squares of each rotated face are written
+     *                  in, or {@code null} for 0 to 8
+     * @return Cube square written to each output position
+     */
+    static int[] layout(int[][] faces, int[] faceOrder) {
+        int[] squares = new int[SQUARES];
+        for (int face = 0; face < faces.length; face++) {
+            int[] rotation = Face.ROTATED_INDEX[faces[face][1]];
+            for (int i = 0; i < 9; i++) {
+                int square = faceOrder == null ? i : faceOrder[i];
+                squares[face * 9 + i] = faces[face][0] * 9 + rotation[square];
+            }
+        }
+        return squares;
+    }
+
+    /**
+     * Writes every square of a cube through a format's tables
+     * @param colours Colour ordinal of each cube square
+     * @param layout Cube square written to each output position
+     * @param chars Character written for each colour ordinal
+     * @param out Buffer to write to
+     * @param offset Position in {@code out} to start writing at
+     */
+    static void encode(byte[] colours, int[] layout, char[] chars, char[] out, int offset) {
+        for (int i = 0; i < SQUARES; i++) {
+            out[offset + i] = chars[colours[layout[i]]];
+        }
+    }
+
+    /**
+     * Writes every square of a cube in the AnimCube format, leaving out
+     * squares with no digit
+     * @param colours Colour ordinal of each cube square
+     * @param out Buffer of at least 54 entries to write to
+     * @return Number of characters written
+     */
+    static int encodeDisplay(byte[] colours, char[] out) {
+        int length = 0;
+        for (int i = 0; i < SQUARES; i++) {
+            char digit = DISPLAY_CHARS[colours[DISPLAY_SQUARE[i]]];
+            if (digit != 0)
+                out[length++] = digit;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,402 @@
+package com.logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @description Rebuilds a cube that failed to validate from the confidence
+ * histograms of its squares, by finding the most likely set of colours (and
+ * face rotations) that gives a solvable cube.
+ * <br>
+ * Each square's histogram is treated as a likelihood, with add-one
+ * smoothing, so the cost of showing a colour is the negative log of its
+ * share of the square's detections. Starting from every square's most seen
+ * colour, other colours a square has been seen as are tried as changes,
+ * with each change costing the difference in log likelihood. Sets of
+ * changes are searched best first (cheapest total first), so the first set
+ * that passes the colour counts, the {@link RotationSolver} and
+ * {@link CubieDiagnosis} is the most likely valid cube. The search stops
+ * early once its time budget or candidate limit runs out.
+ * <br>
+ * Candidates that pass the colour counts can also be solved in parallel
+ * (see {@link #reconstruct(Cube, ForkJoinPool, AtomicBoolean)}), in batches
+ * taken in order of cost. Each candidate is solved on its own copy of the
+ * colours, and once one is valid the more costly candidates in its batch
+ * are skipped, so the result is the same as searching one at a time.
+ * <br>
+ * Not thread safe, as each reconstruction reuses this object's buffers.
+ */
+public class CubeReconstructor {
+    // Default time allowed for a reconstruction, in nanoseconds
+    public static final long DEFAULT_BUDGET_NANOS = 50_000_000L;
+    // Default number of candidate cubes checked before giving up
+    public static final int DEFAULT_MAX_CANDIDATES = 50_000;
+
+    private static final int SQUARES = FaceletValidator.SQUARES;
+    private static final int COLOURS = 6;
+    private static final int NULL = CubeColour.NULL.ordinal();
+    // Number of candidates solved in parallel for each thread in the pool
+    private static final int BATCH_PER_THREAD = 2;
+
+    // Search limits
+    private final long budgetNanos;
+    private final int maxCandidates;
+
+    // Solves candidates on the calling thread
+    private final Checker checker = new Checker();
+    // Solves candidates on each thread of a pool
+    private final ThreadLocal<Checker> checkers = new ThreadLocal<Checker>() {
+        @Override
+        protected Checker initialValue() {
+            return new Checker();
+        }
+    };
+
+    // Most likely colour of each square
+    private final byte[] base = new byte[SQUARES];
+    // Possible changes, sorted by cost: square, colour and cost of each
+    private int[] changeSquare = new int[SQUARES];
+    private byte[] changeColour = new byte[SQUARES];
+    private double[] changeCost = new double[SQUARES];
+    private int changeCount;
+
+    // Number of candidates checked by the last reconstruction
+    private int candidatesChecked;
+
+    /**
+     * Creates a reconstructor with the default search limits
+     */
+    public CubeReconstructor() {
+        this(DEFAULT_BUDGET_NANOS, DEFAULT_MAX_CANDIDATES);
+    }
+
+    /**
+     * Creates a reconstructor with the given search limits
+     * @param budgetNanos Time allowed for each reconstruction, in nanoseconds
+     * @param maxCandidates Number of candidate cubes checked before giving up
+     */
+    public CubeReconstructor(long budgetNanos, int maxCandidates) {
+        this.budgetNanos = budgetNanos;
+        this.maxCandidates = maxCandidates;
+    }
+
+    /**
+     * Finds the most likely valid, solvable cube given the colours each
+     * square has been seen as
+     * @param cube Cube with every face placed by its center colour, in any
+     *             rotation (not changed)
+     * @return New cube with colours and face rotations fixed, or {@code null}
+     * if none was found within the search limits
+     */
+    public Cube reconstruct(Cube cube) {
+        long deadline = System.nanoTime() + budgetNanos;
+        candidatesChecked = 0;
+        if (!findChanges(cube))
+            return null;
+
+        Cube result = check(cube, null);
+        if (result != null || changeCount == 0)
+            return result;
+        PriorityQueue<Changes> queue = startSearch();
+        while (!queue.isEmpty() && candidatesChecked < maxCandidates && System.nanoTime() < deadline) {
+            result = check(cube, nextChanges(queue));
+            if (result != null)
+                return result;
+        }
+        return null;
+    }
+
+    /**
+     * Finds the most likely valid, solvable cube as
+     * {@link #reconstruct(Cube)} does, solving candidates on the threads of a
+     * pool. Should be called from a thread of the pool, so the calling thread
+     * helps solve each batch rather than waiting for it
+     * @param cube Cube with every face placed by its center colour, in any
+     *             rotation (not changed)
+     * @param pool Pool to solve candidates on
+     * @param cancelled Flag set to stop the search early
+     * @return New cube with colours and face rotations fixed, or {@code null}
+     * if none was found within the search limits or it was cancelled
+     */
+    public Cube reconstruct(Cube cube, ForkJoinPool pool, AtomicBoolean cancelled) {
+        long deadline = System.nanoTime() + budgetNanos;
+        candidatesChecked = 0;
+        if (!findChanges(cube))
+            return null;
+
+        Cube result = check(cube, null);
+        if (result != null || changeCount == 0)
+            return result;
+        int batchSize = pool.getParallelism() * BATCH_PER_THREAD;
+        List<byte[]> batch = new ArrayList<>(batchSize);
+        PriorityQueue<Changes> queue = startSearch();
+        while (!cancelled.get()) {
+            boolean searching = !queue.isEmpty() && candidatesChecked < maxCandidates
+                    && System.nanoTime() < deadline;
+            if (searching) {
+                candidatesChecked++;
+                if (checker.fill(nextChanges(queue)))
+                    batch.add(checker.candidate.clone());
+                if (batch.size() < batchSize)
+                    continue;
+            }
+            if (batch.isEmpty())
+                return null;
+            result = solveBatch(cube, batch, pool, cancelled);
+            if (result != null || !searching)
+                return result;
+            batch.clear();
+        }
+        return null;
+    }
+
+    /**
+     * Solves a batch of candidates in parallel
+     * @param cube Cube being reconstructed
+     * @param batch Colours of each candidate, in order of cost
+     * @param pool Pool to solve the candidates on
+     * @param cancelled Flag set to stop the search early
+     * @return Valid, solvable cube from the cheapest valid candidate, or
+     * {@code null} if none are valid
+     */
+    private Cube solveBatch(Cube cube, List<byte[]> batch, ForkJoinPool pool, AtomicBoolean cancelled) {
+        Cube[] results = new Cube[batch.size()];
+        // Index of the cheapest valid candidate found so far
+        AtomicInteger best = new AtomicInteger(batch.size());
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            int index = i;
+            tasks.add(ForkJoinTask.adapt(() -> {
+                // A cheaper candidate is already valid
+                if (cancelled.get() || best.get() < index)
+                    return;
+                Cube result = checkers.get().solve(cube, batch.get(index));
+                if (result != null) {
+                    results[index] = result;
+                    best.accumulateAndGet(index, Math::min);
+                }
+            }));
+        }
+        if (ForkJoinTask.inForkJoinPool())
+            ForkJoinTask.invokeAll(tasks);
+        else
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        return best.get() < batch.size() ? results[best.get()] : null;
+    }
+
+    /**
+     * Starts the search over sets of changes. Each node is a set of changes,
+     * ending with its highest change. The children of a set either add the
+     * next change, or swap the highest change for the next one, so every set
+     * is reached exactly once, in order of cost
+     * @return Queue of sets to search, holding the cheapest change
+     */
+    private PriorityQueue<Changes> startSearch() {
+        PriorityQueue<Changes> queue = new PriorityQueue<>();
+        queue.add(new Changes(null, 0, changeCost[0]));
+        return queue;
+    }
+
+    /**
+     * Takes the cheapest set of changes from the search, adding its children
+     * @param queue Queue of sets to search
+     * @return Cheapest set of changes
+     */
+    private Changes nextChanges(PriorityQueue<Changes> queue) {
+        Changes changes = queue.poll();
+        int next = changes.last + 1;
+        if (next < changeCount) {
+            queue.add(new Changes(changes, next, changes.cost + changeCost[next]));
+            queue.add(new Changes(changes.previous, next,
+                    changes.cost - changeCost[changes.last] + changeCost[next]));
+        }
+        return changes;
+    }
+
+    /**
+     * @return Number of candidate cubes checked by the last reconstruction
+     */
+    public int getCandidatesChecked() {
+        return candidatesChecked;
+    }
+
+    /**
+     * Finds the most likely colour of every square, and every change to
+     * another colour the square has been seen as, sorted by cost
+     * @param cube Cube to read the confidence histograms of
+     * @return False if a square has never been seen
+     */
+    private boolean findChanges(Cube cube) {
+        ColourHistogram confidence = cube.getState().getConfidence();
+        byte[] colours = cube.getState().getColours();
+        changeCount = 0;
+        for (int square = 0; square < SQUARES; square++) {
+            int total = confidence.getTotal(square);
+            if (colours[square] == NULL)
+                return false;
+            if (total == 0) {
+                base[square] = colours[square];
+                continue;
+            }
+            base[square] = (byte) confidence.getLeader(square);
+            // Centers decide which face is which, so they are never changed
+            if (square % 9 == 4)
+                continue;
+            double leaderCost = cost(confidence.getLeaderCount(square), total);
+            for (int colour = 0; colour < COLOURS; colour++) {
+                int count = confidence.get(square, colour);
+                if (colour == base[square] || count == 0)
+                    continue;
+                addChange(square, colour, cost(count, total) - leaderCost);
+            }
+        }
+        sortChanges();
+        return true;
+    }
+
+    private void addChange(int square, int colour, double cost) {
+        if (changeCount == changeSquare.length) {
+            changeSquare = Arrays.copyOf(changeSquare, changeCount * 2);
+            changeColour = Arrays.copyOf(changeColour, changeCount * 2);
+            changeCost = Arrays.copyOf(changeCost, changeCount * 2);
+        }
+        changeSquare[changeCount] = square;
+        changeColour[changeCount] = (byte) colour;
+        changeCost[changeCount] = cost;
+        changeCount++;
+    }
+
+    /**
+     * Sorts the changes by cost, with an insertion sort as there are only a
+     * few per square
+     */
+    private void sortChanges() {
+        for (int i = 1; i < changeCount; i++) {
+            int square = changeSquare[i];
+            byte colour = changeColour[i];
+            double cost = changeCost[i];
+            int j = i;
+            while (j > 0 && changeCost[j - 1] > cost) {
+                changeSquare[j] = changeSquare[j - 1];
+                changeColour[j] = changeColour[j - 1];
+                changeCost[j] = changeCost[j - 1];
+                j--;
+            }
+            changeSquare[j] = square;
+            changeColour[j] = colour;
+            changeCost[j] = cost;
+        }
+    }
+
+    /**
+     * Checks a candidate cube, made from the most likely colours with a set
+     * of changes applied
+     * @param cube Cube being reconstructed
+     * @param changes Changes to apply, or {@code null} for none
+     * @return Valid, solvable cube, or {@code null} if the candidate isn't one
+     */
+    private Cube check(Cube cube, Changes changes) {
+        candidatesChecked++;
+        if (!checker.fill(changes))
+            return null;
+        return checker.solve(cube, checker.candidate);
+    }
+
+    /**
+     * @return Cost of a colour seen {@code count} times out of {@code total}
+     * detections, as a negative log likelihood
+     */
+    private static double cost(int count, int total) {
+        return -Math.log((count + 1.0) / (total + COLOURS));
+    }
+
+    /**
+     * Solver and buffers for checking candidates, one for each thread
+     */
+    private class Checker {
+        // Finds rotations of the faces for each candidate
+        private final RotationSolver solver = new RotationSolver();
+        private final CubieDiagnosis diagnosis = new CubieDiagnosis();
+        private final int[] domains = new int[COLOURS];
+        // Colours of the candidate being checked
+        private final byte[] candidate = new byte[SQUARES];
+
+        Checker() {
+            Arrays.fill(domains, RotationSolver.ALL_ROTATIONS);
+        }
+
+        /**
+         * Fills the candidate buffer with the most likely colours and a set
+         * of changes, checking the colour counts
+         * @param changes Changes to apply, or {@code null} for none
+         * @return Whether every colour is used exactly 9 times
+         */
+        boolean fill(Changes changes) {
+            System.arraycopy(base, 0, candidate, 0, SQUARES);
+            // Squares changed by this set, a set changing one square twice is
+            // not a real candidate
+            long changed = 0;
+            for (Changes c = changes; c != null; c = c.previous) {
+                int square = changeSquare[c.last];
+                if ((changed & (1L << square)) != 0)
+                    return false;
+                changed |= 1L << square;
+                candidate[square] = changeColour[c.last];
+            }
+            // Every colour must be used exactly 9 times
+            long counts = 0;
+            for (int i = 0; i < SQUARES; i++) {
+                counts += 1L << (candidate[i] * 8);
+            }
+            return counts == 0x090909090909L;
+        }
+
+        /**
+         * Finds face rotations giving a solvable cube with the given colours
+         * @param cube Cube being reconstructed
+         * @param colours Colour ordinal of every square
+         * @return Valid, solvable cube, or {@code null} if there isn't one
+         */
+        Cube solve(Cube cube, byte[] colours) {
+            Cube candidateCube = new Cube(cube);
+            for (int i = 0; i < SQUARES; i++) {
+                candidateCube.getState().setColourValue(i, CubeState.COLOURS[colours[i]]);
+            }
+            Cube rotated = solver.solve(candidateCube, domains, false);
+            if (rotated == null)
+                return null;
+            if (diagnosis.diagnose(rotated) == CubieDiagnosis.VALID)
+                return rotated;
+            return diagnosis.applyRotationFix(rotated);
+        }
+    }
+
+    /**
+     * Set of changes in the search, stored as a chain of the changes made
+     */
+    private static class Changes implements Comparable<Changes> {
+        // Set without its highest change, or null if it only has one
+        final Changes previous;
+        // Index of the highest change in the set
+        final int last;
+        // Total cost of the changes
+        final double cost;
+
+        Changes(Changes previous, int last, double cost) {
+            this.previous = previous;
+            this.last = last;
+            this.cost = cost;
+        }
+
+        @Override
+        public int compareTo(Changes other) {
+            return Double.compare(cost, other.cost);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.logic;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * @description Packed storage for the squares of a cube (or a single face or
+ * square). Each square is stored as a colour ordinal within a flat
+ * {@code byte} array, along with a row of confidence values (one for each
+ * {@link CubeColour}) within a {@link ColourHistogram}.
+ * <br>
+ * {@link Cube}, {@link Face} and {@link Square} are views over a
+ * {@code CubeState}, so copying any of them is a single array copy rather
+ * than copying a graph of objects.
+ */
+public class CubeState implements Serializable {
+    // Version of the serialized form, kept so a Cube can still be
+    // serialized
+    private static final long serialVersionUID = 1L;
+
+    // Cached colour values, so colour ordinals can be converted without
+    // allocating a new array through CubeColour.values()
+    static final CubeColour[] COLOURS = CubeColour.values();
+
+    // Number of squares held in this state
+    private final int size;
+    // Colour ordinal currently shown by each square
+    private final byte[] colours;
+    // Confidence (times seen) of each colour for each square
+    private final ColourHistogram confidence;
+
+    /**
+     * Creates a new state of the given number of squares, with every square
+     * set to {@link CubeColour#NULL} and all confidence values set to 0
+     * @param size Number of squares to store
+     */
+    public CubeState(int size) {
+        this.size = size;
+        colours = new byte[size];
+        confidence = new ColourHistogram(size);
+        Arrays.fill(colours, (byte) CubeColour.NULL.ordinal());
+    }
+
+    /**
+     * Creates a copy of another state
+     * @param state State to copy
+     */
+    public CubeState(CubeState state) {
+        size = state.size;
+        colours = state.colours.clone();
+        confidence = new ColourHistogram(state.confidence);
+    }
+
+    /**
+     * @return Number of squares held in this state
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Copies all squares from another state of the same size into this one
+     * @param state State to copy from
+     */
+    public void copyFrom(CubeState state) {
+        copySquares(state, 0, 0, size);
+    }
+
+    /**
+     * Copies a run of squares (colours and confidence values) from another
+     * state into this one
+     * @param source State to copy from
+     * @param sourceIndex Index of the first square to copy in {@code source}
+     * @param index Index of the first square to overwrite in this state
+     * @param count Number of squares to copy
+     */
+    void copySquares(CubeState source, int sourceIndex, int index, int count) {
+        System.arraycopy(source.colours, sourceIndex, colours, index, count);
+        confidence.copy(source.confidence, sourceIndex, index, count);
+    }
+
+    /**
+     * Copies a run of squares from another state into this one, through an
+     * index permutation. Square {@code index + i} is set to square
+     * {@code sourceIndex + permutation[i]}
+     * @param source State to copy from (must not be this state)
+     * @param sourceIndex Index of the first square of the run in {@code source}
+     * @param permutation Index permutation to copy through
+     * @param index Index of the first square to overwrite in this state
+     */
+    void copySquares(CubeState source, int sourceIndex, int[] permutation, int index) {
+        for (int i = 0; i < permutation.length; i++) {
+            int from = sourceIndex + permutation[i];
+            colours[index + i] = source.colours[from];
+            confidence.copy(source.confidence, from, index + i, 1);
+        }
+    }
+
+    /**
+     * Resets a run of squares to {@link CubeColour#NULL}, with no confidence
+     * @param index Index of the first square to reset
+     * @param count Number of squares to reset
+     */
+    void clearSquares(int index, int count) {
+        Arrays.fill(colours, index, index + count, (byte) CubeColour.NULL.ordinal());
+        confidence.clear(index, count);
+    }
+
+    /**
+     * Gets the raw colour ordinals of every square. Used by validation and
+     * encoding code that works directly on the packed representation
+     * @return Array of colour ordinals (not a copy)
+     */
+    byte[] getColours() {
+        return colours;
+    }
+
+    /**
+     * @param index Square to be indexed
+     * @return Colour value of the square
+     */
+    public CubeColour getColour(int index) {
+        return COLOURS[colours[index]];
+    }
+
+    /**
+     * Sets the value shown by a square, without changing its confidence values
+     * @param index Square to be indexed
+     * @param colour Colour to be set to
+     */
+    public void setColourValue(int index, CubeColour colour) {
+        colours[index] = (byte) colour.ordinal();
+    }
+
+    /**
+     * @return Confidence histograms of every square (not a copy)
+     */
+    ColourHistogram getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * @param index Square to be indexed
+     * @return Confidence of the colour currently shown by the square
+     */
+    public int getTimesSeen(int index) {
+        return confidence.get(index, colours[index]);
+    }
+
+    /**
+     * @param index Square to be indexed
+     * @param colour Colour to get the confidence of
+     * @return Confidence of the given colour for the square
+     */
+    public int getTimesSeen(int index, CubeColour colour) {
+        return confidence.get(index, colour.ordinal());
+    }
+
+    /**
+     * Replaces the confidence of a square's colour with a new confidence,
+     * updating the colour shown by the square if needed
+     * @param index Square to be indexed
+     * @param colour The colour of the square that was detected
+     * @param timesSeen The confidence value of the square that was detected
+     */
+    public void setColour(int index, CubeColour colour, int timesSeen) {
+        int current = colours[index];
+        // Make sure that if the new colour is more confident than the saved
+        // one it will be replaced
+        if (current == CubeColour.NULL.ordinal() || confidence.get(index, current) < timesSeen) {
+            colours[index] = (byte) colour.ordinal();
+        }
+        // If the current set colour has had its confidence decreased, check
+        // if it should be replaced as the saved colour value
+        else if (current == colour.ordinal() && timesSeen < confidence.get(index, current)) {
+            colourCheck(index);
+        }
+        confidence.set(index, colour.ordinal(), timesSeen);
+    }
+
+    /**
+     * Adds 1 to the confidence of the given colour for a square
+     * @param index Square to be indexed
+     * @param colour Colour to increment the confidence of
+     */
+    public void incrementColour(int index, CubeColour colour) {
+        confidence.increment(index, colour.ordinal());
+        colourCheck(index);
+    }
+
+    /**
+     * Replaces the colour shown by a square with the most seen colour, if the
+     * shown colour is no longer the most seen
+     * @param index Square to be indexed
+     */
+    private void colourCheck(int index) {
+        if (confidence.isBehindLeader(index, colours[index]))
+            colours[index] = (byte) confidence.getLeader(index);
+    }
+
+    /**
+     * Get the second-highest confidence colour of a square
+     * @param index Square to be indexed
+     * @return The {@link CubeColour} of the second-highest time seen colour
+     */
+    public CubeColour getSecondTimesSeenColour(int index) {
+        return COLOURS[confidence.getRunnerUp(index)];
+    }
+
+    /**
+     * Get the second-highest confidence count of a square
+     * @param index Square to be indexed
+     * @return The number of times the second-highest time seen colour has
+     * been detected
+     */
+    public int getSecondTimesSeenCount(int index) {
+        return confidence.getRunnerUpCount(index);
+    }
+}
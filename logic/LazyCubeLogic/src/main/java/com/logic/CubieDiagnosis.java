@@ -0,0 +1,408 @@
+package com.logic;
+
+/**
+ * @description Finds out why a complete cube can't be solved, by converting
+ * it to cubie form (the position and orientation of each of the 12 edges and
+ * 8 corners) the same way the min2phase solver does. Gives the same error
+ * codes as {@code Tools.verify}, along with the pieces causing them, and
+ * looks for a set of face rotations that makes the cube solvable.
+ * <br>
+ * Edge positions are numbered UR, UF, UL, UB, DR, DF, DL, DB, FR, FL, BL, BR
+ * and corner positions URF, UFL, ULB, UBR, DFR, DLF, DBL, DRB, as in
+ * min2phase. Sets of pieces are returned as bit masks, with bit {@code i}
+ * set for position {@code i}. Not thread safe, as the conversion reuses this
+ * object's arrays.
+ */
+public class CubieDiagnosis {
+    // Error codes, matching those of min2phase's verify
+    public static final int VALID = 0;
+    public static final int INVALID_FACELETS = -1;
+    public static final int MISSING_EDGE = -2;
+    public static final int FLIPPED_EDGE = -3;
+    public static final int MISSING_CORNER = -4;
+    public static final int TWISTED_CORNER = -5;
+    public static final int PARITY_ERROR = -6;
+
+    // Names of the edge and corner positions, for printing
+    public static final String[] EDGE_NAMES = {"UR", "UF", "UL", "UB", "DR", "DF", "DL", "DB", "FR", "FL", "BL", "BR"};
+    public static final String[] CORNER_NAMES = {"URF", "UFL", "ULB", "UBR", "DFR", "DLF", "DBL", "DRB"};
+
+    static final int EDGES = 12;
+    static final int CORNERS = 8;
+    private static final int FACES = 6;
+    // min2phase face indexes of the U and D faces
+    private static final int U = 0;
+    private static final int D = 3;
+
+    // min2phase facelet indexes of each corner, starting from its U or D
+    // facelet and going clockwise
+    static final int[][] CORNER_FACELET = {
+            {8, 9, 20}, {6, 18, 38}, {0, 36, 47}, {2, 45, 11},
+            {29, 26, 15}, {27, 44, 24}, {33, 53, 42}, {35, 17, 51}};
+    // min2phase facelet indexes of each edge
+    static final int[][] EDGE_FACELET = {
+            {5, 10}, {7, 19}, {3, 37}, {1, 46}, {32, 16}, {28, 25},
+            {30, 43}, {34, 52}, {23, 12}, {21, 41}, {50, 39}, {48, 14}};
+    // Every combination of face rotations (2 bits per face), except rotating
+    // nothing, ordered by the number of faces rotated
+    private static final int[] ROTATION_FIXES = new int[(1 << (2 * FACES)) - 1];
+
+    static {
+        int fix = 0;
+        for (int rotated = 1; rotated <= FACES; rotated++) {
+            for (int combination = 1; combination < 1 << (2 * FACES); combination++) {
+                if (rotatedFaces(combination) == rotated)
+                    ROTATION_FIXES[fix++] = combination;
+            }
+        }
+    }
+
+    // min2phase face index of each facelet
+    private final byte[] facelets = new byte[Min2PhaseFacelets.FACELETS];
+    // Cubie form, as min2phase stores it: piece << 1 | flip for edges,
+    // twist << 3 | piece for corners
+    private final byte[] edges = new byte[EDGES];
+    private final byte[] corners = new byte[CORNERS];
+    // Colours of the cube with a set of face rotations applied
+    private final byte[] rotated = new byte[FaceletValidator.SQUARES];
+
+    // Results of the last diagnosis
+    private int error;
+    private int unknownEdges;
+    private int flippedEdges;
+    private int missingEdges;
+    private int unknownCorners;
+    private int twistedCorners;
+    private int missingCorners;
+    private int parity;
+    private int rotationFix;
+
+    /**
+     * Diagnoses a cube, replacing the results of any previous diagnosis
+     * @param cube Cube to diagnose (not changed)
+     * @return Error code, {@link #VALID} if the cube can be solved
+     */
+    public int diagnose(Cube cube) {
+        byte[] squares = cube.getState().getColours();
+        error = verify(squares);
+        flippedEdges = missingEdges = 0;
+        twistedCorners = missingCorners = 0;
+        parity = 0;
+        rotationFix = -1;
+        if (error == INVALID_FACELETS) {
+            unknownEdges = unknownCorners = 0;
+            return error;
+        }
+
+        // Report every piece at fault, not just the first check that fails
+        int edgesSeen = 0;
+        for (int i = 0; i < EDGES; i++) {
+            int piece = edges[i] >> 1;
+            if ((unknownEdges & (1 << i)) == 0)
+                edgesSeen |= 1 << piece;
+            flippedEdges |= (edges[i] & 1) << i;
+        }
+        missingEdges = ~edgesSeen & ((1 << EDGES) - 1);
+        int cornersSeen = 0;
+        for (int i = 0; i < CORNERS; i++) {
+            if ((unknownCorners & (1 << i)) == 0)
+                cornersSeen |= 1 << (corners[i] & 7);
+            if ((corners[i] >> 3) != 0)
+                twistedCorners |= 1 << i;
+        }
+        missingCorners = ~cornersSeen & ((1 << CORNERS) - 1);
+        if (missingEdges == 0 && missingCorners == 0)
+            parity = permutationParity();
+
+        if (error != VALID)
+            findRotationFix(squares);
+        return error;
+    }
+
+    /**
+     * Checks whether a cube can be solved, giving the same result as running
+     * min2phase's verify on {@link Cube#toMin2PhaseString()}
+     * @param squares Colour ordinal of each cube square
+     * @return Error code, {@link #VALID} if the cube can be solved
+     */
+    public int verify(byte[] squares) {
+        if (!Min2PhaseFacelets.toFacelets(squares, facelets))
+            return INVALID_FACELETS;
+        toCubies();
+
+        int edgeMask = 0;
+        int flip = 0;
+        for (int i = 0; i < EDGES; i++) {
+            edgeMask |= 1 << (edges[i] >> 1);
+            flip ^= edges[i] & 1;
+        }
+        if (edgeMask != (1 << EDGES) - 1)
+            return MISSING_EDGE;
+        if (flip != 0)
+            return FLIPPED_EDGE;
+        int cornerMask = 0;
+        int twist = 0;
+        for (int i = 0; i < CORNERS; i++) {
+            cornerMask |= 1 << (corners[i] & 7);
+            twist += corners[i] >> 3;
+        }
+        if (cornerMask != (1 << CORNERS) - 1)
+            return MISSING_CORNER;
+        if (twist % 3 != 0)
+            return TWISTED_CORNER;
+        if (permutationParity() != 0)
+            return PARITY_ERROR;
+        return VALID;
+    }
+
+    /**
+     * Converts the facelets to cubie form, as min2phase's
+     * {@code Util.toCubieCube} does. Pieces with no matching colours are
+     * stored as piece 0, and marked as unknown
+     */
+    private void toCubies() {
+        unknownCorners = 0;
+        for (int i = 0; i < CORNERS; i++) {
+            int ori = 0;
+            while (ori < 3 && facelets[CORNER_FACELET[i][ori]] != U && facelets[CORNER_FACELET[i][ori]] != D) {
+                ori++;
+            }
+            int col1 = facelets[CORNER_FACELET[i][(ori + 1) % 3]];
+            int col2 = facelets[CORNER_FACELET[i][(ori + 2) % 3]];
+            corners[i] = 0;
+            unknownCorners |= 1 << i;
+            for (int j = 0; j < CORNERS; j++) {
+                if (col1 == CORNER_FACELET[j][1] / 9 && col2 == CORNER_FACELET[j][2] / 9) {
+                    corners[i] = (byte) (ori % 3 << 3 | j);
+                    unknownCorners &= ~(1 << i);
+                    break;
+                }
+            }
+        }
+        unknownEdges = 0;
+        for (int i = 0; i < EDGES; i++) {
+            int a = facelets[EDGE_FACELET[i][0]];
+            int b = facelets[EDGE_FACELET[i][1]];
+            edges[i] = 0;
+            unknownEdges |= 1 << i;
+            for (int j = 0; j < EDGES; j++) {
+                int faceA = EDGE_FACELET[j][0] / 9;
+                int faceB = EDGE_FACELET[j][1] / 9;
+                if (a == faceA && b == faceB) {
+                    edges[i] = (byte) (j << 1);
+                } else if (a == faceB && b == faceA) {
+                    edges[i] = (byte) (j << 1 | 1);
+                } else {
+                    continue;
+                }
+                unknownEdges &= ~(1 << i);
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return Parity of the edge permutation XOR the parity of the corner
+     * permutation, only meaningful when every piece is present once
+     */
+    private int permutationParity() {
+        int inversions = 0;
+        for (int i = 0; i < EDGES; i++) {
+            for (int j = i + 1; j < EDGES; j++) {
+                if ((edges[i] >> 1) > (edges[j] >> 1))
+                    inversions++;
+            }
+        }
+        for (int i = 0; i < CORNERS; i++) {
+            for (int j = i + 1; j < CORNERS; j++) {
+                if ((corners[i] & 7) > (corners[j] & 7))
+                    inversions++;
+            }
+        }
+        return inversions & 1;
+    }
+
+    /**
+     * Looks for the fewest face rotations that give a valid, solvable cube.
+     * Rotating a face never changes the centers or colour counts, so only
+     * the piece checks can be fixed this way
+     * @param squares Colour ordinal of each cube square
+     */
+    private void findRotationFix(byte[] squares) {
+        for (int fix : ROTATION_FIXES) {
+            for (int face = 0; face < FACES; face++) {
+                int[] index = Face.ROTATED_INDEX[rotation(fix, face)];
+                for (int i = 0; i < 9; i++) {
+                    rotated[face * 9 + i] = squares[face * 9 + index[i]];
+                }
+            }
+            if (FaceletValidator.isCubeValid(rotated) && verify(rotated) == VALID) {
+                rotationFix = fix;
+                break;
+            }
+        }
+        // Leave the cubie form describing the diagnosed cube
+        verify(squares);
+    }
+
+    /**
+     * @return Edges in cubie form from the last conversion, piece << 1 | flip
+     * for each position (not a copy)
+     */
+    byte[] getEdges() {
+        return edges;
+    }
+
+    /**
+     * @return Corners in cubie form from the last conversion, twist << 3 |
+     * piece for each position (not a copy)
+     */
+    byte[] getCorners() {
+        return corners;
+    }
+
+    /**
+     * @return Error code of the last diagnosis
+     */
+    public int getError() {
+        return error;
+    }
+
+    /**
+     * @return Positions holding a flipped edge (swapping the two stickers of
+     * any one of them changes the flip parity)
+     */
+    public int getFlippedEdges() {
+        return flippedEdges;
+    }
+
+    /**
+     * @return Positions whose colours don't form any edge piece
+     */
+    public int getUnknownEdges() {
+        return unknownEdges;
+    }
+
+    /**
+     * @return Edge pieces not found at any position
+     */
+    public int getMissingEdges() {
+        return missingEdges;
+    }
+
+    /**
+     * @return Positions holding a twisted corner
+     */
+    public int getTwistedCorners() {
+        return twistedCorners;
+    }
+
+    /**
+     * @return Positions whose colours don't form any corner piece
+     */
+    public int getUnknownCorners() {
+        return unknownCorners;
+    }
+
+    /**
+     * @return Corner pieces not found at any position
+     */
+    public int getMissingCorners() {
+        return missingCorners;
+    }
+
+    /**
+     * @return 1 if the edge and corner permutations have different parity
+     * (swapping the stickers of two edges would fix it), 0 otherwise
+     */
+    public int getParity() {
+        return parity;
+    }
+
+    /**
+     * @return True if the last diagnosis found a set of face rotations that
+     * makes the cube solvable
+     */
+    public boolean hasRotationFix() {
+        return rotationFix != -1;
+    }
+
+    /**
+     * @param face Face index of the cube
+     * @return Number of clockwise rotations (see {@link Face#rotate()}) the
+     * face needs for the rotation fix, 0 if there is no fix
+     */
+    public int getFaceRotation(int face) {
+        return hasRotationFix() ? rotation(rotationFix, face) : 0;
+    }
+
+    /**
+     * Applies the rotation fix found by the last diagnosis
+     * @param cube Cube that was diagnosed (not changed)
+     * @return New cube with the faces rotated, or {@code null} if there is
+     * no fix
+     */
+    public Cube applyRotationFix(Cube cube) {
+        if (!hasRotationFix())
+            return null;
+        Cube fixed = new Cube(cube);
+        for (int face = 0; face < FACES; face++) {
+            fixed.getState().copySquares(cube.getState(), face * 9,
+                    Face.ROTATED_INDEX[getFaceRotation(face)], face * 9);
+        }
+        return fixed;
+    }
+
+    /**
+     * Describes the result of the last diagnosis, for logging
+     * @return Error code, the pieces at fault and the rotation fix
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("error ").append(error);
+        appendPieces(builder, " unknown edges", unknownEdges, EDGE_NAMES);
+        appendPieces(builder, " missing edges", missingEdges, EDGE_NAMES);
+        appendPieces(builder, " flipped edges", flippedEdges, EDGE_NAMES);
+        appendPieces(builder, " unknown corners", unknownCorners, CORNER_NAMES);
+        appendPieces(builder, " missing corners", missingCorners, CORNER_NAMES);
+        appendPieces(builder, " twisted corners", twistedCorners, CORNER_NAMES);
+        if (parity != 0)
+            builder.append(" odd parity");
+        if (hasRotationFix()) {
+            builder.append(" fix rotations");
+            for (int face = 0; face < FACES; face++) {
+                builder.append(' ').append(getFaceRotation(face));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static void appendPieces(StringBuilder builder, String label, int pieces, String[] names) {
+        if (pieces == 0)
+            return;
+        builder.append(label);
+        for (int i = 0; i < names.length; i++) {
+            if ((pieces & (1 << i)) != 0)
+                builder.append(' ').append(names[i]);
+        }
+    }
+
+    /**
+     * @return Number of clockwise rotations of a face in a rotation combination
+     */
+    private static int rotation(int combination, int face) {
+        return (combination >> (2 * face)) & 3;
+    }
+
+    /**
+     * @return Number of faces rotated by a rotation combination
+     */
+    private static int rotatedFaces(int combination) {
+        int count = 0;
+        for (int face = 0; face < FACES; face++) {
+            if (rotation(combination, face) != 0)
+                count++;
+        }
+        return count;
+    }
+}
@@ -6,18 +6,63 @@ import java.util.ArrayList;
 /**
  * @author Alexander Bull
  * @editor Alfred Roberts
- * @description Generates a single face for a cube
+ * @description Generates a single face for a cube. A face is a view over 9
+ * squares of a {@link CubeState}, either its own or one shared with a {@link Cube}
  */
 public class Face implements Serializable {
-    private final int CENTER_INDEX = 4;
-    private Square[] squareList = new Square[9];
+    private static final int CENTER_INDEX = 4;
+    // Index permutation used to rotate a face 90 degrees clockwise
+    static final int[] ROTATION_INDEX = {6,3,0,7,4,1,8,5,2};
+    // Number of distinct rotations of a face
+    static final int ROTATIONS = 4;
+    // Index permutation for each number of clockwise rotations, square i of
+    // a rotated face is square ROTATED_INDEX[r][i] of the original face
+    static final int[][] ROTATED_INDEX = new int[ROTATIONS][9];
+
+    static {
+        for (int i = 0; i < 9; i++) {
+            ROTATED_INDEX[0][i] = i;
+        }
+        for (int r = 1; r < ROTATIONS; r++) {
+            for (int i = 0; i < 9; i++) {
+                ROTATED_INDEX[r][i] = ROTATED_INDEX[r - 1][ROTATION_INDEX[i]];
+            }
+        }
+    }
+
+    // State holding the face's squares
+    private final CubeState state;
+    // Index of the face's first square within the state
+    private final int offset;
+
+    /**
+     * Constructs a new face as a view over 9 squares of a packed state
+     * @param state State holding the face
+     * @param offset Index of the face's first square within the state
+     */
+    Face(CubeState state, int offset) {
+        this.state = state;
+        this.offset = offset;
+    }
 
     /**
      * Constructs a new face, from a list of squares
      * @param faceList - List of square objects for each square in the face
      */
     public Face(Square[] faceList) {
-        squareList = faceList;
+        this();
+        for (int i = 0; i < 9; i++) {
+            state.copySquares(faceList[i].getState(), faceList[i].getIndex(), i, 1);
+        }
+    }
+
+    /**
+     * Constructs a copy of another face, with its own state
+     * @param face - Face to copy
+     */
+    public Face(Face face) {
+        this();
+        state.copySquares(face.state, face.offset, 0, 9);
     }
 
     /**
@@ -26,11 +71,8 @@ public class Face implements Serializable {
      */
     public Face(CubeColour middle)
     {
-        for(int loop = 0 ; loop < 9 ; loop++)
-        {
-            squareList[loop] = new Square();
-        }
-        squareList[CENTER_INDEX].setColour(middle, 1);
+        this();
+        state.setColour(CENTER_INDEX, middle, 1);
     }
 
     /**
@@ -38,20 +80,31 @@ public class Face implements Serializable {
      */
     public Face()
     {
-        for(int loop = 0 ; loop < 9 ; loop++)
-        {
-            squareList[loop] = new Square();
-        }
+        this(new CubeState(9), 0);
     }
 
     public Face(ArrayList<DetectionCenter> points) {
+        this();
         for(int i = 0; i < 9; i++)
         {
-            squareList[i] = new Square();
-            squareList[i].setColour(points.get(i).getColour(),0);
+            state.setColour(i, points.get(i).getColour(), 0);
         }
     }
 
+    /**
+     * @return State holding the face's squares
+     */
+    CubeState getState() {
+        return state;
+    }
+
+    /**
+     * @return Index of the face's first square within its state
+     */
+    int getOffset() {
+        return offset;
+    }
+
     /**
      * Gets the minimum number of frames each square colour has been found in.
      * Used as a metric to check how confidence we are that the face is
@@ -62,8 +115,9 @@ public class Face implements Serializable {
         int minValue = Integer.MAX_VALUE;
         for(int i = 0; i < 9; i++)
         {
-            if (squareList[i].getTimesSeen() < minValue) {
-                minValue = squareList[i].getTimesSeen();
+            int timesSeen = state.getTimesSeen(offset + i);
+            if (timesSeen < minValue) {
+                minValue = timesSeen;
             }
         }
         return minValue;
@@ -74,7 +128,7 @@ public class Face implements Serializable {
      */
     public CubeColour getCentreColour()
     {
-        return squareList[CENTER_INDEX].getColour();
+        return state.getColour(offset + CENTER_INDEX);
     }
 
     /**
@@ -83,16 +137,28 @@ public class Face implements Serializable {
      */
     public CubeColour getSquareColour(int index)
     {
-        return squareList[index].getColour();
+        return state.getColour(offset + index);
+    }
+
+    /**
+     * Gets a square's colour as if the face had been rotated, without
+     * copying the face
+     * @param index - Square of the rotated face to be indexed
+     * @param rotations - Number of 90 degree clockwise rotations
+     * @return Colour of indexed square of the rotated face
+     */
+    public CubeColour getSquareColour(int index, int rotations)
+    {
+        return state.getColour(offset + ROTATED_INDEX[rotations & 3][index]);
     }
 
     /**
      * @param index - Square to be indexed
-     * @return The indexed square
+     * @return The indexed square, as a view over this face
      */
     public Square getSquare(int index)
     {
-        return squareList[index];
+        return new Square(state, offset + index);
     }
 
     /**
@@ -103,7 +169,7 @@ public class Face implements Serializable {
      */
     public void setSquare(int index, CubeColour colour, int timesSeen)
     {
-        squareList[index].setColour(colour, timesSeen);
+        state.setColour(offset + index, colour, timesSeen);
     }
 
     /**
@@ -112,7 +178,7 @@ public class Face implements Serializable {
      * @param colour - Colour to have its stored value incremented
      */
     public void addSquareSeen(int index, CubeColour colour){
-        squareList[index].incrementColour(colour);
+        state.incrementColour(offset + index, colour);
     }
 
     /**
@@ -122,7 +188,7 @@ public class Face implements Serializable {
      */
     public void setSquare(int index, Square square)
     {
-        squareList[index].setColour(square.getColour(), square.getTimesSeen());
+        state.setColour(offset + index, square.getColour(), square.getTimesSeen());
     }
 
     /**
@@ -130,12 +196,18 @@ public class Face implements Serializable {
      * @return Newly rotated face
      */
     public Face rotate() {
-        int[] rotationIndex = new int[]{6,3,0,7,4,1,8,5,2};
+        return rotate(1);
+    }
+
+    /**
+     * Rotates the face 90 degrees clockwise a number of times, with a
+     * single copy
+     * @param rotations Number of rotations
+     * @return Newly rotated face
+     */
+    public Face rotate(int rotations) {
         Face newFace = new Face();
-        for(int i = 0; i < 9; i++){
-            int moveIndex = rotationIndex[i];
-            newFace.setSquare(i, this.getSquare(moveIndex));
-        }
+        newFace.state.copySquares(state, offset, ROTATED_INDEX[rotations & 3], 0);
         return newFace;
     }
 
@@ -148,7 +220,7 @@ public class Face implements Serializable {
         for (int i = 0; i < 9; i ++) {
             if (i == CENTER_INDEX)
                 continue;
-            if (squareList[i].getColour() != CubeColour.NULL)
+            if (state.getColour(offset + i) != CubeColour.NULL)
                 return false;
         }
         return true;
@@ -161,13 +233,7 @@ public class Face implements Serializable {
      */
     public String toCubotString()
     {
-        StringBuffer buffer = new StringBuffer();
-        for(int i=0; i<9; i++)
-        {
-            buffer.append(squareList[i].getColour().toString().charAt(0));
-        }
-
-        return buffer.toString();
+        return encode(CubeEncoder.CUBOT_CHARS);
     }
 
     /**
@@ -181,20 +247,7 @@ public class Face implements Serializable {
      */
     public String toMin2PhaseString()
     {
-        String s = toCubotString();
-
-        //System.out.println("Before Regex: " +s);
-
-        s=s.replaceAll("W","U");
-        s=s.replaceAll("B","L");
-        s=s.replaceAll("R","B");
-        s=s.replaceAll("G","R");
-        s=s.replaceAll("O","F");
-        s=s.replaceAll("Y","D");
-
-        //System.out.println("After regex: " +s);
-
-        return s;
+        return encode(CubeEncoder.MIN2PHASE_CHARS);
     }
 
 
@@ -206,32 +259,29 @@ public class Face implements Serializable {
      */
     public String toDisplayString()
     {
-        StringBuffer buffer = new StringBuffer();
-        int[] reverseIndexes = {6,7,8,3,4,5,0,1,2};
+        char[] chars = new char[9];
+        int length = 0;
         for(int i=0; i<9; i++)
         {
-            switch(squareList[reverseIndexes[i]].getColour()) {
-                case WHITE:
-                    buffer.append(0);
-                    break;
-                case YELLOW:
-                    buffer.append(1);
-                    break;
-                case ORANGE:
-                    buffer.append(2);
-                    break;
-                case RED:
-                    buffer.append(3);
-                    break;
-                case BLUE:
-                    buffer.append(4);
-                    break;
-                case GREEN:
-                    buffer.append(5);
-                    break;
-            }
+            char digit = CubeEncoder.DISPLAY_CHARS[state.getColours()[offset + CubeEncoder.DISPLAY_FACE_ORDER[i]]];
+            if (digit != 0)
+                chars[length++] = digit;
         }
+        return new String(chars, 0, length);
+    }
 
-        return buffer.toString();
+    /**
+     * Writes each square of the face as a character
+     * @param chars Character for each colour ordinal
+     * @return Face String
+     */
+    private String encode(char[] chars)
+    {
+        char[] encoded = new char[9];
+        for(int i=0; i<9; i++)
+        {
+            encoded[i] = chars[state.getColours()[offset + i]];
+        }
+        return new String(encoded);
     }
 }
@@ -4,10 +4,17 @@ import java.util.*;
 /**
  * @author Alfred Roberts
  * @editor Sarwar Rashid, Alexander Bull
- * @description Add face to a cube configuration and validate that face against other faces within a cube
+ * @description Add face to a cube configuration and validate that face against other faces within a cube.
+ * The cube is kept between additions along with the solver's constraint state, so adding or
+ * replacing a face only rechecks that face against its neighbours.
  */
 public class FaceAdder {
-    private Cube cube;
+    private final Cube cube;
+    // Solver used to find valid rotations of the faces, holding the
+    // constraint state of the cube between additions
+    private final RotationSolver solver = new RotationSolver();
+    // Colours of the cube with a new face added, to check the colour counts
+    private final byte[] counted = new byte[FaceletValidator.SQUARES];
 
     /**
      * Creates a new FaceAdder instance, using a blank cube to
@@ -21,145 +28,85 @@ public class FaceAdder {
      * Creates a new FaceAdder instance, with the given cube as the input
      * to add a new faces to
      * @param cube
-     * Cube configuration to add faces to
+     * Cube configuration to add faces to (copied, so it isn't changed)
      */
     public FaceAdder(Cube cube){
-        this.cube = cube;
+        this.cube = new Cube(cube);
     }
 
     /**
-     * Finds non empty faces in cube that are not added to tmp cube
+     * Finds a rotation of every face in a cube that gives a valid cube
+     * configuration, using a constraint satisfaction problem (CSP) solver
+     * (see {@link RotationSolver})
      * @param cube
-     * Cube with all faces already added (but not valid)
-     * @param tmpCube
-     * Current working cube config from csp problem
+     * Cube object with all the current faces within the cube config
      * @return
-     * Index of a face within tmpCube that isn't added yet, or -1 if there
-     * aren't any face left
+     * A new cube config, with only the non-empty faces of {@code cube} in
+     * valid rotations, or <code>null</code> if there isn't one
      */
-    private int findUnassignedVariable(Cube cube, Cube tmpCube) {
-        for (int i = 0; i < 6; i ++) {
-            Face face = cube.getFace(i);
-            Face tmpFace = tmpCube.getFace(i);
-            if (!face.isEmpty() && tmpFace.isEmpty())
-                return i;
-        }
-        return -1;
+    public Cube recursiveCSPBacktrack(Cube cube) {
+        int[] domains = new int[6];
+        Arrays.fill(domains, RotationSolver.ALL_ROTATIONS);
+        return solver.solve(cube, domains, true);
     }
 
     /**
-     * Finds whether all the faces from cube have been added to tmpCube
-     * @param cube
-     * Cube with all faces already added (but not valid)
-     * @param tmpCube
-     * Current working cube config from csp problem
+     * Adds a new face to the cube config, replacing any face with the same
+     * center colour. The face is tried in each rotation with the other faces
+     * kept as they are, then with its 4 neighbours rotated as well, and only
+     * then with every face rotated (see {@link RotationSolver#place})
+     * @param face
+     * Cube face to add
      * @return
-     * True, if all faces have been assigned, false otherwise.
+     * True if the face was added, false if it doesn't fit in the cube (which
+     * is left unchanged)
      */
-    private boolean assigned(Cube cube, Cube tmpCube) {
-        boolean allAssigned = true;
-        ArrayList<Integer> assignedFaces = new ArrayList<>();
-        for (int i = 0; i < 6; i ++) {
-            Face face = cube.getFace(i);
-            if (!face.isEmpty())
-                assignedFaces.add(i);
-        }
-        for (int i = 0; i < 6; i ++) {
-            Face face = tmpCube.getFace(i);
-            if (face.isEmpty() && assignedFaces.contains(i)) {
-                allAssigned = false;
-            }
-        }
-        return allAssigned;
+    public boolean addFace(Face face){
+        int index = getFaceIndex(face.getCentreColour());
+        if (index == -1)
+            return false;
+
+        System.arraycopy(cube.getState().getColours(), 0, counted, 0, counted.length);
+        System.arraycopy(face.getState().getColours(), face.getOffset(), counted, index * 9, 9);
+        if (!FaceletValidator.countsAreValid(counted))
+            return false;
+
+        return solver.place(cube, index, face);
     }
 
     /**
-     * Recursive constraint specification problem (CSP).
-     * Creates a new cube config, and starts finding valid faces to
-     * add, recursively backtracking if a specific rotation doesn't work
-     * @param cube
-     * Cube object with all the current faces within the cube config
-     * @param tmpCube
-     * Current working cube config, to add new face rotations to
-     * @return
-     * The new cube config, with new valid rotations
+     * Removes the face with a given center colour, e.g. so it can be
+     * rescanned. Only its center is kept, and the other faces keep their
+     * rotations
+     * @param colour
+     * Center colour of the face to remove
      */
-    public Cube recursiveCSPBacktrack(Cube cube, Cube tmpCube) {
-        // https://web.stanford.edu/class/cs227/Lectures/lec14.pdf
-        CubeValidator cubeValidator = new CubeValidator(tmpCube);
-        // If csp problem is complete
-        if (cubeValidator.isCubeValid() && assigned(cube, tmpCube)) {
-            return tmpCube;
-        }
-        // Find an "unassigned" face
-        int var = findUnassignedVariable(cube, tmpCube);
-        if (var == -1)
-            return null;
-        Face face = cube.getFace(var);
-        // Get the face's neighbors
-        int[] neighbors = tmpCube.getFaceNeighbors(var);
-        // For all values in the variable's domain (rotations)
-        for (int value = 0; value < 5; value ++) {
-            // Add current rotation to tmpCube
-            addFaceToConfig(tmpCube, face);
-            face = face.rotate(); // Add and rotate for later
-            boolean pass = true;
-            // Check if all the neighbors have valid config with the current
-            // variable
-            for (int neighbor : neighbors) {
-                int[] facePair = new int[]{var, neighbor};
-                if (!cubeValidator.edgesValid(facePair) || !cubeValidator.invalidCorners(facePair))
-                    pass = false;
-            }
-
-            if (pass) { // local constraint?
-                // Add face to assignment
-                Cube result = recursiveCSPBacktrack(cube, tmpCube);
-                if (result != null) {
-                    return result;
-                }
-            }
-            // Remove face from cube
-            tmpCube.setFace(var, new Face(face.getCentreColour()));
-        }
-        return null; // Fail
+    public void removeFace(CubeColour colour) {
+        int index = getFaceIndex(colour);
+        if (index == -1)
+            return;
+        CubeState state = cube.getState();
+        state.clearSquares(index * 9, 9);
+        state.setColour(index * 9 + 4, colour, 1);
     }
 
     /**
-     * Adds a new face to the cube config. Returns a new config with the
-     * added face
-     * @param face
-     * Cube face to add
+     * Gets the index of the face within a cube with a given center colour
+     * @param colour
+     * Center colour of the face
      * @return
-     * New cube config. Returns <code>null</code> if the addition failed
+     * Index of the face, or -1 if the colour isn't a face colour
      */
-    public boolean addFace(Face face){
-        // Copy current working cube
-        Cube candidateCube = new Cube(cube);
-        CubeValidator cubeValidator = new CubeValidator(candidateCube);
-        // First, try to add the face without any other rotations from other
-        // faces...
-        addFaceToConfig(candidateCube, face);
-
-        if (!cubeValidator.countsAreValid())
-            return false;
-
-        for (int i = 0; i < 5; i ++) {
-            if (cubeValidator.isCubeValid()) {
-                //candidateCube.show();
-                cube = candidateCube;
-                return true;
-            }
-            face = face.rotate();
-            addFaceToConfig(candidateCube, face);
+    private int getFaceIndex(CubeColour colour) {
+        switch (colour) {
+            case ORANGE: return 0;
+            case GREEN: return 1;
+            case RED: return 2;
+            case BLUE: return 3;
+            case WHITE: return 4;
+            case YELLOW: return 5;
+            default: return -1;
         }
-        // If fails, we must do recursive csp backtracking
-        Cube newCube = recursiveCSPBacktrack(candidateCube, new Cube());
-        if (newCube != null) {
-            cube = newCube;
-            return true;
-        }
-        return false;
     }
 
     /**
@@ -190,6 +137,9 @@ public class FaceAdder {
         }
     }
 
+    /**
+     * @return Current cube config (not a copy, changed as faces are added)
+     */
     public Cube getCube() {
         return cube;
     }
@@ -8,12 +8,48 @@ import java.util.function.Function;
  * @author Alfred Roberts, Alexander Bull
  * @description Collection of methods used to detect faces from given
  * {@link DetectionCenter} detection results.
+ * <br>
+ * Each detector keeps its own {@link ScaleEstimator} and working buffers, so
+ * a detector should only be used by one thread. Separate scan sessions, or an
+ * overlay and the image analyser, should each use their own detector.
  */
 public class FaceDetector {
 
     // Used for thresholds for online checks, so they're all relative
     // to the average size of the detected cube squares
-    private static float avgSquareWidth = 0;
+    private final ScaleEstimator scale;
+    // Grid of square centers, reused between frames
+    private final StickerGrid grid = new StickerGrid();
+    // Per square buffers, reused between frames
+    private int[] squareIndexes = new int[0];
+    private int[] squareXs = new int[0];
+    private int[] squareYs = new int[0];
+    private int[] found = new int[0];
+    // Lattice used to order faces, and its output buffer
+    private final FaceLattice lattice = new FaceLattice();
+    private final int[] latticeOrder = new int[FaceLattice.SIZE];
+
+    /**
+     * Creates a detector with a new scale estimate
+     */
+    public FaceDetector() {
+        this(new ScaleEstimator());
+    }
+
+    /**
+     * Creates a detector using the given scale estimate
+     * @param scale Estimator of the detected square width
+     */
+    public FaceDetector(ScaleEstimator scale) {
+        this.scale = scale;
+    }
+
+    /**
+     * @return Estimator of the detected square width used by this detector
+     */
+    public ScaleEstimator getScaleEstimator() {
+        return scale;
+    }
 
     /**
      * Get the center of rectangle
@@ -41,6 +77,20 @@ public class FaceDetector {
         return x0 && x1 && y0 && y1;
     }
 
+    /**
+     * Checks if a given coordinate is within a rectangular area
+     * @param x X coordinate to check
+     * @param y Y coordinate to check
+     * @param x0 Top left x coordinate of the area
+     * @param y0 Top left y coordinate of the area
+     * @param x1 Bottom right x coordinate of the area
+     * @param y1 Bottom right y coordinate of the area
+     * @return True if point is within the rectangular area, false otherwise
+     */
+    public static boolean pointInBox(int x, int y, int x0, int y0, int x1, int y1) {
+        return x > x0 && x < x1 && y > y0 && y < y1;
+    }
+
     /**
      * Returns groupings of faces, collections of 9 detection objects within
      * a detected face, given a list of detection results
@@ -48,60 +98,82 @@ public class FaceDetector {
      * @return A list of {@link DetectionCenter} lists, holding 9 detected centers
      * believed to be within a face
      */
-    public static ArrayList<ArrayList<DetectionCenter>> get_faces(PredictionList predictions){
-        ArrayList<ArrayList<DetectionCenter>> faces = new ArrayList<>();
+    public ArrayList<ArrayList<DetectionCenter>> get_faces(PredictionList predictions){
+        return get_faces(predictions.toBatch(new PredictionBatch(predictions.getLength())));
+    }
 
-        for(int i = 0 ; i < predictions.getLength(); i++){
-            // Ignore predictions if it's NOT a face
-            if (predictions.getClasses().get(i) != 6){
+    /**
+     * Returns groupings of faces, collections of 9 detection objects within
+     * a detected face, given a batch of detection results
+     * @param predictions Batch of object detection results, as a {@link PredictionBatch}
+     * @return A list of {@link DetectionCenter} lists, holding 9 detected centers
+     * believed to be within a face
+     */
+    public ArrayList<ArrayList<DetectionCenter>> get_faces(PredictionBatch predictions){
+        ArrayList<ArrayList<DetectionCenter>> faces = new ArrayList<>();
+        int length = predictions.getLength();
+        int[] classes = predictions.getClasses();
+        int[] boxes = predictions.getBoxes();
+
+        // Split detection results into faces and squares, keeping the
+        // center point and result index of each square
+        if (squareIndexes.length < length) {
+            squareIndexes = new int[length];
+            squareXs = new int[length];
+            squareYs = new int[length];
+            found = new int[length];
+        }
+        int faceCount = 0;
+        int squareCount = 0;
+        for (int i = 0; i < length; i++) {
+            if (classes[i] == PredictionBatch.FACE_CLASS) {
+                faceCount++;
                 continue;
             }
+            squareIndexes[squareCount] = i;
+            squareXs[squareCount] = predictions.getCenterX(i);
+            squareYs[squareCount] = predictions.getCenterY(i);
+            squareCount++;
+        }
+        // Nothing can be grouped without a face
+        if (faceCount == 0) {
+            return faces;
+        }
 
-            // Get face detection bounding box
-            int[] face_box = predictions.getBoxes().get(i);
+        // Update average detection result size, with every square once for
+        // each face it's grouped against
+        for (int f = 0; f < faceCount; f++) {
+            for (int k = 0; k < squareCount; k++) {
+                int box = squareIndexes[k] * 4;
+                scale.update(boxes[box + 2] - boxes[box], boxes[box + 3] - boxes[box + 1]);
+            }
+        }
 
-            int[] face_bot = {face_box[2], face_box[3]};
-            int[] face_top = {face_box[0], face_box[1]};
+        // Bucket square centers into a grid, so each face only has to look
+        // at the squares in the cells it covers
+        grid.build(squareXs, squareYs, squareCount, scale.getSquareWidth());
 
-            // List for what we're considering to be a face
-            ArrayList<DetectionCenter> group = new ArrayList<>();
-            int j = 0;
-            // Look at all other detection results that are not faces
-            for(var box : predictions.getBoxes()){
-                // Ignore the same box, and faces
-                if (i == j || predictions.getClasses().get(j) == 6){
-                    j++;
-                    continue;
-                }
-                // Get detection box dimensions
-                int[] bot = {box[2], box[3]};
-                int[] top = {box[0], box[1]};
-
-                // Update average detection result size
-                avgSquareWidth = (avgSquareWidth + Math.abs(top[0] - bot[0])) / 2;
-                avgSquareWidth = (avgSquareWidth + Math.abs(bot[1] - top[1])) / 2;
-
-                // Create detection result center object
-                DetectionCenter center = new DetectionCenter(
-                        getCenter(top, bot)[0],
-                        getCenter(top, bot)[1],
-                        CubeColour.values()[predictions.getClasses().get(j)]
-                );
-
-                // Check the point is within a face
-                int[] centerList = new int[] {center.getX(), center.getY()};
-                ArrayList<int[]> box_placeholder = new ArrayList<>();
-                box_placeholder.add(face_top);
-                box_placeholder.add(face_bot);
-
-                if (pointInBox(centerList, box_placeholder)){
-                    group.add(center);
-                }
-                j++;
+        for (int i = 0; i < length; i++) {
+            // Ignore predictions if it's NOT a face
+            if (classes[i] != PredictionBatch.FACE_CLASS) {
+                continue;
             }
+            // Find the squares with a center within the face bounding box,
+            // in the order they were detected
+            int box = i * 4;
+            int foundCount = grid.query(boxes[box], boxes[box + 1], boxes[box + 2], boxes[box + 3], found);
             // Only add this face grouping if there is exactly 9 squares
-            if (group.size() == 9)
-                faces.add(group);
+            if (foundCount != 9) {
+                continue;
+            }
+            // List for what we're considering to be a face
+            ArrayList<DetectionCenter> group = new ArrayList<>(9);
+            for (int k = 0; k < foundCount; k++) {
+                int square = found[k];
+                group.add(new DetectionCenter(squareXs[square], squareYs[square],
+                        CubeState.COLOURS[classes[squareIndexes[square]]]));
+            }
+            faces.add(group);
         }
 
         return faces;
@@ -115,9 +187,9 @@ public class FaceDetector {
      * @return True if the point lies on the line, given some "leeway",
      * false otherwise
      */
-    private static boolean onLine(DetectionCenter p, float m, float c) {
+    private boolean onLine(DetectionCenter p, float m, float c) {
         double y = m * p.getX() + c;
-        return isClose(p.getY(), (int)y, (int) avgSquareWidth/2);
+        return isClose(p.getY(), (int)y, (int) scale.getSquareWidth()/2);
     }
 
     /**
@@ -139,7 +211,7 @@ public class FaceDetector {
      * @param key Function used for ordering points for finding the top left corner
      * @return List of candidate points
      */
-    private static ArrayList<DetectionCenter> first_occs(ArrayList<DetectionCenter> a_list, Function<DetectionCenter, Integer> key){
+    private ArrayList<DetectionCenter> first_occs(ArrayList<DetectionCenter> a_list, Function<DetectionCenter, Integer> key){
         if (a_list.size() == 0){
             return new ArrayList<>();
         }
@@ -152,7 +224,7 @@ public class FaceDetector {
         if (index >= a_list.size()){
             return firsts;
         }
-        while(isClose(last, key.apply(a_list.get(index)), (int) avgSquareWidth/2)){
+        while(isClose(last, key.apply(a_list.get(index)), (int) scale.getSquareWidth()/2)){
             firsts.add(a_list.get(index));
             last = key.apply(a_list.get(index));
             index++;
@@ -170,7 +242,7 @@ public class FaceDetector {
      * @param key Function used for ordering points for finding the top right corner
      * @return List of candidate points
      */
-    private static ArrayList<DetectionCenter> last_occs(ArrayList<DetectionCenter> a_list, Function<DetectionCenter, Integer> key){
+    private ArrayList<DetectionCenter> last_occs(ArrayList<DetectionCenter> a_list, Function<DetectionCenter, Integer> key){
         if (a_list.size() == 0){
             return new ArrayList<>();
         }
@@ -183,7 +255,7 @@ public class FaceDetector {
         if (index < 0){
             return lasts;
         }
-        while(isClose(last, key.apply(a_list.get(index)), (int) avgSquareWidth/2)){
+        while(isClose(last, key.apply(a_list.get(index)), (int) scale.getSquareWidth()/2)){
             lasts.add(a_list.get(index));
             last = key.apply(a_list.get(index));
             index--;
@@ -215,6 +287,26 @@ public class FaceDetector {
      *<br>     6 7 8
      *<br> Where these are indices of points in each face.
      *
+     *<br> Works by fitting a 3x3 lattice to the points (see
+     * {@link FaceLattice}). If the points can't be fit to a lattice, falls
+     * back to ordering them row by row along lines.
+     * @param box_centers Square centers of a face
+     * @return The same points, ordered from top left to bottom right
+     */
+    public ArrayList<DetectionCenter> order_face(ArrayList<DetectionCenter> box_centers){
+        if (!lattice.fit(box_centers, latticeOrder)) {
+            return order_face_by_lines(box_centers);
+        }
+        ArrayList<DetectionCenter> points = new ArrayList<>(FaceLattice.SIZE);
+        for (int index : latticeOrder) {
+            points.add(box_centers.get(index));
+        }
+        return points;
+    }
+
+    /**
+     * Order a face's points from top left to bottom right, row by row
+     *
      *<br> Works by finding the top left and top right points, and drawing a
      * line between them to find the remaining points in a row. Once found,
      * removes these points from consideration, and repeats until there are no
@@ -223,10 +315,11 @@ public class FaceDetector {
      *<br> See for further details:
      *     https://stackoverflow.com/questions/29630052/ordering-coordinates-from-top-left-to-bottom-right
      *     https://www.researchgate.net/publication/282446068_Automatic_chessboard_corner_det
-     * @param box_centers
-     * @return
+     * @param box_centers Square centers of a face
+     * @return The same points, ordered from top left to bottom right
      */
-    public static ArrayList<DetectionCenter> order_face(ArrayList<DetectionCenter> box_centers){
+    ArrayList<DetectionCenter> order_face_by_lines(ArrayList<DetectionCenter> box_centers){
+        box_centers = new ArrayList<>(box_centers);
         ArrayList<DetectionCenter> points = new ArrayList<>();
 
         // Repeat until all points have been considered
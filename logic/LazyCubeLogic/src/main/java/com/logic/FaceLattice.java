@@ -0,0 +1,222 @@
+package com.logic;
+
+import java.util.List;
+
+/**
+ * @description Orders the 9 square centers of a face by fitting a 3x3
+ * lattice to them. The lattice is described by an origin (the center square)
+ * and two step vectors, one along a row and one down a column, so it fits a
+ * face at any in-plane rotation.
+ * <br>
+ * The step vectors are first estimated from the four squares nearest the
+ * center square, then refined with a least squares affine fit over all 9
+ * squares. Each square's grid position is found by solving a 2x2 system,
+ * so ordering a face is a fixed amount of work, using only this object's
+ * arrays. Not thread safe, each {@link FaceDetector} keeps its own lattice.
+ * <br>
+ * The row vector is picked so that grid position 0 is the top left square,
+ * the one with the smallest x + y, matching the line based ordering it
+ * replaces. When two squares tie (a face seen as a "perfect" diamond), the
+ * leftmost one is used.
+ */
+class FaceLattice {
+    // Number of squares in a face
+    static final int SIZE = 9;
+
+    // Center coordinates of the squares being ordered
+    private final double[] xs = new double[SIZE];
+    private final double[] ys = new double[SIZE];
+    // Grid position of each square, while fitting
+    private final int[] position = new int[SIZE];
+    // Indexes of the squares nearest the center square, closest first
+    private final int[] nearest = new int[4];
+    private final double[] nearestDistance = new double[4];
+
+    // Current lattice origin and step vectors
+    private double originX;
+    private double originY;
+    private double rowX;
+    private double rowY;
+    private double colX;
+    private double colY;
+
+    /**
+     * Finds the grid position of each square center of a face
+     * @param centers Square centers of a face
+     * @param order Array of 9 entries. On success, {@code order[i]} is set to
+     *              the index within {@code centers} of the square at grid
+     *              position {@code i} (0 top left to 8 bottom right)
+     * @return True if the centers were fit to a lattice with one square at
+     * every grid position, false otherwise
+     */
+    boolean fit(List<DetectionCenter> centers, int[] order) {
+        if (centers.size() != SIZE)
+            return false;
+        double meanX = 0;
+        double meanY = 0;
+        for (int i = 0; i < SIZE; i++) {
+            xs[i] = centers.get(i).getX();
+            ys[i] = centers.get(i).getY();
+            meanX += xs[i];
+            meanY += ys[i];
+        }
+        meanX /= SIZE;
+        meanY /= SIZE;
+
+        // The center square is the one closest to the mean of all squares
+        int center = 0;
+        for (int i = 1; i < SIZE; i++) {
+            if (distance(xs[i], ys[i], meanX, meanY) < distance(xs[center], ys[center], meanX, meanY))
+                center = i;
+        }
+        findNearest(center);
+        if (!chooseSteps(center))
+            return false;
+        originX = xs[center];
+        originY = ys[center];
+        if (!assign(order))
+            return false;
+
+        // Refine the lattice using every square, keeping the first fit if the
+        // refined one no longer places one square at every position
+        refine();
+        if (!assign(position))
+            return true;
+        System.arraycopy(position, 0, order, 0, SIZE);
+        return true;
+    }
+
+    /**
+     * Finds the 4 squares closest to the center square, which should be the
+     * squares sharing an edge with it
+     * @param center Index of the center square
+     */
+    private void findNearest(int center) {
+        int count = 0;
+        for (int i = 0; i < SIZE; i++) {
+            if (i == center)
+                continue;
+            double d = distance(xs[i], ys[i], xs[center], ys[center]);
+            // Insert into the sorted list of nearest squares
+            int k = Math.min(count, 4);
+            while (k > 0 && nearestDistance[k - 1] > d) {
+                if (k < 4) {
+                    nearest[k] = nearest[k - 1];
+                    nearestDistance[k] = nearestDistance[k - 1];
+                }
+                k--;
+            }
+            if (k < 4) {
+                nearest[k] = i;
+                nearestDistance[k] = d;
+            }
+            count++;
+        }
+    }
+
+    /**
+     * Picks the row and column step vectors from the squares next to the
+     * center square. The column vector is the one closest to the row vector
+     * turned a quarter clockwise (on screen, where y points down), and the
+     * pair is picked so that their sum points most towards the bottom right
+     * @param center Index of the center square
+     * @return False if the step vectors are degenerate
+     */
+    private boolean chooseSteps(int center) {
+        double bestScore = Double.NEGATIVE_INFINITY;
+        boolean found = false;
+        for (int r = 0; r < 4; r++) {
+            double ux = xs[nearest[r]] - xs[center];
+            double uy = ys[nearest[r]] - ys[center];
+            // Row vector turned a quarter clockwise on screen
+            double tx = -uy;
+            double ty = ux;
+            int c = -1;
+            double bestDot = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < 4; k++) {
+                if (k == r)
+                    continue;
+                double dot = (xs[nearest[k]] - xs[center]) * tx + (ys[nearest[k]] - ys[center]) * ty;
+                if (dot > bestDot) {
+                    bestDot = dot;
+                    c = k;
+                }
+            }
+            double vx = xs[nearest[c]] - xs[center];
+            double vy = ys[nearest[c]] - ys[center];
+            double score = ux + uy + vx + vy;
+            // On a tie, prefer the row vector pointing furthest right
+            if (score > bestScore || (score == bestScore && ux > rowX)) {
+                bestScore = score;
+                rowX = ux;
+                rowY = uy;
+                colX = vx;
+                colY = vy;
+                found = true;
+            }
+        }
+        return found && Math.abs(rowX * colY - colX * rowY) > 1e-9;
+    }
+
+    /**
+     * Refits the lattice to all squares, given their current grid positions.
+     * As the grid positions are symmetric about the center, the least
+     * squares fit separates into simple sums
+     */
+    private void refine() {
+        double ox = 0, oy = 0, rx = 0, ry = 0, cx = 0, cy = 0;
+        for (int p = 0; p < SIZE; p++) {
+            int i = position[p];
+            int a = p % 3 - 1;
+            int b = p / 3 - 1;
+            ox += xs[i];
+            oy += ys[i];
+            rx += a * xs[i];
+            ry += a * ys[i];
+            cx += b * xs[i];
+            cy += b * ys[i];
+        }
+        // Each offset (-1, 0, 1) appears 3 times, so the sum of squares is 6
+        originX = ox / SIZE;
+        originY = oy / SIZE;
+        rowX = rx / 6;
+        rowY = ry / 6;
+        colX = cx / 6;
+        colY = cy / 6;
+    }
+
+    /**
+     * Finds the grid position of every square from the current lattice
+     * @param order Array to write the square at each grid position to
+     * @return True if every grid position holds exactly one square
+     */
+    private boolean assign(int[] order) {
+        double det = rowX * colY - colX * rowY;
+        if (Math.abs(det) < 1e-9)
+            return false;
+        int filled = 0;
+        for (int i = 0; i < SIZE; i++) {
+            double dx = xs[i] - originX;
+            double dy = ys[i] - originY;
+            long a = Math.round((dx * colY - colX * dy) / det);
+            long b = Math.round((rowX * dy - dx * rowY) / det);
+            if (a < -1 || a > 1 || b < -1 || b > 1)
+                return false;
+            int p = (int) ((b + 1) * 3 + (a + 1));
+            if ((filled & (1 << p)) != 0)
+                return false;
+            filled |= 1 << p;
+            order[p] = i;
+        }
+        if (order != position)
+            System.arraycopy(order, 0, position, 0, SIZE);
+        return true;
+    }
+
+    /**
+     * @return Squared distance between two points
+     */
+    private static double distance(double x0, double y0, double x1, double y1) {
+        return (x0 - x1) * (x0 - x1) + (y0 - y1) * (y0 - y1);
+    }
+}
@@ -0,0 +1,75 @@
+package com.logic;
+
+/**
+ * @description Packed 64-bit encodings of a {@link Face}, used by
+ * {@link AdderQueue} to find a face it has already seen.
+ * <br>
+ * A face is packed as the colour ordinal of each square in 3 bits, square 0
+ * in the lowest bits. The signature of a face is the smallest of the packed
+ * encodings of its four rotations, so the same face gives the same signature
+ * however it was held up to the camera. Packing the face at the rotation
+ * that gave its signature (its canonical rotation) lines it up with any
+ * other face with the same signature.
+ * <br>
+ * Faces that only nearly match are compared by the number of squares that
+ * differ between their packed encodings.
+ */
+final class FaceSignature {
+    // Bits used by each square
+    private static final int BITS = 3;
+    // Lowest bit of every square
+    private static final long SQUARE_MASK = 0x1249249L;
+
+    private FaceSignature() {
+    }
+
+    /**
+     * Packs the colours of a face read through a rotation
+     * @param face Face to pack
+     * @param rotations Number of clockwise rotations to read the face with
+     * @return Packed colours
+     */
+    static long pack(Face face, int rotations) {
+        long packed = 0;
+        for (int i = 0; i < 9; i++) {
+            packed |= (long) face.getSquareColour(i, rotations).ordinal() << (i * BITS);
+        }
+        return packed;
+    }
+
+    /**
+     * @param face Face to find the canonical rotation of
+     * @return Rotation with the smallest packed encoding, the lowest such
+     * rotation for symmetrical faces
+     */
+    static int canonicalRotation(Face face) {
+        int best = 0;
+        long bestPacked = pack(face, 0);
+        for (int r = 1; r < Face.ROTATIONS; r++) {
+            long packed = pack(face, r);
+            if (packed < bestPacked) {
+                best = r;
+                bestPacked = packed;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param face Face to sign
+     * @return Rotation invariant signature of the face
+     */
+    static long signature(Face face) {
+        return pack(face, canonicalRotation(face));
+    }
+
+    /**
+     * @param a Packed face
+     * @param b Packed face
+     * @return Number of squares with different colours
+     */
+    static int distance(long a, long b) {
+        long diff = a ^ b;
+        return Long.bitCount((diff | diff >>> 1 | diff >>> 2) & SQUARE_MASK);
+    }
+}
@@ -0,0 +1,204 @@
+package com.logic;
+
+/**
+ * @description Table driven checks for a cube configuration, working
+ * directly on an array of 54 colour ordinals (see {@link CubeState}). Gives
+ * the same results as the matching {@link CubeValidator} checks, without
+ * allocating, so they can be run every frame and inside the rotation solver.
+ * <br>
+ * Pieces are checked through lookup tables built once from the
+ * {@link CubeValidator} rules: a 64 bit mask of legal edge colour pairs, and
+ * a 343 bit table of legal corner colour triples (with {@link CubeColour#NULL}
+ * squares treated as unknown). Sets of faces are passed as 6 bit masks, with
+ * bit {@code i} set for face {@code i}.
+ */
+public class FaceletValidator {
+    // Number of squares in a cube
+    public static final int SQUARES = 54;
+    // Mask selecting all 6 faces
+    public static final int ALL_FACES = 0b111111;
+
+    private static final int COLOURS = 7;
+    private static final int NULL = CubeColour.NULL.ordinal();
+    // Square indexes of the edges and corners, shared with CubeValidator
+    private static final int[][] EDGES = CubeValidator.EDGES;
+    private static final int[] CORNERS = CubeValidator.CORNERS;
+    private static final int[][] OTHER_CORNERS = CubeValidator.OTHER_CORNERS;
+
+    // Bit (a * 7 + b) is set if colours a and b can share an edge
+    private static final long EDGE_LEGAL;
+    // Bit (a * 49 + b * 7 + c) is set if colours a, b, c can form a corner
+    private static final long[] CORNER_LEGAL = new long[(COLOURS * COLOURS * COLOURS + 63) / 64];
+    // Bit mask of the faces holding each edge and corner
+    private static final int[] EDGE_FACES = new int[EDGES.length];
+    private static final int[] CORNER_FACES = new int[CORNERS.length];
+    // Colour each center square must be
+    private static final int[] CENTRES = {4, 13, 22, 31, 40, 49};
+
+    static {
+        CubeColour[] colours = CubeColour.values();
+        long edgeLegal = 0;
+        for (int a = 0; a < COLOURS; a++) {
+            for (int b = 0; b < COLOURS; b++) {
+                if (!CubeValidator.edgeIsNotValid(colours[a], colours[b]))
+                    edgeLegal |= 1L << (a * COLOURS + b);
+                for (int c = 0; c < COLOURS; c++) {
+                    if (CubeValidator.cornerIsValid(colours[a], colours[b], colours[c])) {
+                        int bit = (a * COLOURS + b) * COLOURS + c;
+                        CORNER_LEGAL[bit >>> 6] |= 1L << bit;
+                    }
+                }
+            }
+        }
+        EDGE_LEGAL = edgeLegal;
+        for (int i = 0; i < EDGES.length; i++) {
+            EDGE_FACES[i] = (1 << (EDGES[i][0] / 9)) | (1 << (EDGES[i][1] / 9));
+        }
+        for (int i = 0; i < CORNERS.length; i++) {
+            CORNER_FACES[i] = (1 << (CORNERS[i] / 9)) | (1 << (OTHER_CORNERS[i][0] / 9))
+                    | (1 << (OTHER_CORNERS[i][1] / 9));
+        }
+    }
+
+    private FaceletValidator() {
+    }
+
+    /**
+     * Runs every check on a cube configuration
+     * @param facelets Colour ordinal of each square
+     * @return True if correct configuration, false otherwise
+     */
+    public static boolean isCubeValid(byte[] facelets) {
+        return centresAreValid(facelets) && edgesValid(facelets, ALL_FACES) && countsAreValid(facelets)
+                && cornersValid(facelets, ALL_FACES) && duplicateCorners(facelets);
+    }
+
+    /**
+     * Checks whether the centre of each face is the face's colour
+     * @param facelets Colour ordinal of each square
+     * @return True if valid, false otherwise
+     */
+    public static boolean centresAreValid(byte[] facelets) {
+        int wrong = 0;
+        for (int face = 0; face < CENTRES.length; face++) {
+            wrong |= facelets[CENTRES[face]] ^ face;
+        }
+        return wrong == 0;
+    }
+
+    /**
+     * Checks that each edge between the given faces has a legal pair of
+     * colours, and that no two edges have the same pair. Edges with an
+     * unknown square are skipped
+     * @param facelets Colour ordinal of each square
+     * @param faces Mask of faces to check, an edge is checked if both of its
+     *              faces are set
+     * @return True if valid edges, false otherwise
+     */
+    public static boolean edgesValid(byte[] facelets, int faces) {
+        // Bit set of the colour pairs seen so far
+        long seen = 0;
+        for (int i = 0; i < EDGES.length; i++) {
+            int a = facelets[EDGES[i][0]];
+            int b = facelets[EDGES[i][1]];
+            if ((EDGE_FACES[i] & faces) != EDGE_FACES[i] || a == NULL || b == NULL)
+                continue;
+            // Edge pairs are unordered, so mark both orders as seen
+            long pair = (1L << (a * COLOURS + b)) | (1L << (b * COLOURS + a));
+            if ((seen & pair) != 0 || (EDGE_LEGAL & pair) == 0)
+                return false;
+            seen |= pair;
+        }
+        return true;
+    }
+
+    /**
+     * Checks each corner touching the given faces has a legal set of colours
+     * @param facelets Colour ordinal of each square
+     * @param faces Mask of faces to check, a corner is checked if any of its
+     *              faces are set
+     * @return True if correct configuration, false otherwise
+     */
+    public static boolean cornersValid(byte[] facelets, int faces) {
+        for (int i = 0; i < CORNERS.length; i++) {
+            if ((CORNER_FACES[i] & faces) == 0)
+                continue;
+            if (!cornerIsValid(facelets[CORNERS[i]], facelets[OTHER_CORNERS[i][0]], facelets[OTHER_CORNERS[i][1]]))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks the colours of a single corner piece
+     * @param colour Colour ordinal of the corner on the orange or red face
+     * @param colOne Colour ordinal of the corner's second square
+     * @param colTwo Colour ordinal of the corner's third square
+     * @return True if the corner could be valid, false otherwise
+     */
+    public static boolean cornerIsValid(int colour, int colOne, int colTwo) {
+        int bit = (colour * COLOURS + colOne) * COLOURS + colTwo;
+        return ((CORNER_LEGAL[bit >>> 6] >>> bit) & 1) != 0;
+    }
+
+    /**
+     * Checks that no two fully known corners have the same set of colours
+     * @param facelets Colour ordinal of each square
+     * @return True if no duplicates, false otherwise
+     */
+    public static boolean duplicateCorners(byte[] facelets) {
+        // Bit set of the sorted colour triples seen, 6 * 6 * 6 triples
+        long seen0 = 0, seen1 = 0, seen2 = 0, seen3 = 0;
+        for (int i = 0; i < CORNERS.length; i++) {
+            int a = facelets[CORNERS[i]];
+            int b = facelets[OTHER_CORNERS[i][0]];
+            int c = facelets[OTHER_CORNERS[i][1]];
+            if (a == NULL || b == NULL || c == NULL)
+                continue;
+            // Sort the three colours
+            int low = Math.min(a, Math.min(b, c));
+            int high = Math.max(a, Math.max(b, c));
+            int mid = a + b + c - low - high;
+            int key = (low * 6 + mid) * 6 + high;
+            long bit = 1L << key;
+            switch (key >>> 6) {
+                case 0: if ((seen0 & bit) != 0) return false; seen0 |= bit; break;
+                case 1: if ((seen1 & bit) != 0) return false; seen1 |= bit; break;
+                case 2: if ((seen2 & bit) != 0) return false; seen2 |= bit; break;
+                default: if ((seen3 & bit) != 0) return false; seen3 |= bit; break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the number of each colour is correct (at most 9 for each)
+     * @param facelets Colour ordinal of each square
+     * @return True if counts are correct (all <= 9), False if any colour has
+     *         > 9 occurrences
+     */
+    public static boolean countsAreValid(byte[] facelets) {
+        // One 8 bit counter per colour, counts can't go above 54 so they
+        // never carry into the next counter
+        long counts = 0;
+        for (int i = 0; i < SQUARES; i++) {
+            counts += 1L << (facelets[i] * 8);
+        }
+        // Adding 118 to a counter sets its top bit if it is above 9. Only the
+        // 6 real colours are checked, unknown squares can be any number
+        return ((counts + 0x767676767676L) & 0x808080808080L) == 0;
+    }
+
+    /**
+     * Converts a list of face indexes into a mask of faces
+     * @param faces Face indexes
+     * @return Mask with bit {@code i} set for each face {@code i}
+     */
+    public static int faceMask(int[] faces) {
+        int mask = 0;
+        for (int face : faces) {
+            mask |= 1 << face;
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,294 @@
+package com.logic;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * @description Compact binary log of the detection results of a scan, so a
+ * session recorded on a phone can be replayed on a plain JVM, e.g. as a
+ * repeatable throughput and latency workload for the logic module.
+ * <br>
+ * A log starts with a magic number, a format version and the time of the
+ * first frame. Each frame is then stored as the time since the previous
+ * frame and its number of detections as varints, followed by each detection
+ * as its class (1 byte), its score quantised to 1/255 (1 byte) and its box
+ * quantised to 16 bit coordinates (8 bytes), so a typical frame of a few
+ * dozen detections takes a few hundred bytes.
+ * <br>
+ * {@link Recorder} writes a log and {@link Reader} reads it back frame by
+ * frame into a reused {@link PredictionBatch}. {@link #replay} feeds a log
+ * through a {@link ScanSession} as fast as it can, timing each frame.
+ */
+public final class FrameLog {
+    // "LCFL", marking the start of a frame log
+    static final int MAGIC = 0x4C43464C;
+    // Version of the format written
+    static final int VERSION = 1;
+    // Largest score stored, standing for a score of 1
+    private static final int SCORE_LEVELS = 255;
+
+    private FrameLog() {
+    }
+
+    /**
+     * Writes frames to a log. Frames recorded after the log is closed are
+     * dropped, as frames may still be analysed on another thread while
+     * recording is stopped
+     */
+    public static final class Recorder implements Closeable {
+        private final DataOutputStream output;
+        // Time of the last frame recorded, or -1 before the first frame
+        private long lastTime = -1;
+        private int frames = 0;
+        private boolean closed = false;
+
+        /**
+         * Starts a log
+         * @param output Stream to write to, closed with the recorder
+         */
+        public Recorder(OutputStream output) {
+            this.output = new DataOutputStream(new BufferedOutputStream(output));
+        }
+
+        /**
+         * Appends a frame to the log
+         * @param predictions Detection results of the frame
+         * @param time Time the frame was captured, in milliseconds
+         * @throws IOException If the frame can't be written
+         */
+        public synchronized void record(PredictionBatch predictions, long time) throws IOException {
+            if (closed)
+                return;
+            if (lastTime == -1) {
+                output.writeInt(MAGIC);
+                output.writeByte(VERSION);
+                output.writeLong(time);
+                lastTime = time;
+            }
+            // Time only goes forwards in the log
+            ScanJournal.writeVarint(output, (int) Math.min(Math.max(time - lastTime, 0), Integer.MAX_VALUE));
+            lastTime = Math.max(time, lastTime);
+
+            int length = predictions.getLength();
+            int[] classes = predictions.getClasses();
+            int[] boxes = predictions.getBoxes();
+            float[] scores = predictions.getScores();
+            ScanJournal.writeVarint(output, length);
+            for (int i = 0; i < length; i++) {
+                output.writeByte(classes[i]);
+                output.writeByte(Math.round(Math.min(Math.max(scores[i], 0), 1) * SCORE_LEVELS));
+                for (int k = 0; k < 4; k++) {
+                    output.writeShort(Math.min(Math.max(boxes[i * 4 + k], Short.MIN_VALUE), Short.MAX_VALUE));
+                }
+            }
+            frames++;
+        }
+
+        /**
+         * @return Number of frames recorded
+         */
+        public synchronized int getFrames() {
+            return frames;
+        }
+
+        /**
+         * Writes any buffered frames and closes the stream
+         * @throws IOException If the frames couldn't be written
+         */
+        @Override
+        public synchronized void close() throws IOException {
+            if (closed)
+                return;
+            closed = true;
+            output.close();
+        }
+    }
+
+    /**
+     * Reads the frames of a log in order
+     */
+    public static final class Reader implements Closeable {
+        private final DataInputStream input;
+        // Time of the frame last read, or -1 before the header is read
+        private long time = -1;
+
+        /**
+         * @param input Stream to read the log from, closed with the reader
+         */
+        public Reader(InputStream input) {
+            this.input = new DataInputStream(new BufferedInputStream(input));
+        }
+
+        /**
+         * Reads the next frame into a batch, replacing its contents. A frame
+         * cut short (e.g. because the app was killed while recording) ends
+         * the log
+         * @param batch Batch to fill
+         * @return False if there are no more frames
+         * @throws IOException If the stream can't be read, or isn't a frame
+         * log
+         */
+        public boolean next(PredictionBatch batch) throws IOException {
+            batch.clear();
+            try {
+                if (time == -1 && !readHeader())
+                    return false;
+                time += ScanJournal.readVarint(input);
+                int length = ScanJournal.readVarint(input);
+                for (int i = 0; i < length; i++) {
+                    int classIndex = input.readUnsignedByte();
+                    float score = input.readUnsignedByte() / (float) SCORE_LEVELS;
+                    int x0 = input.readShort();
+                    int y0 = input.readShort();
+                    int x1 = input.readShort();
+                    int y1 = input.readShort();
+                    batch.add(classIndex, x0, y0, x1, y1, score);
+                }
+                return true;
+            } catch (EOFException e) {
+                batch.clear();
+                return false;
+            }
+        }
+
+        /**
+         * @return False if the log is empty
+         */
+        private boolean readHeader() throws IOException {
+            int magic;
+            try {
+                magic = input.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            if (magic != MAGIC)
+                throw new IOException("Not a frame log");
+            int version = input.readUnsignedByte();
+            if (version != VERSION)
+                throw new IOException("Unsupported frame log version " + version);
+            time = input.readLong();
+            return true;
+        }
+
+        /**
+         * @return Time the frame last read was captured, in milliseconds
+         */
+        public long getTime() {
+            return time;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+
+    /**
+     * Replays a log through a scan session as fast as possible, with each
+     * frame given its recorded time, until the log ends or the cube is
+     * completed. Only the session's work is timed, not reading the log
+     * @param input Stream to read the log from (not closed)
+     * @param session Session to add the frames to
+     * @return Timings of the replay
+     * @throws IOException If the stream can't be read, or isn't a frame log
+     */
+    public static Replay replay(InputStream input, ScanSession session) throws IOException {
+        Reader reader = new Reader(input);
+        PredictionBatch batch = new PredictionBatch();
+        Replay replay = new Replay();
+        while (!session.isCompleted() && reader.next(batch)) {
+            long start = System.nanoTime();
+            session.addFrame(batch, reader.getTime());
+            replay.add(batch.getLength(), System.nanoTime() - start);
+        }
+        replay.completed = session.isCompleted();
+        return replay;
+    }
+
+    /**
+     * Timings of a replayed log
+     */
+    public static final class Replay {
+        private long[] frameNanos = new long[256];
+        private int frames = 0;
+        private long detections = 0;
+        private long totalNanos = 0;
+        private boolean completed = false;
+
+        private Replay() {
+        }
+
+        private void add(int frameDetections, long nanos) {
+            if (frames == frameNanos.length)
+                frameNanos = Arrays.copyOf(frameNanos, frames * 2);
+            frameNanos[frames++] = nanos;
+            detections += frameDetections;
+            totalNanos += nanos;
+        }
+
+        /**
+         * @return Number of frames replayed
+         */
+        public int getFrames() {
+            return frames;
+        }
+
+        /**
+         * @return Number of detections in the frames replayed
+         */
+        public long getDetections() {
+            return detections;
+        }
+
+        /**
+         * @return Time spent adding frames to the session, in nanoseconds
+         */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * @return Frames added per second of session time
+         */
+        public double getFramesPerSecond() {
+            return totalNanos == 0 ? 0 : frames * 1e9 / totalNanos;
+        }
+
+        /**
+         * @param percentile Percentile of the frame times, from 0 to 100
+         * @return Time taken by a frame at the percentile, in nanoseconds, or
+         * 0 if no frames were replayed
+         */
+        public long getFrameNanos(double percentile) {
+            if (frames == 0)
+                return 0;
+            long[] sorted = Arrays.copyOf(frameNanos, frames);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100 * frames) - 1;
+            return sorted[Math.min(Math.max(index, 0), frames - 1)];
+        }
+
+        /**
+         * @return Whether the session completed the cube, which ends the
+         * replay early
+         */
+        public boolean isCompleted() {
+            return completed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d frames, %d detections, %.0f frames/s, p50 %d ns, p99 %d ns, max %d ns%s",
+                    frames, detections, getFramesPerSecond(), getFrameNanos(50), getFrameNanos(99),
+                    getFrameNanos(100), completed ? ", completed" : "");
+        }
+    }
+}
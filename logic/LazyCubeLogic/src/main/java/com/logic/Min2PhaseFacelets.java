@@ -0,0 +1,56 @@
+package com.logic;
+
+/**
+ * @description Lookup tables between the square layout of a {@link Cube} and
+ * the facelet layout used by the min2phase solver (faces in U, R, F, D, L, B
+ * order, with orange as F and white as U), matching
+ * {@link Cube#toMin2PhaseString()}.
+ */
+final class Min2PhaseFacelets {
+    // Number of facelets in a cube
+    static final int FACELETS = 54;
+    // min2phase face letters, in face index order
+    static final String FACE_LETTERS = "URFDLB";
+    // min2phase face index of each colour ordinal (-1 for NULL)
+    static final int[] FACE_OF_COLOUR = {2, 1, 5, 4, 0, 3, -1};
+    // Colour ordinal of each min2phase face index
+    static final int[] COLOUR_OF_FACE = {4, 1, 0, 5, 3, 2};
+    // Cube square index of each min2phase facelet, from the cube face and
+    // number of clockwise rotations making up each face in U, R, F, D, L, B
+    // order
+    static final int[] SQUARE = CubeEncoder.layout(new int[][]{{4, 3}, {1, 0}, {0, 0}, {5, 1}, {3, 0}, {2, 0}}, null);
+
+    private Min2PhaseFacelets() {
+    }
+
+    /**
+     * Converts the squares of a cube to min2phase facelets. As with the
+     * min2phase verify method, each colour is mapped to the face whose center
+     * has that colour
+     * @param squares Colour ordinal of each cube square
+     * @param facelets Array of 54 entries to write the face index of each
+     *                 facelet to
+     * @return False if a colour doesn't match exactly one center, or any
+     * face doesn't have exactly 9 facelets
+     */
+    static boolean toFacelets(byte[] squares, byte[] facelets) {
+        // Face index of each colour ordinal, from the centers
+        int centres = 0;
+        int[] faceOf = {-1, -1, -1, -1, -1, -1, -1};
+        for (int face = 0; face < 6; face++) {
+            int colour = squares[SQUARE[face * 9 + 4]];
+            if (faceOf[colour] != -1)
+                return false;
+            faceOf[colour] = face;
+        }
+        // Count each face's facelets in 4 bit lanes, as min2phase does
+        for (int i = 0; i < FACELETS; i++) {
+            int face = faceOf[squares[SQUARE[i]]];
+            if (face == -1)
+                return false;
+            facelets[i] = (byte) face;
+            centres += 1 << (face << 2);
+        }
+        return centres == 0x999999;
+    }
+}
@@ -0,0 +1,136 @@
+package com.logic;
+
+import java.util.Arrays;
+
+/**
+ * @description Reusable batch of detection results, stored as parallel
+ * primitive arrays rather than a list of {@link Prediction} objects. Used to
+ * pass a frame's detection results from the android app code to the logic
+ * module without allocating per detection.
+ * <br>
+ * Result {@code i} has its class at {@code classes[i]}, its score at
+ * {@code scores[i]} and its box at {@code boxes[4 * i]} to
+ * {@code boxes[4 * i + 3]}, laid out as x0, y0, x1, y1 (top left, then
+ * bottom right). Only the first {@link #getLength()} entries are valid.
+ */
+public class PredictionBatch {
+    // Class index used by the detection model for a whole face
+    public static final int FACE_CLASS = 6;
+    // Default number of results a batch can hold before growing
+    private static final int DEFAULT_CAPACITY = 32;
+
+    // Class index of each result
+    private int[] classes;
+    // Box coordinates of each result, 4 values per result
+    private int[] boxes;
+    // Confidence score of each result, from 0 to 1
+    private float[] scores;
+    // Number of valid results in the batch
+    private int length = 0;
+
+    /**
+     * Creates an empty batch with a default capacity
+     */
+    public PredictionBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty batch
+     * @param capacity Number of results to hold before the arrays need to grow
+     */
+    public PredictionBatch(int capacity) {
+        capacity = Math.max(capacity, 1);
+        classes = new int[capacity];
+        boxes = new int[capacity * 4];
+        scores = new float[capacity];
+    }
+
+    /**
+     * Removes all results from the batch, keeping its arrays for reuse
+     */
+    public void clear() {
+        length = 0;
+    }
+
+    /**
+     * Appends a detection result to the batch, growing the arrays if needed
+     * @param classIndex Class index of the result
+     * @param x0 Top left x coordinate
+     * @param y0 Top left y coordinate
+     * @param x1 Bottom right x coordinate
+     * @param y1 Bottom right y coordinate
+     * @param score Confidence score of the result, from 0 to 1
+     */
+    public void add(int classIndex, int x0, int y0, int x1, int y1, float score) {
+        if (length == classes.length) {
+            int capacity = classes.length * 2;
+            classes = Arrays.copyOf(classes, capacity);
+            boxes = Arrays.copyOf(boxes, capacity * 4);
+            scores = Arrays.copyOf(scores, capacity);
+        }
+        classes[length] = classIndex;
+        scores[length] = score;
+        int box = length * 4;
+        boxes[box] = x0;
+        boxes[box + 1] = y0;
+        boxes[box + 2] = x1;
+        boxes[box + 3] = y1;
+        length++;
+    }
+
+    /**
+     * @return Number of valid results in the batch
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return Class index of every result (not a copy, only the first
+     * {@link #getLength()} entries are valid)
+     */
+    public int[] getClasses() {
+        return classes;
+    }
+
+    /**
+     * @return Box coordinates of every result, as x0, y0, x1, y1 (not a copy,
+     * only the first {@code 4 * getLength()} entries are valid)
+     */
+    public int[] getBoxes() {
+        return boxes;
+    }
+
+    /**
+     * @return Confidence score of every result (not a copy, only the first
+     * {@link #getLength()} entries are valid)
+     */
+    public float[] getScores() {
+        return scores;
+    }
+
+    /**
+     * @param index Result to be indexed
+     * @return Whether the result is a whole face, rather than a single square
+     */
+    public boolean isFace(int index) {
+        return classes[index] == FACE_CLASS;
+    }
+
+    /**
+     * @param index Result to be indexed
+     * @return Center x coordinate of the result's box
+     */
+    public int getCenterX(int index) {
+        return (boxes[index * 4] + boxes[index * 4 + 2]) / 2;
+    }
+
+    /**
+     * @param index Result to be indexed
+     * @return Center y coordinate of the result's box
+     */
+    public int getCenterY(int index) {
+        return (boxes[index * 4 + 1] + boxes[index * 4 + 3]) / 2;
+    }
+}
@@ -56,4 +56,20 @@ public class PredictionList {
         }
         return output;
     }
+
+    /**
+     * Copies all detection results into a reusable {@link PredictionBatch},
+     * replacing its current contents
+     * @param batch Batch to fill
+     * @return The filled batch
+     */
+    public PredictionBatch toBatch(PredictionBatch batch) {
+        batch.clear();
+        for (Prediction prediction : predictions) {
+            int[] box = prediction.getBox();
+            batch.add(prediction.getClassIndex(), box[0], box[1], box[2], box[3],
+                    prediction.getPredictionPercent() / 100f);
+        }
+        return batch;
+    }
 }
@@ -0,0 +1,435 @@
+package com.logic;
+
+import java.util.Arrays;
+
+/**
+ * @description Constraint solver used by {@link FaceAdder} to find a rotation
+ * for every face of a cube, so that the cube forms a valid configuration.
+ * <br>
+ * Each face is a variable, and its domain is a 4 bit mask of the rotations
+ * still allowed for it (bit {@code r} set meaning the face can be rotated
+ * {@code r} times). Before searching, every pair of squares on the same piece
+ * is checked for each pair of face rotations, giving a 24x24 bit matrix of
+ * compatible (face, rotation) pairs. Arc consistency over this matrix
+ * removes rotations that can't be part of any solution, then a backtracking
+ * search assigns faces in index order and rotations in ascending order,
+ * checking each corner once all 3 of its faces are assigned. A full
+ * {@link FaceletValidator} check is only run on complete assignments.
+ * <br>
+ * As every check made during the search is implied by a valid cube, the
+ * solver finds the same solution as trying every combination of rotations
+ * in that order. Not thread safe, each {@link FaceAdder} keeps its own solver.
+ * <br>
+ * {@link #place(Cube, int, Face)} keeps the rotated colours and matrix of
+ * the cube it last placed a face in, so replacing one face only rechecks
+ * the pieces it shares with its 4 neighbours. The search first only rotates
+ * the new face, then the face and its neighbours, and only rotates every
+ * face if neither works.
+ */
+class RotationSolver {
+    // Number of rotations of a face
+    static final int ROTATIONS = Face.ROTATIONS;
+    // Domain allowing every rotation of a face
+    static final int ALL_ROTATIONS = (1 << ROTATIONS) - 1;
+    // Domain only allowing a face to keep its current rotation
+    static final int NO_ROTATION = 1;
+
+    private static final int FACES = 6;
+    private static final int NULL = CubeColour.NULL.ordinal();
+    // Colour ordinal of the opposite face of each colour ordinal
+    private static final int[] OPPOSITE = {2, 3, 0, 1, 5, 4, NULL};
+
+    // Pairs of squares (as cube square indexes) on different faces of the
+    // same piece, taken from the validator's edge and corner tables
+    private static final int[][] PIECE_PAIRS;
+    // Corners whose highest face index is each face, so they can be checked
+    // as soon as that face is assigned
+    private static final int[][] CORNERS_BY_LAST_FACE = new int[FACES][];
+    // Indexes in PIECE_PAIRS of the pairs with a square on each face
+    private static final int[][] PAIRS_BY_FACE = new int[FACES][];
+
+    static {
+        int[][] edges = CubeValidator.EDGES;
+        int[] corners = CubeValidator.CORNERS;
+        int[][] otherCorners = CubeValidator.OTHER_CORNERS;
+        PIECE_PAIRS = new int[edges.length + corners.length * 3][];
+        int pair = 0;
+        for (int[] edge : edges) {
+            PIECE_PAIRS[pair++] = new int[]{edge[0], edge[1]};
+        }
+        int[] cornerCount = new int[FACES];
+        for (int k = 0; k < corners.length; k++) {
+            PIECE_PAIRS[pair++] = new int[]{corners[k], otherCorners[k][0]};
+            PIECE_PAIRS[pair++] = new int[]{corners[k], otherCorners[k][1]};
+            PIECE_PAIRS[pair++] = new int[]{otherCorners[k][0], otherCorners[k][1]};
+            cornerCount[lastFace(k)]++;
+        }
+        for (int face = 0; face < FACES; face++) {
+            CORNERS_BY_LAST_FACE[face] = new int[cornerCount[face]];
+            cornerCount[face] = 0;
+        }
+        for (int k = 0; k < corners.length; k++) {
+            int face = lastFace(k);
+            CORNERS_BY_LAST_FACE[face][cornerCount[face]++] = k;
+        }
+        int[] pairCount = new int[FACES];
+        for (int[] piecePair : PIECE_PAIRS) {
+            pairCount[piecePair[0] / 9]++;
+            pairCount[piecePair[1] / 9]++;
+        }
+        for (int face = 0; face < FACES; face++) {
+            PAIRS_BY_FACE[face] = new int[pairCount[face]];
+            pairCount[face] = 0;
+        }
+        for (int p = 0; p < PIECE_PAIRS.length; p++) {
+            for (int square : PIECE_PAIRS[p]) {
+                int face = square / 9;
+                PAIRS_BY_FACE[face][pairCount[face]++] = p;
+            }
+        }
+    }
+
+    // Colour ordinals of each face in each rotation, [face * 4 + rotation][square]
+    private final byte[][] colours = new byte[FACES * ROTATIONS][9];
+    // Compatibility matrix, bit (otherFace * 4 + otherRotation) of
+    // compatible[face * 4 + rotation] is set if the two can be used together
+    private final int[] compatible = new int[FACES * ROTATIONS];
+    // Domains of every face at each depth of the search
+    private final int[][] domains = new int[FACES + 1][FACES];
+    // Rotation assigned to each face
+    private final int[] assignment = new int[FACES];
+    // Colours of the cube for a complete assignment
+    private final byte[] facelets = new byte[FaceletValidator.SQUARES];
+
+    // Cube being solved, and whether solutions start from a blank cube
+    private Cube cube;
+    private boolean fromBlank;
+    // Cube the colours and compatibility matrix were last loaded from by
+    // place, or null if solve has overwritten them since
+    private Cube loaded;
+    // Copy of a face while it is rotated in place
+    private final CubeState rotating = new CubeState(9);
+
+    /**
+     * Finds a rotation for every face of a cube, so that the cube is valid
+     * @param cube Cube to rotate the faces of (not changed)
+     * @param faceDomains Rotations allowed for each face, as a bit mask (see
+     *                    {@link #ALL_ROTATIONS} and {@link #NO_ROTATION}).
+     *                    Empty faces are never rotated
+     * @param fromBlank If true, the solution starts from a new {@link Cube}
+     *                  with only the non-empty faces copied in, otherwise it
+     *                  starts from a copy of {@code cube}
+     * @return New cube with the faces rotated, or {@code null} if no
+     * combination of rotations gives a valid cube
+     */
+    Cube solve(Cube cube, int[] faceDomains, boolean fromBlank) {
+        this.cube = cube;
+        this.fromBlank = fromBlank;
+        loaded = null;
+        byte[] cubeColours = cube.getState().getColours();
+        int[] domain = domains[0];
+        for (int face = 0; face < FACES; face++) {
+            domain[face] = cube.getFace(face).isEmpty() ? NO_ROTATION : faceDomains[face] & ALL_ROTATIONS;
+            if (domain[face] == 0)
+                return null;
+            loadColours(face, cubeColours, face * 9);
+        }
+        buildCompatibility();
+        Cube result = makeArcConsistent(domain) && search(0) ? buildCube() : null;
+        this.cube = null;
+        return result;
+    }
+
+    /**
+     * Replaces a face of a cube with a new face, rotating the new face, and
+     * if needed the faces next to it, so the cube stays valid. The cube is
+     * changed in place, and its other faces are only rotated if the new face
+     * doesn't fit in any rotation on its own
+     * @param cube Cube to place the face in, valid apart from the face
+     * @param face Index of the face to replace
+     * @param newFace Face to place, in any rotation
+     * @return False if no combination of rotations gives a valid cube, in
+     * which case the cube isn't changed
+     */
+    boolean place(Cube cube, int face, Face newFace) {
+        this.cube = cube;
+        fromBlank = false;
+        byte[] cubeColours = cube.getState().getColours();
+        sync(cubeColours, cube);
+        loadColours(face, newFace.getState().getColours(), newFace.getOffset());
+        updateCompatibility(face);
+
+        // Rotate the new face, then its neighbours as well, then every face
+        int[] domain = domains[0];
+        boolean placed = false;
+        for (int scope = 0; scope < 3 && !placed; scope++) {
+            for (int other = 0; other < FACES; other++) {
+                boolean rotates = other == face || scope == 2 || (scope == 1 && other != OPPOSITE[face]);
+                domain[other] = rotates && !cube.getFace(other).isEmpty() ? ALL_ROTATIONS : NO_ROTATION;
+            }
+            domain[face] = ALL_ROTATIONS;
+            placed = makeArcConsistent(domain) && search(0);
+        }
+        this.cube = null;
+        if (!placed) {
+            // Put back the colours of the face the cube still has
+            loadColours(face, cubeColours, face * 9);
+            updateCompatibility(face);
+            return false;
+        }
+
+        CubeState state = cube.getState();
+        for (int other = 0; other < FACES; other++) {
+            int rotation = assignment[other];
+            if (other == face) {
+                state.copySquares(newFace.getState(), newFace.getOffset(), Face.ROTATED_INDEX[rotation], face * 9);
+            } else if (rotation != 0) {
+                rotating.copySquares(state, other * 9, 0, 9);
+                state.copySquares(rotating, 0, Face.ROTATED_INDEX[rotation], other * 9);
+            } else {
+                continue;
+            }
+            // The face's current colours are now its unrotated colours
+            loadColours(other, cubeColours, other * 9);
+            updateCompatibility(other);
+        }
+        return true;
+    }
+
+    /**
+     * Makes the colours and compatibility matrix match a cube. Only the faces
+     * that changed since the cube was last loaded are rechecked
+     * @param cubeColours Colour ordinals of the cube's squares
+     * @param cube Cube to match
+     */
+    private void sync(byte[] cubeColours, Cube cube) {
+        if (loaded != cube) {
+            for (int face = 0; face < FACES; face++) {
+                loadColours(face, cubeColours, face * 9);
+            }
+            buildCompatibility();
+            loaded = cube;
+            return;
+        }
+        for (int face = 0; face < FACES; face++) {
+            byte[] current = colours[face * ROTATIONS];
+            for (int i = 0; i < 9; i++) {
+                if (current[i] != cubeColours[face * 9 + i]) {
+                    loadColours(face, cubeColours, face * 9);
+                    updateCompatibility(face);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills the colours of each rotation of a face
+     * @param face Face index
+     * @param source Colour ordinals to read the face from
+     * @param offset Index of the face's first square in {@code source}
+     */
+    private void loadColours(int face, byte[] source, int offset) {
+        for (int r = 0; r < ROTATIONS; r++) {
+            byte[] rotated = colours[face * ROTATIONS + r];
+            for (int i = 0; i < 9; i++) {
+                rotated[i] = source[offset + Face.ROTATED_INDEX[r][i]];
+            }
+        }
+    }
+
+    /**
+     * Fills the compatibility matrix from every pair of squares on the same
+     * piece. Two squares are compatible if either is unknown, or their
+     * colours are different and not on opposite faces
+     */
+    private void buildCompatibility() {
+        for (int a = 0; a < FACES * ROTATIONS; a++) {
+            // Assume compatible until a piece shows otherwise
+            compatible[a] = (1 << (FACES * ROTATIONS)) - 1;
+        }
+        for (int[] pair : PIECE_PAIRS) {
+            checkPair(pair);
+        }
+    }
+
+    /**
+     * Refills the compatibility of one face's rotations with every other
+     * face, from the pieces the face shares with its neighbours
+     * @param face Face index
+     */
+    private void updateCompatibility(int face) {
+        int faceBits = ALL_ROTATIONS << (face * ROTATIONS);
+        for (int a = 0; a < FACES * ROTATIONS; a++) {
+            if (a / ROTATIONS == face)
+                compatible[a] = (1 << (FACES * ROTATIONS)) - 1;
+            else
+                compatible[a] |= faceBits;
+        }
+        for (int pair : PAIRS_BY_FACE[face]) {
+            checkPair(PIECE_PAIRS[pair]);
+        }
+    }
+
+    /**
+     * Clears the compatibility of every pair of rotations that gives a pair
+     * of squares on the same piece the same or opposite colours
+     * @param pair Cube square indexes of the two squares
+     */
+    private void checkPair(int[] pair) {
+        int faceA = pair[0] / 9;
+        int faceB = pair[1] / 9;
+        for (int ra = 0; ra < ROTATIONS; ra++) {
+            int colourA = colours[faceA * ROTATIONS + ra][pair[0] % 9];
+            for (int rb = 0; rb < ROTATIONS; rb++) {
+                int colourB = colours[faceB * ROTATIONS + rb][pair[1] % 9];
+                if (colourA == NULL || colourB == NULL
+                        || (colourA != colourB && OPPOSITE[colourA] != colourB))
+                    continue;
+                compatible[faceA * ROTATIONS + ra] &= ~(1 << (faceB * ROTATIONS + rb));
+                compatible[faceB * ROTATIONS + rb] &= ~(1 << (faceA * ROTATIONS + ra));
+            }
+        }
+    }
+
+    /**
+     * Removes rotations with no compatible rotation of another face (AC-3),
+     * until no more can be removed
+     * @param domain Domains of every face, updated in place
+     * @return False if a face has no rotations left
+     */
+    private boolean makeArcConsistent(int[] domain) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int x = 0; x < FACES; x++) {
+                for (int y = 0; y < FACES; y++) {
+                    if (x == y)
+                        continue;
+                    int kept = 0;
+                    for (int r = 0; r < ROTATIONS; r++) {
+                        if ((domain[x] & (1 << r)) != 0 && (supported(x, r, y) & domain[y]) != 0)
+                            kept |= 1 << r;
+                    }
+                    if (kept != domain[x]) {
+                        if (kept == 0)
+                            return false;
+                        domain[x] = kept;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Rotations of face {@code other} compatible with rotation
+     * {@code rotation} of face {@code face}, as a bit mask
+     */
+    private int supported(int face, int rotation, int other) {
+        return (compatible[face * ROTATIONS + rotation] >>> (other * ROTATIONS)) & ALL_ROTATIONS;
+    }
+
+    /**
+     * Assigns a rotation to a face and every face after it, backtracking
+     * when a rotation leaves another face with no rotations
+     * @param face Face to assign
+     * @return True once a valid assignment is found, left in
+     * {@code assignment}
+     */
+    private boolean search(int face) {
+        if (face == FACES)
+            return assignmentValid();
+        int[] domain = domains[face];
+        int[] next = domains[face + 1];
+        for (int r = 0; r < ROTATIONS; r++) {
+            if ((domain[face] & (1 << r)) == 0)
+                continue;
+            assignment[face] = r;
+            if (!cornersValid(face))
+                continue;
+            // Forward check, restricting the faces still to be assigned
+            boolean consistent = true;
+            for (int other = 0; other < FACES; other++) {
+                if (other < face)
+                    next[other] = domain[other];
+                else if (other == face)
+                    next[other] = 1 << r;
+                else if ((next[other] = domain[other] & supported(face, r, other)) == 0) {
+                    consistent = false;
+                    break;
+                }
+            }
+            if (!consistent)
+                continue;
+            if (search(face + 1))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks every corner whose faces have all been assigned, now that
+     * {@code face} has been
+     * @param face Face that was just assigned
+     * @return False if any of the corners is invalid
+     */
+    private boolean cornersValid(int face) {
+        for (int k : CORNERS_BY_LAST_FACE[face]) {
+            if (!FaceletValidator.cornerIsValid(colour(CubeValidator.CORNERS[k]),
+                    colour(CubeValidator.OTHER_CORNERS[k][0]),
+                    colour(CubeValidator.OTHER_CORNERS[k][1])))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param square Cube square index
+     * @return Colour ordinal of the square, given the current assignment
+     */
+    private int colour(int square) {
+        int face = square / 9;
+        return colours[face * ROTATIONS + assignment[face]][square % 9];
+    }
+
+    /**
+     * Runs the full validation on the colours of the current assignment, so
+     * a cube is only built for a solution
+     * @return True if the colours form a valid cube
+     */
+    private boolean assignmentValid() {
+        for (int face = 0; face < FACES; face++) {
+            if (fromBlank && cube.getFace(face).isEmpty()) {
+                // A blank face only has its center set
+                Arrays.fill(facelets, face * 9, face * 9 + 9, (byte) NULL);
+                facelets[face * 9 + 4] = (byte) face;
+            } else {
+                System.arraycopy(colours[face * ROTATIONS + assignment[face]], 0, facelets, face * 9, 9);
+            }
+        }
+        return FaceletValidator.isCubeValid(facelets);
+    }
+
+    /**
+     * @return New cube for the current assignment
+     */
+    private Cube buildCube() {
+        Cube result = fromBlank ? new Cube() : new Cube(cube);
+        for (int face = 0; face < FACES; face++) {
+            if (fromBlank && cube.getFace(face).isEmpty())
+                continue;
+            result.getState().copySquares(cube.getState(), face * 9, Face.ROTATED_INDEX[assignment[face]], face * 9);
+        }
+        return result;
+    }
+
+    /**
+     * @return Highest face index of the squares of a corner
+     */
+    private static int lastFace(int corner) {
+        return Math.max(CubeValidator.CORNERS[corner] / 9,
+                Math.max(CubeValidator.OTHER_CORNERS[corner][0] / 9, CubeValidator.OTHER_CORNERS[corner][1] / 9));
+    }
+}
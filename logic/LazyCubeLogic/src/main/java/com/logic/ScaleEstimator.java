@@ -0,0 +1,39 @@
+package com.logic;
+
+/**
+ * @description Running estimate of the width of a detected cube square, in
+ * pixels. Thresholds used when grouping and ordering squares are relative to
+ * this width, so they scale with how close the cube is to the camera.
+ * <br>
+ * Each new square halves the weight of the previous estimate, so the width
+ * follows the cube quickly as it moves. Not thread safe, each
+ * {@link FaceDetector} keeps its own estimator.
+ */
+public class ScaleEstimator {
+    // Current estimate of the square width
+    private float squareWidth = 0;
+
+    /**
+     * Updates the estimate with the size of a detected square
+     * @param width Width of the square's bounding box
+     * @param height Height of the square's bounding box
+     */
+    public void update(int width, int height) {
+        squareWidth = (squareWidth + Math.abs(width)) / 2;
+        squareWidth = (squareWidth + Math.abs(height)) / 2;
+    }
+
+    /**
+     * @return Current estimate of the square width
+     */
+    public float getSquareWidth() {
+        return squareWidth;
+    }
+
+    /**
+     * Forgets all previous squares, e.g. when a new scan starts
+     */
+    public void reset() {
+        squareWidth = 0;
+    }
+}
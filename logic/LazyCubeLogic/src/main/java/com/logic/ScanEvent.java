@@ -0,0 +1,85 @@
+package com.logic;
+
+/**
+ * @description Something that happened while a {@link ScanSession} processed
+ * a frame, e.g. a face being confirmed or the cube being completed. Events
+ * are immutable, so they can be handed to another thread (e.g. the UI thread)
+ * as they are.
+ */
+public final class ScanEvent {
+
+    /**
+     * Kinds of event emitted by a {@link ScanSession}
+     */
+    public enum Type {
+        // A face was confident enough to be added to the scanned faces
+        FACE_CONFIRMED,
+        // A face failed to be added to the cube, and should be scanned again
+        RESCAN_NEEDED,
+        // No new face has been scanned for a while, so the cube should be
+        // turned to show another face
+        ROTATE_HINT,
+        // A new face was scanned after a rotate hint, so the hint can be hidden
+        ROTATE_HINT_STOP,
+        // Faces failed to be added to the cube for the first time
+        SCAN_FAIL,
+        // Faces have kept failing to be added, suggesting the scan can't be
+        // completed
+        COMPLETE_FAIL,
+        // A valid cube has been scanned, ending the session
+        COMPLETED,
+        // The cube has a parity issue that couldn't be fixed
+        PARITY_FAIL
+    }
+
+    private final Type type;
+    // Time of the frame the event was emitted for, in milliseconds
+    private final long time;
+    // Centre colour of the face the event is about, NULL if it isn't about
+    // a face
+    private final CubeColour colour;
+    // Scanned cube, only set for COMPLETED events
+    private final Cube cube;
+
+    ScanEvent(Type type, long time, CubeColour colour, Cube cube) {
+        this.type = type;
+        this.time = time;
+        this.colour = colour;
+        this.cube = cube;
+    }
+
+    /**
+     * @return Kind of event
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return Time of the frame the event was emitted for, in milliseconds
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return Centre colour of the face confirmed or to rescan, or
+     * {@link CubeColour#NULL} for events that aren't about a face
+     */
+    public CubeColour getColour() {
+        return colour;
+    }
+
+    /**
+     * @return Scanned cube for {@link Type#COMPLETED} events (shared, so it
+     * must not be changed), {@code null} otherwise
+     */
+    public Cube getCube() {
+        return cube;
+    }
+
+    @Override
+    public String toString() {
+        return colour == CubeColour.NULL ? type + "@" + time : type + "(" + colour + ")@" + time;
+    }
+}
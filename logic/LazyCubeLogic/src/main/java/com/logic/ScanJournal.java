@@ -0,0 +1,393 @@
+package com.logic;
+
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+/**
+ * @description Append-only log of a scan session, so an {@link AdderQueue}
+ * can be rebuilt after the app is killed (see {@link #recover(File)}).
+ * <br>
+ * The queue records every face it is given, each call that adds faces to
+ * the cube, face resets and setting changes, along with a compact snapshot
+ * of its whole state every {@link AdderQueue#SNAPSHOT_INTERVAL} frames (see
+ * {@link AdderQueue#setJournal(ScanJournal)}). Recovery restores the last
+ * snapshot and replays the records after it, so it only ever replays a
+ * few hundred frames.
+ * <br>
+ * Records are encoded on the calling thread and handed to a background
+ * writer thread, which writes them in batches through a {@link FileChannel}.
+ * The thread adding faces never waits for the file. Each record is stored
+ * as its type, the length of its data, the data and a CRC32 of all three,
+ * so a record cut short when the process died is found and ignored.
+ */
+public final class ScanJournal implements Closeable {
+    // Record types
+    static final byte FRAME = 1;
+    static final byte CANDIDATES = 2;
+    static final byte RESET = 3;
+    static final byte TURBO = 4;
+    static final byte DECAY = 5;
+    static final byte SNAPSHOT = 6;
+    static final byte CONFIRMATION = 7;
+
+    // Bytes before and after the data of every record
+    private static final int HEADER_BYTES = 5;
+    private static final int CHECKSUM_BYTES = 4;
+    // Size of the buffer records are batched into before writing
+    private static final int BATCH_BYTES = 1 << 16;
+    // Record handed to the writer thread to stop it
+    private static final byte[] CLOSE = new byte[0];
+
+    private final FileChannel channel;
+    // Records waiting to be written, in order
+    private final LinkedBlockingQueue<byte[]> pending = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    // Number of records appended, and written to the file
+    private long appended = 0;
+    private long written = 0;
+    // Set if the writer thread failed to write
+    private volatile IOException failure;
+    private volatile boolean closed = false;
+
+    /**
+     * Opens a journal, adding to the end of the file if it already exists
+     * @param file File to write to
+     * @throws IOException If the file can't be opened
+     */
+    public ScanJournal(File file) throws IOException {
+        this(file, true);
+    }
+
+    /**
+     * Opens a journal
+     * @param file File to write to
+     * @param append Whether to add to the end of an existing file, rather
+     *               than starting a new session
+     * @throws IOException If the file can't be opened
+     */
+    public ScanJournal(File file, boolean append) throws IOException {
+        channel = new FileOutputStream(file, append).getChannel();
+        writer = new Thread(this::writeRecords, "scan-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Records a face given to the queue, before it is changed by the queue
+     * @param face Face being added
+     */
+    public void recordFrame(Face face) {
+        byte[] data = new byte[13];
+        ByteBuffer.wrap(data).putInt((int) FaceSignature.pack(face, 0));
+        CubeState state = face.getState();
+        for (int i = 0; i < 9; i++) {
+            data[4 + i] = (byte) Math.min(state.getTimesSeen(face.getOffset() + i), 255);
+        }
+        append(FRAME, data);
+    }
+
+    /**
+     * Records a call adding the confirmed faces to the cube
+     */
+    public void recordCandidates() {
+        append(CANDIDATES, new byte[0]);
+    }
+
+    /**
+     * Records a face being removed from the buffer to be rescanned
+     * @param colour Centre colour of the face
+     */
+    public void recordReset(CubeColour colour) {
+        append(RESET, new byte[] {(byte) colour.ordinal()});
+    }
+
+    /**
+     * Records turbo mode being set
+     * @param turbo Whether turbo mode is enabled
+     */
+    public void recordTurbo(boolean turbo) {
+        append(TURBO, new byte[] {(byte) (turbo ? 1 : 0)});
+    }
+
+    /**
+     * Records the confidence decay rate being set
+     * @param rate New decay rate
+     */
+    public void recordDecay(double rate) {
+        append(DECAY, ByteBuffer.allocate(8).putDouble(rate).array());
+    }
+
+    /**
+     * Records the test confirming faces being set
+     * @param confirmation New confirmation test
+     */
+    public void recordConfirmation(SequentialConfirmation confirmation) {
+        append(CONFIRMATION, ByteBuffer.allocate(16).putDouble(confirmation.getErrorRate())
+                .putDouble(confirmation.getAccuracy()).array());
+    }
+
+    /**
+     * Records a snapshot of the whole queue
+     * @param state State from {@link AdderQueue#saveState()}
+     */
+    public void recordSnapshot(byte[] state) {
+        append(SNAPSHOT, state);
+    }
+
+    /**
+     * Frames a record and hands it to the writer thread. Records given after
+     * the journal is closed are dropped, as the queue may still be adding
+     * faces on another thread while it is closed. They are also dropped once
+     * the writer thread has failed, so they don't pile up unwritten
+     */
+    private void append(byte type, byte[] data) {
+        if (closed || failure != null)
+            return;
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + data.length + CHECKSUM_BYTES);
+        record.put(type).putInt(data.length).put(data);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue());
+        synchronized (this) {
+            appended++;
+        }
+        pending.add(record.array());
+    }
+
+    /**
+     * Writes records from the pending queue until the journal is closed,
+     * batching every record waiting into as few writes as possible
+     */
+    private void writeRecords() {
+        ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_BYTES);
+        List<byte[]> records = new ArrayList<>();
+        try {
+            while (true) {
+                records.add(pending.take());
+                pending.drainTo(records);
+                boolean close = false;
+                for (byte[] record : records) {
+                    if (record == CLOSE) {
+                        close = true;
+                        break;
+                    }
+                    if (record.length > batch.remaining())
+                        writeBatch(batch);
+                    if (record.length > batch.capacity())
+                        writeFully(ByteBuffer.wrap(record));
+                    else
+                        batch.put(record);
+                }
+                writeBatch(batch);
+                synchronized (this) {
+                    written += close ? records.size() - 1 : records.size();
+                    notifyAll();
+                }
+                records.clear();
+                if (close)
+                    return;
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    private void writeBatch(ByteBuffer batch) throws IOException {
+        batch.flip();
+        writeFully(batch);
+        batch.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Waits until every record appended so far has been written to the file
+     * @throws IOException If the writer thread failed to write
+     */
+    public void flush() throws IOException {
+        synchronized (this) {
+            long target = appended;
+            while (written < target && failure == null && writer.isAlive()) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while flushing journal", e);
+                }
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * Writes every record appended so far, forces them to storage and
+     * closes the file
+     * @throws IOException If the records couldn't be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        pending.add(CLOSE);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (failure != null)
+                throw failure;
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Rebuilds a queue from a journal file, from its last snapshot onwards.
+     * The queue is returned without a journal
+     * @param file Journal file
+     * @return Rebuilt queue, a new queue if the file is missing or empty
+     * @throws IOException If the file can't be read
+     */
+    public static AdderQueue recover(File file) throws IOException {
+        AdderQueue queue = new AdderQueue();
+        if (!file.exists())
+            return queue;
+        ByteBuffer log;
+        try (FileChannel input = new FileInputStream(file).getChannel()) {
+            log = ByteBuffer.allocate((int) input.size());
+            while (log.hasRemaining() && input.read(log) != -1) {
+                // Keep reading until the whole file is in memory
+            }
+        }
+        log.flip();
+        replay(log, queue);
+        return queue;
+    }
+
+    /**
+     * Replays a journal into a queue, starting from its last snapshot. Stops
+     * at the first record that was cut short or is corrupt
+     * @param log Journal contents
+     * @param queue Queue to replay into
+     * @return Number of records replayed, including the snapshot
+     */
+    static int replay(ByteBuffer log, AdderQueue queue) {
+        // Find where the valid records end, and the last snapshot
+        List<Integer> starts = new ArrayList<>();
+        int snapshot = 0;
+        CRC32 crc = new CRC32();
+        while (log.remaining() >= HEADER_BYTES + CHECKSUM_BYTES) {
+            int start = log.position();
+            int length = log.getInt(start + 1);
+            if (length < 0 || length > log.remaining() - HEADER_BYTES - CHECKSUM_BYTES)
+                break;
+            crc.reset();
+            crc.update(log.array(), log.arrayOffset() + start, HEADER_BYTES + length);
+            if ((int) crc.getValue() != log.getInt(start + HEADER_BYTES + length))
+                break;
+            if (log.get(start) == SNAPSHOT)
+                snapshot = starts.size();
+            starts.add(start);
+            log.position(start + HEADER_BYTES + length + CHECKSUM_BYTES);
+        }
+
+        for (int i = snapshot; i < starts.size(); i++) {
+            int start = starts.get(i);
+            byte type = log.get(start);
+            byte[] data = new byte[log.getInt(start + 1)];
+            log.position(start + HEADER_BYTES);
+            log.get(data);
+            apply(type, data, queue);
+        }
+        return starts.size() - snapshot;
+    }
+
+    /**
+     * Applies one record to a queue
+     */
+    private static void apply(byte type, byte[] data, AdderQueue queue) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        switch (type) {
+            case FRAME:
+                int packed = buffer.getInt();
+                Face face = new Face();
+                for (int i = 0; i < 9; i++) {
+                    CubeColour colour = CubeState.COLOURS[(packed >>> (i * 3)) & 7];
+                    face.setSquare(i, colour, data[4 + i] & 0xFF);
+                }
+                queue.addElement(face);
+                break;
+            case CANDIDATES:
+                queue.addCandidateFaces();
+                break;
+            case RESET:
+                queue.resetFace(CubeState.COLOURS[data[0]]);
+                break;
+            case TURBO:
+                queue.setTurbo(data[0] != 0);
+                break;
+            case DECAY:
+                queue.setConfidenceDecay(buffer.getDouble());
+                break;
+            case SNAPSHOT:
+                queue.restoreState(data);
+                break;
+            case CONFIRMATION:
+                queue.setConfirmation(new SequentialConfirmation(buffer.getDouble(), buffer.getDouble()));
+                break;
+            default:
+                // Records from a newer version are skipped
+                break;
+        }
+    }
+
+    /**
+     * Writes a non-negative int in 7 bit groups, least significant first,
+     * so small counts take a single byte
+     */
+    static void writeVarint(DataOutput output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    /**
+     * Reads an int written by {@link #writeVarint(DataOutput, int)}
+     */
+    static int readVarint(DataInput input) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Varint too long");
+    }
+}
@@ -0,0 +1,238 @@
+package com.logic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * @description Runs a whole scan of a cube from detection results, without
+ * any Android code. Each frame's predictions are turned into faces by a
+ * {@link FaceDetector}, added to an {@link AdderQueue}, and the progress of
+ * the scan is reported to listeners as {@link ScanEvent}s: faces confirmed or
+ * needing a rescan, hints to rotate the cube, failures, and the completed
+ * cube.
+ * <br>
+ * Timers (the rotate hint and complete fail) run on the time given with each
+ * frame, or read from the session's clock if none is given, so a session can
+ * be replayed or tested with a fake clock. A session keeps its own detector
+ * and queue, so it should only be used by one thread, but separate sessions
+ * can run on separate threads.
+ */
+public final class ScanSession {
+    // Time (in ms) without a new face until the rotate hint is shown
+    public static final long ROTATE_HINT_LENGTH = 5000;
+    // Time (in ms) after the first fail until a complete fail is emitted
+    public static final long COMPLETE_FAIL_LENGTH = 15000;
+
+    /**
+     * Receives the events of a session, on the thread adding frames
+     */
+    public interface Listener {
+        /**
+         * @param event Event emitted while adding a frame
+         */
+        void onEvent(ScanEvent event);
+    }
+
+    // Adder queue to submit scanned faces to the face adder
+    private final AdderQueue adderQueue;
+    // Face detector used only by this session
+    private final FaceDetector faceDetector = new FaceDetector();
+    // Prediction batch reused for frames given as prediction lists
+    private final PredictionBatch predictionBatch = new PredictionBatch();
+    // Clock giving the time in ms, for frames given without one
+    private final LongSupplier clock;
+    private final List<Listener> listeners = new ArrayList<>();
+
+    // Whether a valid cube has been scanned
+    private boolean completed = false;
+    // Time when the first fail was emitted, 0 if there hasn't been one
+    private long failTime = 0;
+    // Time the last new face was scanned
+    private long lastFaceScanTime = 0;
+    // Last length of the scanned face list
+    private int lastFaceListLength = -1;
+    // Whether the rotate hint is showing
+    private boolean rotateHint = false;
+    // Whether a complete fail has been emitted
+    private boolean failed = false;
+    // Time (in ms, on the clock) taken by the last frame to find faces,
+    // and to add them to the cube
+    private long faceDetectionTime = 0;
+    private long faceAdderTime = 0;
+
+    /**
+     * Creates a session with a new adder queue, timed by the system clock
+     */
+    public ScanSession() {
+        this(new AdderQueue(), System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a session adding faces to the given queue, e.g. one recovered
+     * from a {@link ScanJournal}
+     * @param adderQueue Queue to add faces to
+     * @param clock Current time in milliseconds
+     */
+    public ScanSession(AdderQueue adderQueue, LongSupplier clock) {
+        this.adderQueue = adderQueue;
+        this.clock = clock;
+    }
+
+    /**
+     * Registers a listener to be sent every later event
+     * @param listener Listener to notify
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Adds a frame of detection results, timed by the session's clock
+     * @param predictions Detection results of the frame
+     */
+    public void addFrame(PredictionList predictions) {
+        addFrame(predictions, clock.getAsLong());
+    }
+
+    /**
+     * Adds a frame of detection results
+     * @param predictions Detection results of the frame
+     * @param time Time the frame was captured, in milliseconds
+     */
+    public void addFrame(PredictionList predictions, long time) {
+        addFrame(predictions.toBatch(predictionBatch), time);
+    }
+
+    /**
+     * Adds a frame of detection results, timed by the session's clock
+     * @param predictions Detection results of the frame
+     */
+    public void addFrame(PredictionBatch predictions) {
+        addFrame(predictions, clock.getAsLong());
+    }
+
+    /**
+     * Adds a frame of detection results, finding the faces in it and adding
+     * them to the cube if the queue is confident enough in them, then emits
+     * the events of the frame. Frames added after the cube is completed are
+     * ignored
+     * @param predictions Detection results of the frame
+     * @param time Time the frame was captured, in milliseconds
+     */
+    public void addFrame(PredictionBatch predictions, long time) {
+        if (completed)
+            return;
+        long start = clock.getAsLong();
+        // Get list of faces, an ordered list of points from top left
+        // to bottom right
+        ArrayList<ArrayList<DetectionCenter>> faces = faceDetector.get_faces(predictions);
+        for (ArrayList<DetectionCenter> face : faces) {
+            adderQueue.addElement(new Face(faceDetector.order_face(face)));
+        }
+        faceDetectionTime = clock.getAsLong() - start;
+
+        start = clock.getAsLong();
+        // Add faces to the cube that the queue is "confident" enough to be correct
+        List<Face> failedFaces = adderQueue.addCandidateFaces();
+        faceAdderTime = clock.getAsLong() - start;
+
+        // If there is an unfixable parity issue
+        if (failedFaces == null) {
+            emit(ScanEvent.Type.PARITY_FAIL, time, CubeColour.NULL, null);
+            return;
+        }
+        for (Face face : failedFaces) {
+            emit(ScanEvent.Type.RESCAN_NEEDED, time, face.getCentreColour(), null);
+        }
+
+        // If a face has been added to or removed from the scanned faces
+        int queueLength = adderQueue.getQueueLength();
+        if (lastFaceListLength != queueLength) {
+            // Only a new face is confirmed, not one left last by a face
+            // being removed
+            if (queueLength > Math.max(lastFaceListLength, 0)) {
+                Face lastScanned = adderQueue.getFaceQueue().get(queueLength - 1);
+                emit(ScanEvent.Type.FACE_CONFIRMED, time, lastScanned.getCentreColour(), null);
+            }
+            lastFaceListLength = queueLength;
+            lastFaceScanTime = time;
+        }
+
+        // Hint to rotate the cube if no new face has been scanned for a
+        // while, unless faces are failing
+        boolean hint = time - lastFaceScanTime > ROTATE_HINT_LENGTH && failTime == 0;
+        if (hint != rotateHint) {
+            rotateHint = hint;
+            emit(hint ? ScanEvent.Type.ROTATE_HINT : ScanEvent.Type.ROTATE_HINT_STOP, time,
+                    CubeColour.NULL, null);
+        }
+
+        // If faces failed to be added to the cube (e.g. some scanning error),
+        // ask for them to be rescanned
+        if (!failedFaces.isEmpty() && failTime == 0) {
+            emit(ScanEvent.Type.SCAN_FAIL, time, CubeColour.NULL, null);
+            for (Face face : failedFaces) {
+                adderQueue.resetFace(face.getCentreColour());
+            }
+            failTime = time;
+        }
+        // If the fail wasn't fixed for a while
+        else if (failTime != 0 && !failed && time - failTime > COMPLETE_FAIL_LENGTH) {
+            emit(ScanEvent.Type.COMPLETE_FAIL, time, CubeColour.NULL, null);
+            failed = true;
+        }
+
+        // If the cube is complete (no nulls) and valid
+        Cube cube = adderQueue.getCube();
+        if (cube.isComplete() && new CubeValidator(cube).isCubeValid()) {
+            completed = true;
+            emit(ScanEvent.Type.COMPLETED, time, CubeColour.NULL, new Cube(cube));
+        }
+    }
+
+    private void emit(ScanEvent.Type type, long time, CubeColour colour, Cube cube) {
+        ScanEvent event = new ScanEvent(type, time, colour, cube);
+        for (Listener listener : listeners) {
+            listener.onEvent(event);
+        }
+    }
+
+    /**
+     * @return Whether a valid cube has been scanned, after which frames are
+     * ignored
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return Adder queue the session adds faces to
+     */
+    public AdderQueue getAdderQueue() {
+        return adderQueue;
+    }
+
+    /**
+     * @return Current internal cube representation (not a copy)
+     */
+    public Cube getCube() {
+        return adderQueue.getCube();
+    }
+
+    /**
+     * @return Time (in ms, on the session's clock) the last frame took to
+     * find its faces
+     */
+    public long getFaceDetectionTime() {
+        return faceDetectionTime;
+    }
+
+    /**
+     * @return Time (in ms, on the session's clock) the last frame took to add
+     * its faces to the cube
+     */
+    public long getFaceAdderTime() {
+        return faceAdderTime;
+    }
+}
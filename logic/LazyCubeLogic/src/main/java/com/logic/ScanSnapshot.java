@@ -0,0 +1,94 @@
+package com.logic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @description Immutable view of the progress of a scan, published by
+ * {@link AdderQueue} after each frame so other threads (e.g. the UI thread
+ * drawing an overlay) can read it while the queue keeps changing.
+ * <br>
+ * Everything in a snapshot is a copy taken when it was published, and the
+ * queue replaces the whole snapshot through a single volatile reference, so
+ * a reader always sees one consistent frame without locking. The version
+ * goes up by one with every snapshot published by a queue. The faces and
+ * cube returned are shared between readers and must not be changed.
+ */
+public final class ScanSnapshot {
+    // Snapshot of a queue that hasn't seen any faces
+    public static final ScanSnapshot EMPTY = new ScanSnapshot(0, Collections.emptyList(),
+            new int[CubeColour.values().length], new Cube());
+
+    private final long version;
+    // Faces confident enough to be added to the cube, in the order they were
+    // confirmed
+    private final List<Face> scannedFaces;
+    // Bit mask of the centre colour ordinals of the scanned faces
+    private final int scannedMask;
+    // Minimum times seen of every square of each face being scanned, by
+    // centre colour ordinal
+    private final int[] progress;
+    // Current internal cube representation
+    private final Cube cube;
+
+    /**
+     * Creates a snapshot, copying everything given so later changes to the
+     * queue aren't seen
+     * @param version Version of the snapshot
+     * @param scannedFaces Faces confirmed so far
+     * @param progress Minimum times seen of each face, by centre colour ordinal
+     * @param cube Current internal cube representation
+     */
+    ScanSnapshot(long version, List<Face> scannedFaces, int[] progress, Cube cube) {
+        this.version = version;
+        List<Face> faces = new ArrayList<>(scannedFaces.size());
+        int mask = 0;
+        for (Face face : scannedFaces) {
+            faces.add(new Face(face));
+            mask |= 1 << face.getCentreColour().ordinal();
+        }
+        this.scannedFaces = Collections.unmodifiableList(faces);
+        this.scannedMask = mask;
+        this.progress = progress.clone();
+        this.cube = new Cube(cube);
+    }
+
+    /**
+     * @return Version of the snapshot, higher for later snapshots
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return Faces confirmed so far (unmodifiable)
+     */
+    public List<Face> getScannedFaces() {
+        return scannedFaces;
+    }
+
+    /**
+     * @param colour Centre colour of a face
+     * @return Whether the face has been confirmed
+     */
+    public boolean isScanned(CubeColour colour) {
+        return (scannedMask & (1 << colour.ordinal())) != 0;
+    }
+
+    /**
+     * @param colour Centre colour of a face
+     * @return Minimum number of frames every square of the face has been
+     * seen for, 0 if the face hasn't been seen
+     */
+    public int getProgress(CubeColour colour) {
+        return progress[colour.ordinal()];
+    }
+
+    /**
+     * @return Internal cube representation when the snapshot was taken
+     */
+    public Cube getCube() {
+        return cube;
+    }
+}
@@ -0,0 +1,107 @@
+package com.logic;
+
+/**
+ * @description Decides when a scanned face can be trusted, using a
+ * sequential probability ratio test on the colour counts of each square
+ * rather than a fixed number of frames.
+ * <br>
+ * Each frame is assumed to show a square's true colour with probability
+ * {@code accuracy}, and any one of the other 5 colours with equal
+ * probability otherwise. The likelihood ratio of "the most seen colour is
+ * the true colour" against "the second most seen colour is" then only
+ * depends on how far the first leads the second, growing by a factor of
+ * {@code accuracy / ((1 - accuracy) / 5)} for every frame of lead. A square
+ * is settled once the ratio passes {@code (1 - errorRate) / errorRate}, the
+ * upper bound of Wald's test with both error rates equal. The second most
+ * seen colour is the strongest alternative, so every other colour is ruled
+ * out as well.
+ * <br>
+ * A face seen cleanly settles within 2 or 3 frames, while a square that
+ * flickers between colours keeps the face waiting for as long as the lead
+ * stays small. Counts are read in fixed point, so decayed confidence (see
+ * {@link ColourHistogram#setDecay(double)}) is weighed as it is stored.
+ */
+public final class SequentialConfirmation {
+    // Default chance of settling a square on the wrong colour
+    public static final double DEFAULT_ERROR_RATE = 0.001;
+    // Default chance of a frame showing the true colour of a square
+    public static final double DEFAULT_ACCURACY = 0.9;
+    // Number of colours a square can be seen as
+    private static final int SEEN_COLOURS = CubeColour.values().length - 1;
+
+    private final double errorRate;
+    private final double accuracy;
+    // Lead of the most seen colour over the second needed to settle a
+    // square, in stored count units (see ColourHistogram.ONE)
+    private final int requiredLead;
+
+    /**
+     * Creates a test with the default error rate and accuracy
+     */
+    public SequentialConfirmation() {
+        this(DEFAULT_ERROR_RATE, DEFAULT_ACCURACY);
+    }
+
+    /**
+     * Creates a test with the given error rate and accuracy
+     * @param errorRate Chance of settling a square on the wrong colour,
+     *                  between 0 and 0.5
+     * @param accuracy Chance of a frame showing the true colour of a square,
+     *                 greater than a random guess and less than 1
+     * @throws IllegalArgumentException If either value is out of range
+     */
+    public SequentialConfirmation(double errorRate, double accuracy) {
+        if (!(errorRate > 0 && errorRate < 0.5))
+            throw new IllegalArgumentException("Error rate must be in (0, 0.5), got " + errorRate);
+        if (!(accuracy > 1.0 / SEEN_COLOURS && accuracy < 1))
+            throw new IllegalArgumentException("Accuracy must be in (1/" + SEEN_COLOURS + ", 1), got " + accuracy);
+        this.errorRate = errorRate;
+        this.accuracy = accuracy;
+        double bound = Math.log((1 - errorRate) / errorRate);
+        double frameRatio = Math.log(accuracy * (SEEN_COLOURS - 1) / (1 - accuracy));
+        requiredLead = (int) Math.ceil(bound / frameRatio * ColourHistogram.ONE);
+    }
+
+    /**
+     * @return Chance of settling a square on the wrong colour
+     */
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    /**
+     * @return Chance of a frame showing the true colour of a square
+     */
+    public double getAccuracy() {
+        return accuracy;
+    }
+
+    /**
+     * @return Number of frames the most seen colour of a square has to lead
+     * the second most seen colour by to settle the square
+     */
+    public double getRequiredLead() {
+        return requiredLead / (double) ColourHistogram.ONE;
+    }
+
+    /**
+     * @param face Face to test
+     * @param index Index of the square within the face
+     * @return Whether the square's colour is settled
+     */
+    public boolean isSettled(Face face, int index) {
+        return face.getState().getConfidence().getLead(face.getOffset() + index) >= requiredLead;
+    }
+
+    /**
+     * @param face Face to test
+     * @return Whether every square of the face is settled
+     */
+    public boolean isSettled(Face face) {
+        for (int i = 0; i < 9; i++) {
+            if (!isSettled(face, i))
+                return false;
+        }
+        return true;
+    }
+}
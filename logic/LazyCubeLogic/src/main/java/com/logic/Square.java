@@ -1,32 +1,52 @@
 package com.logic;
 
 import java.io.Serializable;
-import java.util.Arrays;
-import java.util.HashMap;
 
 /**
  * @author Alexander Bull
- * @description Generates a single square belonging to a face
+ * @description Generates a single square belonging to a face. A square is a
+ * view over one entry of a {@link CubeState}
  */
 public class Square implements Serializable
 {
-    private final HashMap<CubeColour, Integer> confidenceMap = new HashMap<>();
-
-    private CubeColour colourValue = null;
+    // State holding the square's colour and confidence values
+    private final CubeState state;
+    // Index of the square within the state
+    private final int index;
 
     /**
      * Creates square with confidence values set to 0
      */
     public Square()
     {
-        confidenceMap.put(CubeColour.WHITE, 0);
-        confidenceMap.put(CubeColour.YELLOW, 0);
-        confidenceMap.put(CubeColour.BLUE, 0);
-        confidenceMap.put(CubeColour.GREEN, 0);
-        confidenceMap.put(CubeColour.RED, 0);
-        confidenceMap.put(CubeColour.ORANGE, 0);
-        confidenceMap.put(CubeColour.NULL, 0);
-        colourValue = CubeColour.NULL;
+        this(new CubeState(1), 0);
+    }
+
+    /**
+     * Creates a square as a view over an entry of a packed state
+     * @param state State holding the square
+     * @param index Index of the square within the state
+     */
+    Square(CubeState state, int index)
+    {
+        this.state = state;
+        this.index = index;
+    }
+
+    /**
+     * @return State holding the square
+     */
+    CubeState getState()
+    {
+        return state;
+    }
+
+    /**
+     * @return Index of the square within its state
+     */
+    int getIndex()
+    {
+        return index;
     }
 
     /**
@@ -34,7 +54,7 @@ public class Square implements Serializable
      */
     public CubeColour getColour()
     {
-        return colourValue;
+        return state.getColour(index);
     }
 
     /**
@@ -42,7 +62,7 @@ public class Square implements Serializable
      * @param colourValue colour to be set to
      */
     public void setColourValue(CubeColour colourValue) {
-        this.colourValue = colourValue;
+        state.setColourValue(index, colourValue);
     }
 
     /**
@@ -50,7 +70,7 @@ public class Square implements Serializable
      */
     public int getTimesSeen()
     {
-        return confidenceMap.get(colourValue);
+        return state.getTimesSeen(index);
     }
 
     /**
@@ -59,23 +79,7 @@ public class Square implements Serializable
      * @return The {@link CubeColour} of the second-highest time seen colour
      */
     public CubeColour getSecondTimesSeenColour(){
-        int highest = Integer.MIN_VALUE;
-        int secondHighest = Integer.MIN_VALUE;
-        CubeColour secondHighestColor = null;
-
-        for (CubeColour colour : CubeColour.values()) {
-            int frequency = confidenceMap.getOrDefault(colour, 0);
-            if (frequency > highest) {
-                secondHighest = highest;
-                highest = frequency;
-                secondHighestColor = colour;
-            } else if (frequency > secondHighest && frequency < highest) {
-                secondHighest = frequency;
-                secondHighestColor = colour;
-            }
-        }
-
-        return secondHighestColor;
+        return state.getSecondTimesSeenColour(index);
     }
 
     /**
@@ -86,20 +90,7 @@ public class Square implements Serializable
      * detected
      */
     public int getSecondTimesSeenCount(){
-        int highest = Integer.MIN_VALUE;
-        int secondHighest = Integer.MIN_VALUE;
-
-        for (CubeColour colour : CubeColour.values()) {
-            int frequency = confidenceMap.getOrDefault(colour, 0);
-            if (frequency > highest) {
-                secondHighest = highest;
-                highest = frequency;
-            } else if (frequency > secondHighest && frequency < highest) {
-                secondHighest = frequency;
-            }
-        }
-
-        return secondHighest;
+        return state.getSecondTimesSeenCount(index);
     }
 
     /**
@@ -109,37 +100,14 @@ public class Square implements Serializable
      */
     public void setColour(CubeColour colour, int timesSeen)
     {
-        //The below if statement updates the set ColourValue to make sure that if the new colour is more confident that the saved one it will be replaced
-        if (colourValue == CubeColour.NULL || (confidenceMap.get(colourValue) < timesSeen))
-        {
-            colourValue = colour;
-        }
-        //the else if checks if the current set colour has had its confidence decreased it checks for if it should be replaced as the saved colour value
-        else if (colourValue == colour && timesSeen < confidenceMap.get(colourValue))
-        {
-            colourCheck();
-        }
-        confidenceMap.put(colour, timesSeen);
+        state.setColour(index, colour, timesSeen);
     }
 
     /**
-     * Adds 1 to the value stored for how many times the given colour has been seen in the Square's HashMap
+     * Adds 1 to the value stored for how many times the given colour has been seen
      * @param colour Colour to increment storage value of
      */
     public void incrementColour(CubeColour colour){
-        confidenceMap.put(colour, confidenceMap.get(colour) + 1);
-        colourCheck();
-    }
-
-    /**
-     * Loops through all colours and checks if their confidence is higher than the current saved value
-     */
-    private void colourCheck()
-    {
-        Arrays.asList(CubeColour.values()).forEach((col) ->
-            {
-                if (confidenceMap.get(col) > confidenceMap.get(colourValue))
-                    colourValue = col;
-            });
+        state.incrementColour(index, colour);
     }
 }
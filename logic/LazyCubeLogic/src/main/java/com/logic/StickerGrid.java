@@ -0,0 +1,144 @@
+package com.logic;
+
+import java.util.Arrays;
+
+/**
+ * @description Uniform grid of sticker centre points, used to find the
+ * stickers lying within a face box without checking every sticker against
+ * every face.
+ * <br>
+ * Points are bucketed into square cells (roughly one detected square wide)
+ * and stored in compressed form: the points of cell {@code c} are
+ * {@code cellItems[cellStart[c]]} to {@code cellItems[cellStart[c + 1] - 1]}.
+ * Building the grid and querying a box are both linear in the number of
+ * points involved, and the arrays are reused between builds.
+ */
+class StickerGrid {
+    // Upper limit on the number of cells along each axis, so a small square
+    // width in a large frame can't produce a huge, mostly empty grid
+    static final int MAX_CELLS_PER_AXIS = 64;
+
+    // Point coordinates, as passed to build()
+    private int[] xs;
+    private int[] ys;
+    // Number of points in the grid
+    private int count = 0;
+
+    // Grid origin, cell size and dimensions
+    private int minX;
+    private int minY;
+    private int cellSize;
+    private int cols;
+    private int rows;
+
+    // Cell of each point
+    private int[] pointCell = new int[0];
+    // Start offset of each cell's points within cellItems (cells + 1 entries)
+    private int[] cellStart = new int[0];
+    // Point indices, grouped by cell, in ascending order within each cell
+    private int[] cellItems = new int[0];
+
+    /**
+     * Buckets a set of points into the grid, replacing any previous points
+     * @param xs X coordinate of each point
+     * @param ys Y coordinate of each point
+     * @param count Number of points (only the first {@code count} entries of
+     *              each array are used)
+     * @param squareWidth Expected width of a detected square, used as the
+     *                    cell size
+     */
+    void build(int[] xs, int[] ys, int count, float squareWidth) {
+        this.xs = xs;
+        this.ys = ys;
+        this.count = count;
+        if (count == 0) {
+            cols = rows = 0;
+            return;
+        }
+
+        // Find the area covered by the points
+        minX = xs[0];
+        minY = ys[0];
+        int maxX = xs[0];
+        int maxY = ys[0];
+        for (int i = 1; i < count; i++) {
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+
+        // Size cells from the square width, growing them if the grid would be
+        // too large
+        cellSize = Math.max(1, (int) Math.ceil(squareWidth));
+        int span = Math.max(maxX - minX, maxY - minY);
+        cellSize = Math.max(cellSize, span / MAX_CELLS_PER_AXIS + 1);
+        cols = (maxX - minX) / cellSize + 1;
+        rows = (maxY - minY) / cellSize + 1;
+
+        int cells = cols * rows;
+        if (cellStart.length < cells + 1)
+            cellStart = new int[cells + 1];
+        else
+            Arrays.fill(cellStart, 0, cells + 1, 0);
+        if (pointCell.length < count) {
+            pointCell = new int[count];
+            cellItems = new int[count];
+        }
+
+        // Count the points in each cell, then turn the counts into offsets
+        for (int i = 0; i < count; i++) {
+            int cell = ((ys[i] - minY) / cellSize) * cols + (xs[i] - minX) / cellSize;
+            pointCell[i] = cell;
+            cellStart[cell + 1]++;
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        // Place points in ascending order, using the start of each cell as a
+        // cursor, then shift the offsets back
+        for (int i = 0; i < count; i++) {
+            cellItems[cellStart[pointCell[i]]++] = i;
+        }
+        for (int cell = cells; cell > 0; cell--) {
+            cellStart[cell] = cellStart[cell - 1];
+        }
+        cellStart[0] = 0;
+    }
+
+    /**
+     * Finds the points lying strictly within a box
+     * @param x0 Top left x coordinate of the box
+     * @param y0 Top left y coordinate of the box
+     * @param x1 Bottom right x coordinate of the box
+     * @param y1 Bottom right y coordinate of the box
+     * @param out Array to write the point indices to, must hold at least as
+     *            many entries as there are points
+     * @return Number of points found. Indices are written to the start of
+     * {@code out} in ascending order
+     */
+    int query(int x0, int y0, int x1, int y1, int[] out) {
+        if (count == 0 || x1 < minX || y1 < minY)
+            return 0;
+        int colStart = Math.max(0, (x0 - minX) / cellSize);
+        int rowStart = Math.max(0, (y0 - minY) / cellSize);
+        int colEnd = Math.min(cols - 1, (x1 - minX) / cellSize);
+        int rowEnd = Math.min(rows - 1, (y1 - minY) / cellSize);
+
+        int found = 0;
+        for (int row = rowStart; row <= rowEnd; row++) {
+            for (int col = colStart; col <= colEnd; col++) {
+                int cell = row * cols + col;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int i = cellItems[k];
+                    if (FaceDetector.pointInBox(xs[i], ys[i], x0, y0, x1, y1))
+                        out[found++] = i;
+                }
+            }
+        }
+        // Points are only in order within each cell, so restore the overall
+        // order across cells
+        Arrays.sort(out, 0, found);
+        return found;
+    }
+}
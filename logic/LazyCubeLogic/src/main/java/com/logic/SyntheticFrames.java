@@ -0,0 +1,362 @@
+package com.logic;
+
+import cs.min2phase.Tools;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * @description Generates the detection results of a simulated scan of a
+ * random cube, so the logic module can be load and convergence tested
+ * (frames to completion, rescan rates, per frame cost) without a device.
+ * <br>
+ * The cube is a random state from min2phase. The camera is pointed at one
+ * face at a time for a random number of frames, with a few empty frames
+ * while the cube is turned to the next face, going through the faces in a
+ * random order and starting again once all 6 have been shown. Each time a
+ * face is shown the camera takes a new pose: the face is turned a random
+ * number of quarter turns plus a small roll, tilted towards or away from the
+ * camera (shrinking the far side of the face), and placed at a random
+ * distance and position. The pose then drifts slightly every frame, like a
+ * hand held camera.
+ * <br>
+ * Noise is off by default, and can be set for box jitter, confusing similar
+ * colours (orange and red, white and yellow), dropping stickers and adding
+ * false positives. The same seed always gives the same frames. Not thread
+ * safe, so each thread should use its own generator.
+ */
+public final class SyntheticFrames {
+    // Size of the simulated camera image, in pixels
+    public static final int WIDTH = 480;
+    public static final int HEIGHT = 640;
+    // Time between frames, in ms (30 frames a second)
+    public static final long FRAME_LENGTH = 33;
+    // Colour ordinal each colour is confused with (NULL isn't a colour)
+    private static final int[] CONFUSED_WITH = {2, 1, 0, 3, 5, 4, 6};
+    // Size of a sticker's detection box, as a fraction of the distance
+    // between sticker centres
+    private static final double STICKER_SIZE = 0.85;
+    // Distance of the camera from the face, in sticker pitches, for the
+    // perspective of a tilted face
+    private static final double CAMERA_DISTANCE = 6;
+
+    private final Random random;
+
+    // Average number of frames each face is shown for
+    private int framesPerFace = 20;
+    // Number of empty frames while the cube is turned to the next face
+    private int turnFrames = 5;
+    // Largest roll (beyond the quarter turns) and tilt of a face, in radians
+    private double maxRoll = Math.toRadians(15);
+    private double maxTilt = Math.toRadians(20);
+    // Standard deviation of each box coordinate, as a fraction of the
+    // sticker pitch
+    private double boxJitter = 0;
+    // Chance of a sticker being detected as its similar colour
+    private double confusion = 0;
+    // Chance of a sticker not being detected
+    private double dropRate = 0;
+    // Average number of false positive stickers in each frame
+    private double falsePositives = 0;
+
+    // Cube being scanned, and its min2phase facelets
+    private Cube cube;
+    private String facelets;
+    // Order the faces are shown in
+    private final int[] order = {0, 1, 2, 3, 4, 5};
+    // Index in order of the face shown, or being turned to
+    private int orderIndex;
+    // Frames left showing the face, and turning to it before that
+    private int showFrames;
+    private int turningFrames;
+    // Time of the last frame, in ms
+    private long time;
+    // Index of the face shown in the last frame, -1 if none was
+    private int shownFace = -1;
+
+    // Pose of the face shown: quarter turns, roll and tilts (radians),
+    // sticker pitch and centre (pixels)
+    private int quarterTurns;
+    private double roll;
+    private double yaw;
+    private double pitch;
+    private double stickerPitch;
+    private double centreX;
+    private double centreY;
+
+    // Frame reused by nextPredictionList
+    private final PredictionBatch listBatch = new PredictionBatch();
+
+    /**
+     * Creates a generator, starting with a new random cube
+     * @param random Source of randomness for the cube, poses and noise
+     */
+    public SyntheticFrames(Random random) {
+        this.random = random;
+        newCube();
+    }
+
+    /**
+     * Starts scanning a new random cube, from time 0
+     */
+    public void newCube() {
+        facelets = Tools.randomCube(random);
+        int[] colours = new int[Min2PhaseFacelets.FACELETS];
+        for (int i = 0; i < Min2PhaseFacelets.FACELETS; i++) {
+            int face = Min2PhaseFacelets.FACE_LETTERS.indexOf(facelets.charAt(i));
+            colours[Min2PhaseFacelets.SQUARE[i]] = Min2PhaseFacelets.COLOUR_OF_FACE[face];
+        }
+        cube = new Cube(colours);
+        shuffleOrder();
+        orderIndex = 0;
+        time = 0;
+        shownFace = -1;
+        startFace();
+    }
+
+    /**
+     * Adds the detection results of the next frame to a batch
+     * @param batch Batch to fill, replacing its current contents
+     * @return Time of the frame, in ms
+     */
+    public long nextFrame(PredictionBatch batch) {
+        batch.clear();
+        time += FRAME_LENGTH;
+        shownFace = -1;
+        if (turningFrames > 0) {
+            turningFrames--;
+        } else {
+            shownFace = order[orderIndex];
+            addFace(batch);
+            drift();
+            if (--showFrames == 0)
+                nextFace();
+        }
+        addFalsePositives(batch);
+        return time;
+    }
+
+    /**
+     * Generates the next frame as a {@link PredictionList}, the form the app
+     * used to pass detection results in. Allocates every result, so
+     * {@link #nextFrame(PredictionBatch)} should be used for load tests
+     * @return Detection results of the next frame
+     */
+    public PredictionList nextPredictionList() {
+        nextFrame(listBatch);
+        ArrayList<Prediction> predictions = new ArrayList<>(listBatch.getLength());
+        int[] boxes = listBatch.getBoxes();
+        for (int i = 0; i < listBatch.getLength(); i++) {
+            int box = i * 4;
+            predictions.add(new Prediction(Math.round(listBatch.getScores()[i] * 100),
+                    new int[]{boxes[box], boxes[box + 1], boxes[box + 2], boxes[box + 3]},
+                    listBatch.getClasses()[i]));
+        }
+        return new PredictionList(predictions);
+    }
+
+    /**
+     * Moves on to the next face in the order, shuffling the order again
+     * once every face has been shown
+     */
+    private void nextFace() {
+        if (++orderIndex == order.length) {
+            shuffleOrder();
+            orderIndex = 0;
+        }
+        startFace();
+    }
+
+    private void shuffleOrder() {
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+    }
+
+    /**
+     * Turns the cube to the face in the order, choosing a new pose
+     */
+    private void startFace() {
+        turningFrames = turnFrames;
+        showFrames = Math.max(1, framesPerFace / 2 + random.nextInt(framesPerFace + 1));
+        quarterTurns = random.nextInt(4);
+        roll = (random.nextDouble() * 2 - 1) * maxRoll;
+        yaw = (random.nextDouble() * 2 - 1) * maxTilt;
+        pitch = (random.nextDouble() * 2 - 1) * maxTilt;
+        stickerPitch = 55 + random.nextDouble() * 35;
+        centreX = WIDTH / 2.0 + (random.nextDouble() * 2 - 1) * 40;
+        centreY = HEIGHT / 2.0 + (random.nextDouble() * 2 - 1) * 60;
+    }
+
+    /**
+     * Moves the pose slightly, like a hand held camera
+     */
+    private void drift() {
+        roll += random.nextGaussian() * Math.toRadians(0.5);
+        centreX += random.nextGaussian() * 2;
+        centreY += random.nextGaussian() * 2;
+    }
+
+    /**
+     * Projects the stickers of the face shown into the frame, along with a
+     * box around the whole face
+     */
+    private void addFace(PredictionBatch batch) {
+        int face = order[orderIndex];
+        double angle = quarterTurns * Math.PI / 2 + roll;
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        // Axis aligned box around a square turned by the roll
+        double boxScale = STICKER_SIZE / 2 * (Math.abs(Math.cos(roll)) + Math.abs(Math.sin(roll)));
+        int faceBox = batch.getLength();
+        batch.add(PredictionBatch.FACE_CLASS, 0, 0, 0, 0, score(false));
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (int k = 0; k < 9; k++) {
+            // Centre of the sticker on the face, then turned and tilted
+            double u = (k % 3 - 1) * stickerPitch;
+            double v = (k / 3 - 1) * stickerPitch;
+            double x = u * cos - v * sin;
+            double y = u * sin + v * cos;
+            double depth = x * Math.sin(yaw) + y * Math.sin(pitch);
+            double perspective = CAMERA_DISTANCE * stickerPitch / (CAMERA_DISTANCE * stickerPitch + depth);
+            x = centreX + x * Math.cos(yaw) * perspective;
+            y = centreY + y * Math.cos(pitch) * perspective;
+            double halfWidth = boxScale * stickerPitch * Math.cos(yaw) * perspective;
+            double halfHeight = boxScale * stickerPitch * Math.cos(pitch) * perspective;
+            minX = Math.min(minX, x - halfWidth);
+            minY = Math.min(minY, y - halfHeight);
+            maxX = Math.max(maxX, x + halfWidth);
+            maxY = Math.max(maxY, y + halfHeight);
+            if (random.nextDouble() < dropRate)
+                continue;
+
+            int colour = cube.getState().getColour(face * 9 + k).ordinal();
+            boolean confused = random.nextDouble() < confusion;
+            if (confused)
+                colour = CONFUSED_WITH[colour];
+            batch.add(colour, jitter(x - halfWidth), jitter(y - halfHeight),
+                    jitter(x + halfWidth), jitter(y + halfHeight), score(confused));
+        }
+        // The face box is found after its stickers, but detected first
+        double margin = stickerPitch * 0.1;
+        int[] boxes = batch.getBoxes();
+        boxes[faceBox * 4] = jitter(minX - margin);
+        boxes[faceBox * 4 + 1] = jitter(minY - margin);
+        boxes[faceBox * 4 + 2] = jitter(maxX + margin);
+        boxes[faceBox * 4 + 3] = jitter(maxY + margin);
+    }
+
+    /**
+     * Adds stickers detected where there aren't any, a geometric number of
+     * them with the average set
+     */
+    private void addFalsePositives(PredictionBatch batch) {
+        double more = falsePositives / (1 + falsePositives);
+        while (random.nextDouble() < more) {
+            int size = (int) (40 + random.nextDouble() * 50);
+            int x = random.nextInt(WIDTH - size);
+            int y = random.nextInt(HEIGHT - size);
+            batch.add(random.nextInt(6), x, y, x + size, y + size, score(true));
+        }
+    }
+
+    private int jitter(double coordinate) {
+        return (int) Math.round(coordinate + random.nextGaussian() * boxJitter * stickerPitch);
+    }
+
+    /**
+     * @return Score of a detection, lower for wrong detections
+     */
+    private float score(boolean wrong) {
+        return wrong ? 0.5f + random.nextFloat() * 0.3f : 0.8f + random.nextFloat() * 0.2f;
+    }
+
+    /**
+     * @return Cube being scanned (shared, so it must not be changed)
+     */
+    public Cube getCube() {
+        return cube;
+    }
+
+    /**
+     * @return min2phase facelets of the cube being scanned
+     */
+    public String getFacelets() {
+        return facelets;
+    }
+
+    /**
+     * @return Index of the face shown in the last frame, or -1 if the cube
+     * was being turned
+     */
+    public int getShownFace() {
+        return shownFace;
+    }
+
+    /**
+     * @return Time of the last frame, in ms
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Sets how long faces are shown for, from the next face shown
+     * @param framesPerFace Average number of frames each face is shown for
+     * @param turnFrames Number of empty frames while the cube is turned
+     */
+    public void setFrames(int framesPerFace, int turnFrames) {
+        this.framesPerFace = Math.max(framesPerFace, 1);
+        this.turnFrames = Math.max(turnFrames, 0);
+    }
+
+    /**
+     * Sets how far faces are turned from facing the camera, from the next
+     * face shown
+     * @param maxRoll Largest roll of a face beyond its quarter turns, in
+     *                radians
+     * @param maxTilt Largest tilt of a face towards or away from the camera,
+     *                in radians
+     */
+    public void setPose(double maxRoll, double maxTilt) {
+        this.maxRoll = maxRoll;
+        this.maxTilt = maxTilt;
+    }
+
+    /**
+     * @param boxJitter Standard deviation of each box coordinate, as a
+     *                  fraction of the distance between sticker centres
+     */
+    public void setBoxJitter(double boxJitter) {
+        this.boxJitter = boxJitter;
+    }
+
+    /**
+     * @param confusion Chance of a sticker being detected as its similar
+     *                  colour (orange and red, white and yellow)
+     */
+    public void setConfusion(double confusion) {
+        this.confusion = confusion;
+    }
+
+    /**
+     * @param dropRate Chance of a sticker not being detected
+     */
+    public void setDropRate(double dropRate) {
+        this.dropRate = dropRate;
+    }
+
+    /**
+     * @param falsePositives Average number of stickers detected in each
+     *                       frame where there aren't any
+     */
+    public void setFalsePositives(double falsePositives) {
+        this.falsePositives = falsePositives;
+    }
+}
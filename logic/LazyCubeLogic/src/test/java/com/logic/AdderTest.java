@@ -5,6 +5,9 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class AdderTest {
@@ -864,6 +867,38 @@ public class AdderTest {
         assertTrue(new CubeValidator(cube).isCubeValid());
     }
 
+    @Test
+    @DisplayName("Solves the rotation of every face of a full cube")
+    void solveAllRotations()
+    {
+        // Scramble:
+        // L2 D' B2 F2 D L B D' R D' R B' U R U L R D2 L' R2 U L2 R' U' F2 L2 F D2 L R
+        int[][] faces = {{O,R,R,R,O,R,W,W,R},
+                {G,W,G,G,G,B,W,Y,G},
+                {O,O,B,W,R,O,W,R,Y},
+                {R,O,W,Y,B,B,B,G,B},
+                {G,G,Y,Y,W,B,Y,O,Y},
+                {B,B,R,G,Y,W,O,Y,O}};
+        int[][] turns = {{0,0,0,0,0,0}, {1,2,3,0,1,2}, {3,3,3,3,3,3}, {2,1,0,3,2,1}};
+        for (int[] turn : turns) {
+            // Add every face, turned, to a cube
+            Cube cube = new Cube();
+            for (int f = 0; f < 6; f++) {
+                Face face = initFace(faces[f]);
+                for (int r = 0; r < turn[f]; r++)
+                    face = face.rotate();
+                cube.setFace(f, face);
+            }
+
+            Cube solved = new FaceAdder().recursiveCSPBacktrack(cube);
+
+            assertNotNull(solved);
+            for (int f = 0; f < 6; f++)
+                testFace(solved, f * 9, faces[f]);
+            assertTrue(new CubeValidator(solved).isCubeValid());
+        }
+    }
+
     @Nested
     @DisplayName("Adding a partial cube from scratch")
     class NewCubeBlank {
@@ -882,25 +917,27 @@ public class AdderTest {
             Face face = initFace(colours);
             face = face.rotate();
             face = face.rotate();
-            adder.addFace(face);
+            assertTrue(adder.addFace(face));
 
             colours = new int[] {O,O,B,W,R,O,W,R,Y};
             face = initFace(colours);
-            adder.addFace(face);
+            assertTrue(adder.addFace(face));
 
             colours = new int[] {G,W,G,G,G,B,W,Y,G};
             face = initFace(colours);
             face = face.rotate();
-            adder.addFace(face);
+            assertTrue(adder.addFace(face));
 
             colours = new int[] {B,B,R,G,Y,W,O,Y,O};
             face = initFace(colours);
-            adder.addFace(face);
+            assertTrue(adder.addFace(face));
 
 
             colours = new int[] {O,R,R,R,O,R,W,W,R};
             face = initFace(colours);
-            adder.addFace(face);
+            assertTrue(adder.addFace(face));
+
+            cube = adder.getCube();
 
             assertTrue(new CubeValidator(cube).isCubeValid());
         }
@@ -919,20 +956,22 @@ public class AdderTest {
             Face face = initFace(colours);
             face = face.rotate();
             face = face.rotate();
-            adder.addFace(face);
+            assertTrue(adder.addFace(face));
 
             colours = new int[] {Y,B,Y,O,W,O,R,W,G};
             face = initFace(colours);
-            adder.addFace(face);
+            assertTrue(adder.addFace(face));
 
             colours = new int[] {Y,G,O,W,R,Y,G,R,W};
             face = initFace(colours);
             face = face.rotate();
-            adder.addFace(face);
+            assertTrue(adder.addFace(face));
 
             colours = new int[] {W,B,O,B,G,R,G,O,R};
             face = initFace(colours);
-            adder.addFace(face);
+            assertTrue(adder.addFace(face));
+
+            cube = adder.getCube();
 
             assertTrue(new CubeValidator(cube).isCubeValid());
         }
@@ -973,6 +1012,8 @@ public class AdderTest {
 
             adder.addFace(face);
 
+            cube = adder.getCube();
+
             assertFalse(new CubeValidator(cube).isCubeValid());
         }
 
@@ -995,6 +1036,8 @@ public class AdderTest {
             adder.addFace(face);
 
 
+            cube = adder.getCube();
+
             for (int i = 0; i < 54; i++) {
                 if (i % 9 == 0)
                     System.out.println();
@@ -1006,5 +1049,479 @@ public class AdderTest {
             testFace(cube, 27, colours);
         }
     }
-}
 
+    @Nested
+    @DisplayName("Rotated face views")
+    class RotationViews {
+        @Test
+        @DisplayName("Rotated views match rotated copies")
+        void testRotatedViews() {
+            Face face = initFace(new int[] {O,G,R,B,W,Y,O,G,R});
+            Face copy = face;
+            for (int r = 0; r < 4; r++) {
+                Face rotated = face.rotate(r);
+                for (int i = 0; i < 9; i++) {
+                    assertEquals(copy.getSquareColour(i), face.getSquareColour(i, r));
+                    assertEquals(copy.getSquareColour(i), rotated.getSquareColour(i));
+                }
+                copy = copy.rotate();
+            }
+        }
+
+        @Test
+        @DisplayName("Queue adds faces seen in a different rotation")
+        void testQueueRotation() {
+            AdderQueue queue = new AdderQueue();
+            Face reference = initFace(new int[] {O,G,R,B,W,Y,O,G,R});
+            queue.addElement(reference);
+            queue.addElement(reference.rotate(2));
+            // Every square is seen as the same colour again, not the colour
+            // of the square it was rotated onto
+            for (int i = 0; i < 9; i++) {
+                assertEquals(reference.getSquareColour(i), reference.getSquare(i).getColour());
+                assertEquals(2, reference.getSquare(i).getTimesSeen());
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Scan snapshots")
+    class Snapshots {
+        @Test
+        @DisplayName("Snapshots are versioned copies of the queue")
+        void testSnapshot() {
+            AdderQueue queue = new AdderQueue();
+            queue.setTurbo(true);
+            assertSame(ScanSnapshot.EMPTY, queue.getSnapshot());
+
+            Face face = initFace(new int[] {O,G,R,B,W,Y,O,G,R});
+            queue.addElement(face);
+            queue.addCandidateFaces();
+            ScanSnapshot first = queue.getSnapshot();
+            assertEquals(1, first.getVersion());
+            assertFalse(first.isScanned(CubeColour.WHITE));
+            assertEquals(1, first.getProgress(CubeColour.WHITE));
+
+            // Seen again, the face passes the turbo threshold
+            queue.addElement(initFace(new int[] {O,G,R,B,W,Y,O,G,R}));
+            queue.addCandidateFaces();
+            ScanSnapshot second = queue.getSnapshot();
+            assertEquals(2, second.getVersion());
+            assertTrue(second.isScanned(CubeColour.WHITE));
+            assertEquals(2, second.getProgress(CubeColour.WHITE));
+            assertEquals(1, second.getScannedFaces().size());
+            assertThrows(UnsupportedOperationException.class, () -> second.getScannedFaces().clear());
+
+            // Older snapshots don't change as the queue does
+            queue.resetFace(CubeColour.WHITE);
+            assertTrue(second.isScanned(CubeColour.WHITE));
+            assertFalse(queue.getSnapshot().isScanned(CubeColour.WHITE));
+            queue.addElement(initFace(new int[] {O,G,R,B,W,Y,O,G,R}));
+            assertEquals(2, second.getScannedFaces().get(0).getMinTimesSeen());
+        }
+    }
+
+    @Nested
+    @DisplayName("Confidence decay")
+    class ConfidenceDecay {
+        @Test
+        @DisplayName("Queue corrects a wrong square from recent frames")
+        void testDecayedCorrection() {
+            int[] wrong = {O,G,R,B,W,Y,O,G,R};
+            int[] right = {O,G,R,B,W,Y,O,G,G};
+            int[] frames = new int[2];
+            double[] rates = {0, AdderQueue.DEFAULT_CONFIDENCE_DECAY};
+            for (int k = 0; k < rates.length; k++) {
+                AdderQueue queue = new AdderQueue();
+                queue.setConfidenceDecay(rates[k]);
+                for (int i = 0; i < 50; i++) {
+                    queue.addElement(initFace(wrong));
+                }
+                Face stored = queue.getFaceQueue().get(0);
+                while (stored.getSquareColour(8) != CubeColour.GREEN) {
+                    queue.addElement(initFace(right));
+                    frames[k]++;
+                }
+            }
+            // The shown colour is kept on a tie, so 50 wrong frames take 51 to undo
+            assertEquals(51, frames[0]);
+            assertTrue(frames[1] < 25, "Took " + frames[1] + " frames");
+        }
+    }
+
+    @Nested
+    @DisplayName("Face signatures")
+    class Signatures {
+        @Test
+        @DisplayName("Signatures don't depend on rotation")
+        void testSignature() {
+            Face face = initFace(new int[] {O,G,R,B,W,Y,O,G,R});
+            long signature = FaceSignature.signature(face);
+            for (int r = 0; r < Face.ROTATIONS; r++) {
+                Face rotated = face.rotate(r);
+                assertEquals(signature, FaceSignature.signature(rotated));
+                // Reading each face at its canonical rotation lines them up
+                int canonical = FaceSignature.canonicalRotation(rotated);
+                for (int i = 0; i < 9; i++) {
+                    assertEquals(face.getSquareColour(i, FaceSignature.canonicalRotation(face)),
+                            rotated.getSquareColour(i, canonical));
+                }
+            }
+            assertNotEquals(signature, FaceSignature.signature(initFace(new int[] {O,G,R,B,W,Y,O,G,G})));
+        }
+
+        @Test
+        @DisplayName("Distance counts the squares that differ")
+        void testDistance() {
+            Face face = initFace(new int[] {O,G,R,B,W,Y,O,G,R});
+            Face other = initFace(new int[] {G,G,R,B,W,Y,O,G,Y});
+            assertEquals(0, FaceSignature.distance(FaceSignature.pack(face, 1), FaceSignature.pack(face, 1)));
+            assertEquals(2, FaceSignature.distance(FaceSignature.pack(face, 0), FaceSignature.pack(other, 0)));
+            int differ = 0;
+            for (int i = 0; i < 9; i++) {
+                if (face.getSquareColour(i, 2) != other.getSquareColour(i))
+                    differ++;
+            }
+            assertEquals(differ, FaceSignature.distance(FaceSignature.pack(face, 2), FaceSignature.pack(other, 0)));
+        }
+
+        @Test
+        @DisplayName("Queue matches a face with a misread centre")
+        void testMisreadCentre() {
+            AdderQueue queue = new AdderQueue();
+            Face reference = initFace(new int[] {O,G,R,B,W,Y,O,G,R});
+            queue.addElement(reference);
+            // Only the centre differs, so it is the same face turned around
+            queue.addElement(initFace(new int[] {O,G,R,B,Y,Y,O,G,R}).rotate(1));
+            queue.addElement(initFace(new int[] {O,G,R,B,W,Y,O,G,R}));
+            // A face with the same centre but otherwise different is kept apart
+            queue.addElement(initFace(new int[] {B,B,B,B,W,B,B,B,B}));
+            queue.addCandidateFaces();
+
+            assertEquals(CubeColour.ORANGE, reference.getSquareColour(0));
+            assertEquals(3, reference.getSquare(0).getTimesSeen());
+            // The centre colour seen most wins
+            assertEquals(CubeColour.WHITE, reference.getCentreColour());
+            assertEquals(2, reference.getSquare(4).getTimesSeen());
+            assertEquals(CubeColour.YELLOW, reference.getSquare(4).getSecondTimesSeenColour());
+            assertEquals(0, queue.getSnapshot().getProgress(CubeColour.YELLOW));
+        }
+    }
+
+    @Nested
+    @DisplayName("Face confirmation")
+    class Confirmation {
+        int[] colours = {O,G,R,B,W,Y,O,G,R};
+
+        @Test
+        @DisplayName("Clean faces are confirmed within a few frames")
+        void testCleanFace() {
+            AdderQueue queue = new AdderQueue();
+            queue.addElement(initFace(colours));
+            queue.addCandidateFaces();
+            assertFalse(queue.getSnapshot().isScanned(CubeColour.WHITE));
+            queue.addElement(initFace(colours));
+            queue.addCandidateFaces();
+            assertTrue(queue.getSnapshot().isScanned(CubeColour.WHITE));
+        }
+
+        @Test
+        @DisplayName("Faces with a flickering square wait until it settles")
+        void testNoisyFace() {
+            AdderQueue queue = new AdderQueue();
+            int[] flicker = colours.clone();
+            flicker[2] = Y;
+            for (int i = 0; i < 20; i++) {
+                queue.addElement(initFace(i % 2 == 0 ? colours : flicker));
+            }
+            queue.addCandidateFaces();
+            assertFalse(queue.getSnapshot().isScanned(CubeColour.WHITE));
+            // Settles a few frames after the square's colour stops changing
+            for (int i = 0; i < 3; i++) {
+                queue.addElement(initFace(colours));
+            }
+            queue.addCandidateFaces();
+            assertTrue(queue.getSnapshot().isScanned(CubeColour.WHITE));
+        }
+
+        @Test
+        @DisplayName("Stricter error rates need a longer lead")
+        void testErrorRate() {
+            SequentialConfirmation strict = new SequentialConfirmation(1e-6, SequentialConfirmation.DEFAULT_ACCURACY);
+            assertTrue(strict.getRequiredLead() > new SequentialConfirmation().getRequiredLead());
+            // ln((1 - 1e-6) / 1e-6) / ln(0.9 * 5 / 0.1) frames
+            assertEquals(3.63, strict.getRequiredLead(), 0.01);
+
+            AdderQueue queue = new AdderQueue();
+            queue.setConfirmation(strict);
+            for (int i = 0; i < 3; i++) {
+                queue.addElement(initFace(colours));
+            }
+            queue.addCandidateFaces();
+            assertFalse(queue.getSnapshot().isScanned(CubeColour.WHITE));
+            queue.addElement(initFace(colours));
+            queue.addCandidateFaces();
+            assertTrue(queue.getSnapshot().isScanned(CubeColour.WHITE));
+
+            assertThrows(IllegalArgumentException.class, () -> new SequentialConfirmation(0.5, 0.9));
+            assertThrows(IllegalArgumentException.class, () -> new SequentialConfirmation(0.01, 0.1));
+        }
+    }
+
+    @Nested
+    @DisplayName("Competing face hypotheses")
+    class Hypotheses {
+        int[] colours = {O,G,R,B,W,Y,O,G,R};
+        int[] other = {B,B,B,B,W,B,B,B,B};
+
+        @Test
+        @DisplayName("A face first seen with the wrong centre is promoted under the right one")
+        void testFirstCentreMisread() {
+            AdderQueue queue = new AdderQueue();
+            int[] misread = colours.clone();
+            misread[4] = Y;
+            queue.addElement(initFace(misread));
+            for (int i = 0; i < 4; i++) {
+                queue.addElement(initFace(colours));
+            }
+            queue.addCandidateFaces();
+            ScanSnapshot snapshot = queue.getSnapshot();
+            assertTrue(snapshot.isScanned(CubeColour.WHITE));
+            assertFalse(snapshot.isScanned(CubeColour.YELLOW));
+            assertEquals(1, snapshot.getScannedFaces().size());
+        }
+
+        @Test
+        @DisplayName("Only the face with the most evidence is promoted")
+        void testStrongestPromoted() {
+            AdderQueue queue = new AdderQueue();
+            for (int i = 0; i < 3; i++) {
+                queue.addElement(initFace(colours));
+            }
+            List<Face> buffer = queue.getFaceQueue();
+            assertEquals(1, buffer.size());
+            Face first = buffer.get(0);
+
+            // A competing face with the same centre is seen, but has less
+            // evidence until it has been seen for longer
+            for (int i = 0; i < 3; i++) {
+                queue.addElement(initFace(other));
+            }
+            assertSame(first, buffer.get(0));
+            for (int i = 0; i < 3; i++) {
+                queue.addElement(initFace(other));
+            }
+            assertEquals(1, buffer.size());
+            assertNotSame(first, buffer.get(0));
+            assertEquals(CubeColour.BLUE, buffer.get(0).getSquareColour(0));
+        }
+
+        @Test
+        @DisplayName("Weak hypotheses are dropped")
+        void testPrune() {
+            AdderQueue queue = new AdderQueue();
+            for (int i = 0; i < 3; i++) {
+                queue.addElement(initFace(colours));
+            }
+            Random random = new Random(5);
+            for (int i = 0; i < 20; i++) {
+                int[] noise = new int[9];
+                for (int n = 0; n < 9; n++) {
+                    noise[n] = random.nextInt(6);
+                }
+                noise[4] = W;
+                queue.addElement(initFace(noise));
+            }
+            // Only a few faces with a white centre are kept, and the one
+            // seen the most stays in the buffer
+            assertEquals(3, queue.getHypothesisCount(CubeColour.WHITE));
+            queue.addCandidateFaces();
+            assertEquals(3, queue.getSnapshot().getProgress(CubeColour.WHITE));
+            assertEquals(CubeColour.ORANGE, queue.getFaceQueue().get(0).getSquareColour(0));
+        }
+
+        @Test
+        @DisplayName("Faces that come to read the same stay indexed")
+        void testSignaturesConverge() {
+            AdderQueue queue = new AdderQueue();
+            int[] apart = {Y,Y,Y,B,W,Y,O,G,R};
+            Face face = initFace(colours);
+            Face converging = initFace(apart);
+            queue.addElement(face);
+            queue.addElement(converging);
+            assertEquals(2, queue.getHypothesisCount(CubeColour.WHITE));
+
+            // The second face has seen the first face's colours for long
+            // enough that its next sighting makes it read the same
+            ColourHistogram confidence = converging.getState().getConfidence();
+            for (int i = 0; i < 3; i++) {
+                confidence.set(converging.getOffset() + i, colours[i], 20);
+            }
+            queue.addElement(initFace(apart));
+            assertEquals(FaceSignature.signature(face), FaceSignature.signature(converging));
+            assertTrue(queue.isIndexed(face));
+            assertTrue(queue.isIndexed(converging));
+
+            // Reading differently again leaves the first face indexed
+            for (int i = 0; i < 3; i++) {
+                confidence.set(converging.getOffset() + i, apart[i], 40);
+            }
+            queue.addElement(initFace(colours));
+            assertEquals(CubeColour.YELLOW, converging.getSquareColour(0));
+            assertTrue(queue.isIndexed(face));
+            assertTrue(queue.isIndexed(converging));
+            assertEquals(2, queue.getHypothesisCount(CubeColour.WHITE));
+        }
+    }
+
+    @Nested
+    @DisplayName("Background search")
+    class BackgroundSearch {
+        @Test
+        @DisplayName("Failed faces are fixed by a background search")
+        void testFailedFaces() {
+            String facelets = cs.min2phase.Tools.randomCube();
+            Cube cube = CubieDiagnosisTest.fromMin2Phase(facelets);
+            AdderQueue queue = new AdderQueue();
+            for (int face = 0; face < 6; face++) {
+                Face real = new Face(cube.getFace(face));
+                for (int i = 0; i < 3; i++) {
+                    queue.addElement(new Face(real));
+                }
+                if (face == 2) {
+                    // One square is seen more often as the colour of the
+                    // square next to it
+                    Face misread = new Face(real);
+                    misread.setSquare(0, real.getSquareColour(1), 1);
+                    for (int i = 0; i < 6; i++) {
+                        queue.addElement(new Face(misread));
+                    }
+                }
+            }
+            assertEquals(6, queue.getQueueLength());
+            List<Face> failed = queue.addCandidateFaces();
+            // The search runs in the background, so no faces are reported yet
+            assertNotNull(failed);
+            assertTrue(failed.isEmpty());
+            CandidateSearch.Task task = queue.getPendingSearch();
+            if (task != null) {
+                task.await();
+                assertTrue(queue.addCandidateFaces().isEmpty());
+            }
+            assertNull(queue.getPendingSearch());
+            assertEquals(facelets, queue.getCube().toMin2PhaseString());
+        }
+    }
+
+    @Nested
+    @DisplayName("Completion")
+    class Completion {
+        /**
+         * Scans the first 5 faces of a cube, each in a few rotations
+         */
+        AdderQueue scanFiveFaces(Cube cube) {
+            AdderQueue queue = new AdderQueue();
+            for (int face = 0; face < 5; face++) {
+                assertFalse(queue.getCube().isComplete());
+                for (int i = 0; i < 3; i++) {
+                    queue.addElement(new Face(cube.getFace(face)).rotate(i));
+                }
+                assertTrue(queue.addCandidateFaces().isEmpty());
+            }
+            assertEquals(5, queue.getQueueLength());
+            return queue;
+        }
+
+        @Test
+        @DisplayName("Last face is filled in once 5 faces are scanned")
+        void testLastFace() {
+            String facelets = cs.min2phase.Tools.randomCube(new Random(21));
+            AdderQueue queue = scanFiveFaces(CubieDiagnosisTest.fromMin2Phase(facelets));
+            assertTrue(queue.getCube().isComplete());
+            assertEquals(facelets, queue.getCube().toMin2PhaseString());
+            assertEquals(facelets, queue.getSnapshot().getCube().toMin2PhaseString());
+        }
+
+        @Test
+        @DisplayName("Last face isn't filled in when it could be more than one thing")
+        void testAmbiguous() {
+            // The first 5 faces of this cube leave 2 solvable cubes
+            AdderQueue queue = scanFiveFaces(CubieDiagnosisTest.fromMin2Phase(cs.min2phase.Tools.randomCube(new Random(5))));
+            assertFalse(queue.getCube().isComplete());
+        }
+
+        @Test
+        @DisplayName("Last face isn't filled in from faces that don't fit")
+        void testBadFaces() {
+            Cube cube = CubieDiagnosisTest.fromMin2Phase(cs.min2phase.Tools.randomCube(new Random(21)));
+            AdderQueue queue = new AdderQueue();
+            for (int face = 0; face < 5; face++) {
+                Face real = new Face(cube.getFace(face));
+                if (face == 1) {
+                    // Every square seen as the centre colour, giving more
+                    // than 9 squares of that colour
+                    for (int i = 0; i < 9; i++) {
+                        real.setSquare(i, real.getCentreColour(), 1);
+                    }
+                }
+                for (int i = 0; i < 3; i++) {
+                    queue.addElement(new Face(real));
+                }
+                queue.addCandidateFaces();
+            }
+            assertEquals(5, queue.getQueueLength());
+            assertFalse(queue.getCube().isComplete());
+        }
+    }
+
+    @Nested
+    @DisplayName("Incremental additions")
+    class Incremental {
+        /**
+         * Adds every face of a cube to a new adder, each turned a different
+         * number of times
+         */
+        FaceAdder addTurned(Cube cube) {
+            FaceAdder adder = new FaceAdder();
+            for (int f = 0; f < 6; f++) {
+                assertTrue(adder.addFace(new Face(cube.getFace(f)).rotate(f % 4)));
+            }
+            assertTrue(new CubeValidator(adder.getCube()).isCubeValid());
+            return adder;
+        }
+
+        @Test
+        @DisplayName("A rescanned face is fitted back in without moving the others")
+        void testRescan() {
+            Cube cube = CubieDiagnosisTest.fromMin2Phase(cs.min2phase.Tools.randomCube(new Random(22)));
+            FaceAdder adder = addTurned(cube);
+            String scanned = adder.getCube().toMin2PhaseString();
+            for (int f = 0; f < 6; f++) {
+                adder.removeFace(CubeColour.values()[f]);
+                assertFalse(adder.getCube().isComplete());
+                assertTrue(adder.getCube().getFace(f).isEmpty());
+                assertTrue(adder.addFace(new Face(cube.getFace(f)).rotate(3)));
+                assertEquals(scanned, adder.getCube().toMin2PhaseString());
+            }
+        }
+
+        @Test
+        @DisplayName("A face that doesn't fit leaves the cube unchanged")
+        void testNoFit() {
+            Cube cube = CubieDiagnosisTest.fromMin2Phase(cs.min2phase.Tools.randomCube(new Random(22)));
+            FaceAdder adder = addTurned(cube);
+            String scanned = adder.getCube().toMin2PhaseString();
+            // Swap a corner and an edge square of a face
+            Face face = new Face(cube.getFace(2));
+            CubeColour colour = face.getSquareColour(2);
+            assertNotEquals(colour, face.getSquareColour(3));
+            face.setSquare(2, face.getSquareColour(3), 2);
+            face.setSquare(3, colour, 2);
+            assertFalse(adder.addFace(face));
+            assertEquals(scanned, adder.getCube().toMin2PhaseString());
+            // The adder still works from the unchanged cube
+            assertTrue(adder.addFace(new Face(cube.getFace(2)).rotate(1)));
+            assertEquals(scanned, adder.getCube().toMin2PhaseString());
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.logic;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @description Tests for ColourHistogram class
+ */
+class ColourHistogramTest {
+
+    /**
+     * Finds the leader or runner-up of a square by scanning all its counts
+     */
+    private static int rankByScan(ColourHistogram histogram, int index, int exclude) {
+        int best = -1;
+        for (int colour = 0; colour < ColourHistogram.COLOUR_COUNT; colour++) {
+            if (colour == exclude)
+                continue;
+            if (best == -1 || histogram.get(index, colour) > histogram.get(index, best))
+                best = colour;
+        }
+        return best;
+    }
+
+    @Test
+    @DisplayName("Leader and runner-up of a new histogram")
+    void testEmpty() {
+        ColourHistogram histogram = new ColourHistogram(1);
+        assertEquals(0, histogram.getLeader(0));
+        assertEquals(1, histogram.getRunnerUp(0));
+        assertEquals(0, histogram.getLeaderCount(0));
+        assertEquals(0, histogram.getRunnerUpCount(0));
+    }
+
+    @Test
+    @DisplayName("Runner-up takes over the lead")
+    void testRunnerUpOvertakes() {
+        ColourHistogram histogram = new ColourHistogram(1);
+        int red = CubeColour.RED.ordinal();
+        int orange = CubeColour.ORANGE.ordinal();
+        for (int i = 0; i < 3; i++)
+            histogram.increment(0, red);
+        histogram.increment(0, orange);
+        assertEquals(red, histogram.getLeader(0));
+        assertEquals(orange, histogram.getRunnerUp(0));
+
+        for (int i = 0; i < 3; i++)
+            histogram.increment(0, orange);
+        assertEquals(orange, histogram.getLeader(0));
+        assertEquals(red, histogram.getRunnerUp(0));
+        assertEquals(4, histogram.getLeaderCount(0));
+        assertEquals(3, histogram.getRunnerUpCount(0));
+    }
+
+    @Test
+    @DisplayName("Leader and runner-up match a full scan after random updates")
+    void testRandomUpdates() {
+        Random random = new Random(43);
+        ColourHistogram histogram = new ColourHistogram(9);
+        for (int i = 0; i < 5000; i++) {
+            int index = random.nextInt(9);
+            int colour = random.nextInt(ColourHistogram.COLOUR_COUNT);
+            if (random.nextInt(10) == 0)
+                histogram.set(index, colour, random.nextInt(20));
+            else
+                histogram.increment(index, colour);
+
+            int leader = rankByScan(histogram, index, -1);
+            assertEquals(leader, histogram.getLeader(index));
+            assertEquals(rankByScan(histogram, index, leader), histogram.getRunnerUp(index));
+        }
+    }
+
+    @Test
+    @DisplayName("Square shows the most seen colour")
+    void testSquareIncrement() {
+        Square square = new Square();
+        square.setColour(CubeColour.BLUE, 2);
+        square.incrementColour(CubeColour.GREEN);
+        assertEquals(CubeColour.BLUE, square.getColour());
+        square.incrementColour(CubeColour.GREEN);
+        square.incrementColour(CubeColour.GREEN);
+        assertEquals(CubeColour.GREEN, square.getColour());
+        assertEquals(3, square.getTimesSeen());
+        assertEquals(CubeColour.BLUE, square.getSecondTimesSeenColour());
+        assertEquals(2, square.getSecondTimesSeenCount());
+    }
+
+    /**
+     * Sees one colour of a square for a number of frames, then another colour
+     * until it leads
+     * @return Frames taken for the second colour to lead
+     */
+    static int framesToRecover(ColourHistogram histogram, int wrongFrames) {
+        for (int i = 0; i < wrongFrames; i++) {
+            histogram.increment(0, 1);
+        }
+        int frames = 0;
+        while (histogram.getLeader(0) != 2) {
+            histogram.increment(0, 2);
+            frames++;
+        }
+        return frames;
+    }
+
+    @Test
+    @DisplayName("Decayed counts recover from a wrong colour faster")
+    void testDecayRecovery() {
+        assertEquals(51, framesToRecover(new ColourHistogram(1), 50));
+
+        ColourHistogram decayed = new ColourHistogram(1);
+        decayed.setDecay(1.0 / 32);
+        int frames = framesToRecover(decayed, 50);
+        assertTrue(frames < 25, "Took " + frames + " frames");
+        // Counts settle near 1 / rate frames
+        for (int i = 0; i < 500; i++) {
+            decayed.increment(0, 2);
+        }
+        assertEquals(32, decayed.getLeaderCount(0));
+        assertEquals(0, decayed.getRunnerUpCount(0));
+        assertThrows(IllegalArgumentException.class, () -> decayed.setDecay(1));
+    }
+
+    @Test
+    @DisplayName("Decayed leader and runner-up match a full scan")
+    void testDecayRandomUpdates() {
+        Random random = new Random(44);
+        ColourHistogram histogram = new ColourHistogram(9);
+        histogram.setDecay(0.1);
+        for (int i = 0; i < 5000; i++) {
+            int index = random.nextInt(9);
+            histogram.increment(index, random.nextInt(3));
+            int leader = rankByScan(histogram, index, -1);
+            assertEquals(histogram.get(index, leader), histogram.getLeaderCount(index));
+            assertTrue(histogram.getLeaderCount(index) >= histogram.getRunnerUpCount(index));
+        }
+        // Copies keep the decay rate
+        assertEquals(0.1, new ColourHistogram(histogram).getDecay(), 1e-4);
+    }
+}
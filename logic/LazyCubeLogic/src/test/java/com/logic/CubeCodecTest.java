@@ -0,0 +1,83 @@
+package com.logic;
+
+import cs.min2phase.Tools;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CubeCodecTest {
+
+    static void assertSameColours(Cube expected, Cube actual) {
+        for (int i = 0; i < 54; i++) {
+            assertEquals(expected.getState().getColour(i), actual.getState().getColour(i));
+        }
+    }
+
+    @Test
+    @DisplayName("Stickers round trip, including unknown squares")
+    void testStickers() {
+        Random random = new Random(1);
+        for (int k = 0; k < 50; k++) {
+            Cube cube = CubieDiagnosisTest.fromMin2Phase(Tools.randomCube());
+            for (int n = 0; n < 5; n++) {
+                cube.getState().setColourValue(random.nextInt(54), CubeColour.NULL);
+            }
+            byte[] data = CubeCodec.encodeStickers(cube);
+            assertEquals(21, data.length);
+            assertSameColours(cube, CubeCodec.decodeStickers(data));
+        }
+        // A blank cube keeps its centers
+        Cube blank = CubeCodec.decodeStickers(CubeCodec.encodeStickers(new Cube()));
+        assertSameColours(new Cube(), blank);
+        assertFalse(blank.isComplete());
+    }
+
+    @Test
+    @DisplayName("Confidences are quantised to powers of 2")
+    void testConfidence() {
+        Cube cube = CubieDiagnosisTest.fromMin2Phase(Tools.randomCube());
+        int[] counts = {0, 1, 2, 3, 7, 8, 100, 40000};
+        for (int i = 0; i < 54; i++) {
+            cube.getState().setColour(i, cube.getState().getColour(i), counts[i % counts.length]);
+        }
+        byte[] data = CubeCodec.encodeStickersWithConfidence(cube);
+        assertEquals(CubeCodec.CONFIDENCE_BYTES, data.length);
+        Cube decoded = CubeCodec.decodeStickersWithConfidence(data);
+        assertSameColours(cube, decoded);
+        int[] expected = {0, 1, 2, 2, 4, 8, 64, 16384};
+        for (int i = 0; i < 54; i++) {
+            assertEquals(expected[i % counts.length], decoded.getState().getTimesSeen(i));
+        }
+    }
+
+    @Test
+    @DisplayName("Cubies round trip through 20 bytes")
+    void testCubies() {
+        for (int k = 0; k < 50; k++) {
+            String facelets = Tools.randomCube();
+            Cube cube = CubieDiagnosisTest.fromMin2Phase(facelets);
+            byte[] data = CubeCodec.encodeCubies(cube);
+            assertEquals(20, data.length);
+            assertEquals(facelets, CubeCodec.decodeCubies(data).toMin2PhaseString());
+        }
+    }
+
+    @Test
+    @DisplayName("Rejects bad data")
+    void testInvalid() {
+        Cube cube = CubieDiagnosisTest.fromMin2Phase(CubieDiagnosisTest.SOLVED);
+        CubieDiagnosisTest.swapSquares(cube, Min2PhaseFacelets.SQUARE[7], Min2PhaseFacelets.SQUARE[19]);
+        assertThrows(IllegalArgumentException.class, () -> CubeCodec.encodeCubies(cube));
+        assertThrows(IllegalArgumentException.class, () -> CubeCodec.decodeStickers(new byte[20]));
+        byte[] colours = new byte[21];
+        // Colour ordinal 7 isn't a colour
+        colours[0] = 7;
+        assertThrows(IllegalArgumentException.class, () -> CubeCodec.decodeStickers(colours));
+        byte[] cubies = new byte[20];
+        cubies[0] = (byte) (12 << 1);
+        assertThrows(IllegalArgumentException.class, () -> CubeCodec.decodeCubies(cubies));
+    }
+}
@@ -0,0 +1,118 @@
+package com.logic;
+
+import cs.min2phase.Tools;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CubeCompletionTest {
+
+    private final CubeCompletion completion = new CubeCompletion();
+
+    /**
+     * Copies a cube with every square of some faces, other than the centre,
+     * unknown
+     */
+    static Cube hideFaces(Cube cube, int... faces) {
+        Cube hidden = new Cube(cube);
+        for (int face : faces) {
+            for (int i = 0; i < 9; i++) {
+                if (i != 4)
+                    hidden.getState().setColourValue(face * 9 + i, CubeColour.NULL);
+            }
+        }
+        return hidden;
+    }
+
+    static boolean contains(List<Cube> cubes, String facelets) {
+        for (Cube cube : cubes) {
+            if (facelets.equals(cube.toMin2PhaseString()))
+                return true;
+        }
+        return false;
+    }
+
+    @Test
+    @DisplayName("Sixth face is filled in from the other five")
+    void testSixthFace() {
+        Random random = new Random(21);
+        int unique = 0;
+        for (int face = 0; face < 6; face++) {
+            for (int i = 0; i < 20; i++) {
+                String facelets = Tools.randomCube(random);
+                Cube hidden = hideFaces(CubieDiagnosisTest.fromMin2Phase(facelets), face);
+                assertFalse(hidden.isComplete());
+                List<Cube> completions = completion.enumerate(hidden);
+                assertTrue(completions.size() <= 3, "Found " + completions.size());
+                assertTrue(contains(completions, facelets));
+                Cube completed = completion.complete(hidden);
+                if (completions.size() == 1) {
+                    assertEquals(facelets, completed.toMin2PhaseString());
+                    unique++;
+                } else {
+                    assertNull(completed);
+                }
+            }
+        }
+        // Most cubes only have one completion
+        assertTrue(unique > 100, "Unique " + unique);
+    }
+
+    @Test
+    @DisplayName("Five faces can leave more than one completion")
+    void testAmbiguous() {
+        String facelets = Tools.randomCube(new Random(5));
+        Cube hidden = hideFaces(CubieDiagnosisTest.fromMin2Phase(facelets), 5);
+        List<Cube> completions = completion.enumerate(hidden);
+        assertEquals(2, completions.size());
+        assertTrue(contains(completions, facelets));
+        for (Cube cube : completions) {
+            assertEquals(0, Tools.verify(cube.toMin2PhaseString()));
+        }
+        assertNull(completion.complete(hidden));
+    }
+
+    @Test
+    @DisplayName("Four faces give tens of completions, one of them the cube")
+    void testFourFaces() {
+        Random random = new Random(4);
+        // Two opposite faces, and two adjacent faces
+        int[][] missing = {{0, 2}, {4, 5}, {0, 1}, {3, 4}};
+        for (int[] faces : missing) {
+            for (int i = 0; i < 10; i++) {
+                String facelets = Tools.randomCube(random);
+                List<Cube> completions = completion.enumerate(hideFaces(CubieDiagnosisTest.fromMin2Phase(facelets), faces), 1000);
+                assertTrue(completions.size() > 1);
+                assertTrue(completions.size() < CubeCompletion.DEFAULT_LIMIT, "Found " + completions.size());
+                for (Cube cube : completions) {
+                    assertTrue(cube.isComplete());
+                    assertFalse(cube.parityCheckFail());
+                }
+                assertTrue(contains(completions, facelets));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("A complete cube is its own completion")
+    void testComplete() {
+        String facelets = Tools.randomCube();
+        List<Cube> completions = completion.enumerate(CubieDiagnosisTest.fromMin2Phase(facelets));
+        assertEquals(1, completions.size());
+        assertEquals(facelets, completions.get(0).toMin2PhaseString());
+    }
+
+    @Test
+    @DisplayName("Impossible known squares give no completions")
+    void testImpossible() {
+        Cube cube = hideFaces(CubieDiagnosisTest.fromMin2Phase(Tools.randomCube()), 5);
+        // Swap two stickers of an edge, flipping it
+        CubieDiagnosisTest.swapSquares(cube, 1, 39);
+        assertTrue(completion.enumerate(cube).isEmpty());
+        assertNull(completion.complete(cube));
+    }
+}
@@ -0,0 +1,99 @@
+package com.logic;
+
+import cs.min2phase.Tools;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CubeEncoderTest {
+
+    /**
+     * Writes faces of a cube the slow way, rotating copies of each face and
+     * mapping each colour through its first letter
+     */
+    static String encodeFaces(Cube cube, int[][] faces, int[] faceOrder, String from, String to) {
+        StringBuilder builder = new StringBuilder();
+        for (int[] face : faces) {
+            Face rotated = cube.getFace(face[0]);
+            for (int r = 0; r < face[1]; r++) {
+                rotated = rotated.rotate();
+            }
+            for (int i = 0; i < 9; i++) {
+                char letter = rotated.getSquareColour(faceOrder[i]).toString().charAt(0);
+                int index = from.indexOf(letter);
+                if (index != -1)
+                    builder.append(to.charAt(index));
+            }
+        }
+        return builder.toString();
+    }
+
+    static Cube randomCube(Random random, boolean withNulls) {
+        Cube cube = CubieDiagnosisTest.fromMin2Phase(Tools.randomCube());
+        if (withNulls) {
+            for (int k = 0; k < 5; k++) {
+                cube.getState().setColourValue(random.nextInt(54), CubeColour.NULL);
+            }
+        }
+        return cube;
+    }
+
+    @Test
+    @DisplayName("min2phase string matches rotating each face")
+    void testMin2Phase() {
+        Random random = new Random(1);
+        int[] order = {0, 1, 2, 3, 4, 5, 6, 7, 8};
+        for (int i = 0; i < 20; i++) {
+            Cube cube = randomCube(random, i % 2 == 1);
+            String expected = encodeFaces(cube, new int[][]{{4, 3}, {1, 0}, {0, 0}, {5, 1}, {3, 0}, {2, 0}},
+                    order, "WBRGOYN", "ULBRFDN");
+            assertEquals(expected, cube.toMin2PhaseString());
+            char[] buffer = new char[54];
+            cube.writeMin2Phase(buffer);
+            assertEquals(expected, new String(buffer));
+        }
+    }
+
+    @Test
+    @DisplayName("Display string matches rotating each face")
+    void testDisplay() {
+        Random random = new Random(2);
+        int[] order = {6, 7, 8, 3, 4, 5, 0, 1, 2};
+        for (int i = 0; i < 20; i++) {
+            Cube cube = randomCube(random, i % 2 == 1);
+            String expected = encodeFaces(cube, new int[][]{{4, 3}, {5, 0}, {0, 3}, {2, 3}, {3, 2}, {1, 3}},
+                    order, "WYORBG", "012345");
+            assertEquals(expected, cube.toDisplayString());
+        }
+    }
+
+    @Test
+    @DisplayName("Cubot strings match rotating each face")
+    void testCubot() {
+        Random random = new Random(3);
+        int[] order = {0, 1, 2, 3, 4, 5, 6, 7, 8};
+        int[][] faces = {{2, 0}, {1, 2}, {0, 2}, {3, 2}, {4, 2}, {5, 2}};
+        for (int i = 0; i < 20; i++) {
+            Cube cube = randomCube(random, i % 2 == 1);
+            String[] strings = cube.toCubotStringArray();
+            for (int face = 0; face < 6; face++) {
+                assertEquals(encodeFaces(cube, new int[][]{faces[face]}, order, "OGRBWYN", "OGRBWYN"),
+                        strings[face]);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Parity check matches min2phase")
+    void testParityCheck() {
+        Random random = new Random(4);
+        for (int i = 0; i < 50; i++) {
+            Cube cube = randomCube(random, false);
+            CubieDiagnosisTest.swapSquares(cube, random.nextInt(54), random.nextInt(54));
+            assertEquals(Tools.verify(cube.toMin2PhaseString()) != 0, cube.parityCheckFail());
+        }
+    }
+}
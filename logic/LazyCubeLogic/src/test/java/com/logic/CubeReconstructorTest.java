@@ -0,0 +1,127 @@
+package com.logic;
+
+import cs.min2phase.Tools;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CubeReconstructorTest {
+
+    private final CubeReconstructor reconstructor = new CubeReconstructor(2_000_000_000L, 200_000);
+
+    /**
+     * Builds a scanned cube where every square has been seen 10 times as its
+     * real colour
+     */
+    static Cube scannedCube(String facelets) {
+        Cube cube = CubieDiagnosisTest.fromMin2Phase(facelets);
+        for (int i = 0; i < 54; i++) {
+            cube.getState().setColour(i, cube.getState().getColour(i), 10);
+        }
+        return cube;
+    }
+
+    @Test
+    @DisplayName("Valid cube is unchanged")
+    void testValidCube() {
+        String facelets = Tools.randomCube();
+        Cube cube = reconstructor.reconstruct(scannedCube(facelets));
+        assertNotNull(cube);
+        assertEquals(facelets, cube.toMin2PhaseString());
+        assertEquals(1, reconstructor.getCandidatesChecked());
+    }
+
+    /**
+     * Builds a scanned cube with a few squares seen more often as the wrong
+     * colour, and one face in a different rotation
+     */
+    static Cube misreadCube(String facelets, Random random) {
+        Cube cube = scannedCube(facelets);
+        // Misread a few squares, with the real colour still seen often
+        for (int k = 0; k < 3; k++) {
+            int square = random.nextInt(54);
+            if (square % 9 == 4)
+                continue;
+            CubeColour real = cube.getState().getColour(square);
+            CubeColour wrong = CubeState.COLOURS[(real.ordinal() + 1 + random.nextInt(5)) % 6];
+            cube.getState().setColour(square, wrong, 12 + random.nextInt(5));
+        }
+        // And scan one face in a different rotation
+        return CubieDiagnosisTest.rotateFace(cube, random.nextInt(6), 1 + random.nextInt(3));
+    }
+
+    @Test
+    @DisplayName("Fixes squares seen more often as the wrong colour")
+    void testMisreadSquares() {
+        Random random = new Random(5);
+        for (int i = 0; i < 20; i++) {
+            String facelets = Tools.randomCube(random);
+            Cube cube = misreadCube(facelets, random);
+            Cube fixed = reconstructor.reconstruct(cube);
+            assertNotNull(fixed);
+            assertEquals(0, Tools.verify(fixed.toMin2PhaseString()));
+            assertEquals(facelets, fixed.toMin2PhaseString());
+        }
+    }
+
+    @Test
+    @DisplayName("Gives up on colours never seen")
+    void testUnseenColour() {
+        Cube cube = scannedCube(CubieDiagnosisTest.SOLVED);
+        // Square 0 has only ever been seen as the wrong colour
+        cube.getState().setColour(0, CubeColour.WHITE, 20);
+        cube.getState().setColour(0, CubeColour.ORANGE, 0);
+        assertNull(reconstructor.reconstruct(cube));
+    }
+
+    @Test
+    @DisplayName("Parallel search finds the same cube")
+    void testParallel() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        CubeReconstructor parallel = new CubeReconstructor(2_000_000_000L, 200_000);
+        Random random = new Random(6);
+        try {
+            for (int i = 0; i < 20; i++) {
+                String facelets = Tools.randomCube(random);
+                Cube cube = misreadCube(facelets, random);
+                Cube serial = reconstructor.reconstruct(cube);
+                // Called from inside the pool, and from outside it
+                Cube inPool = pool.invoke(ForkJoinTask.adapt(
+                        () -> parallel.reconstruct(cube, pool, new AtomicBoolean())));
+                Cube outside = parallel.reconstruct(cube, pool, new AtomicBoolean());
+                assertNotNull(serial);
+                assertEquals(serial.toMin2PhaseString(), inPool.toMin2PhaseString());
+                assertEquals(facelets, outside.toMin2PhaseString());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Background searches can be polled and cancelled")
+    void testCandidateSearch() {
+        CandidateSearch search = new CandidateSearch(ForkJoinPool.commonPool(), 2_000_000_000L, 200_000);
+        Random random = new Random(7);
+        String facelets = Tools.randomCube(random);
+        CandidateSearch.Task task = search.submit(misreadCube(facelets, random));
+        assertEquals(facelets, task.await().toMin2PhaseString());
+        assertTrue(task.isDone());
+        assertTrue(task.getCandidatesChecked() > 0);
+
+        Cube unsolvable = scannedCube(CubieDiagnosisTest.SOLVED);
+        unsolvable.getState().setColour(0, CubeColour.WHITE, 20);
+        unsolvable.getState().setColour(0, CubeColour.ORANGE, 0);
+        CandidateSearch.Task cancelled = search.submit(misreadCube(facelets, new Random(8)));
+        cancelled.cancel();
+        assertTrue(cancelled.isDone());
+        assertNull(cancelled.getResult());
+        assertNull(search.submit(unsolvable).await());
+    }
+}
@@ -0,0 +1,184 @@
+package com.logic;
+
+import cs.min2phase.Tools;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CubieDiagnosisTest {
+
+    static final String SOLVED = "UUUUUUUUURRRRRRRRRFFFFFFFFFDDDDDDDDDLLLLLLLLLBBBBBBBBB";
+
+    private final CubieDiagnosis diagnosis = new CubieDiagnosis();
+
+    /**
+     * Builds a cube from a min2phase facelet string
+     */
+    static Cube fromMin2Phase(String facelets) {
+        int[] colours = new int[54];
+        for (int i = 0; i < 54; i++) {
+            int face = Min2PhaseFacelets.FACE_LETTERS.indexOf(facelets.charAt(i));
+            colours[Min2PhaseFacelets.SQUARE[i]] = Min2PhaseFacelets.COLOUR_OF_FACE[face];
+        }
+        return new Cube(colours);
+    }
+
+    /**
+     * Swaps the colours of two squares of a cube
+     */
+    static void swapSquares(Cube cube, int a, int b) {
+        CubeState state = cube.getState();
+        CubeColour colour = state.getColour(a);
+        state.setColourValue(a, state.getColour(b));
+        state.setColourValue(b, colour);
+    }
+
+    /**
+     * Rotates a face of a cube clockwise a number of times
+     */
+    static Cube rotateFace(Cube cube, int face, int rotations) {
+        Cube rotated = new Cube(cube);
+        rotated.getState().copySquares(cube.getState(), face * 9, Face.ROTATED_INDEX[rotations], face * 9);
+        return rotated;
+    }
+
+    @Nested
+    @DisplayName("Cubie conversion tests")
+    class ConversionTests {
+        @Test
+        @DisplayName("Round trips min2phase strings")
+        void testLayout() {
+            for (int i = 0; i < 20; i++) {
+                String facelets = Tools.randomCube();
+                assertEquals(facelets, fromMin2Phase(facelets).toMin2PhaseString());
+            }
+        }
+
+        @Test
+        @DisplayName("Gives the same error codes as min2phase")
+        void testVerifyMatchesMin2Phase() {
+            Random random = new Random(9);
+            for (int i = 0; i < 500; i++) {
+                Cube cube = fromMin2Phase(Tools.randomCube());
+                // Break the cube in a different way each time
+                switch (i % 4) {
+                    case 1:
+                        cube = rotateFace(cube, random.nextInt(6), 1 + random.nextInt(3));
+                        break;
+                    case 2:
+                        swapSquares(cube, random.nextInt(54), random.nextInt(54));
+                        break;
+                    case 3:
+                        cube.getState().setColourValue(random.nextInt(54), CubeColour.values()[random.nextInt(6)]);
+                        break;
+                    default:
+                        break;
+                }
+                assertEquals(Tools.verify(cube.toMin2PhaseString()), diagnosis.verify(cube.getState().getColours()));
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Diagnosis tests")
+    class DiagnosisTests {
+        @Test
+        @DisplayName("Valid cube")
+        void testValid() {
+            assertEquals(CubieDiagnosis.VALID, diagnosis.diagnose(fromMin2Phase(Tools.randomCube())));
+            assertFalse(diagnosis.hasRotationFix());
+            assertEquals(0, diagnosis.getMissingEdges() | diagnosis.getMissingCorners() | diagnosis.getParity());
+            // A solved cube has every piece in place
+            assertEquals(CubieDiagnosis.VALID, diagnosis.diagnose(fromMin2Phase(SOLVED)));
+            assertEquals(0, diagnosis.getFlippedEdges() | diagnosis.getTwistedCorners());
+        }
+
+        @Test
+        @DisplayName("Reports a flipped edge")
+        void testFlippedEdge() {
+            // Flip the UF edge
+            Cube cube = fromMin2Phase(SOLVED);
+            swapSquares(cube, Min2PhaseFacelets.SQUARE[7], Min2PhaseFacelets.SQUARE[19]);
+            assertEquals(CubieDiagnosis.FLIPPED_EDGE, diagnosis.diagnose(cube));
+            assertEquals(1 << 1, diagnosis.getFlippedEdges());
+            assertEquals(0, diagnosis.getMissingEdges() | diagnosis.getUnknownEdges());
+        }
+
+        @Test
+        @DisplayName("Reports pieces with no matching colours")
+        void testUnknownPieces() {
+            // Swap stickers between the UF and UB edges, so they show U U
+            // and F B
+            Cube cube = fromMin2Phase(SOLVED);
+            swapSquares(cube, Min2PhaseFacelets.SQUARE[19], Min2PhaseFacelets.SQUARE[1]);
+            assertEquals(CubieDiagnosis.MISSING_EDGE, diagnosis.diagnose(cube));
+            assertEquals(1 << 1 | 1 << 3, diagnosis.getUnknownEdges());
+            assertNotEquals(0, diagnosis.getMissingEdges());
+            assertEquals(0, diagnosis.getUnknownCorners());
+
+            // Swap stickers between the URF and UFL corners, so they show
+            // U F F and U R L
+            cube = fromMin2Phase(SOLVED);
+            swapSquares(cube, Min2PhaseFacelets.SQUARE[9], Min2PhaseFacelets.SQUARE[18]);
+            assertEquals(CubieDiagnosis.MISSING_CORNER, diagnosis.diagnose(cube));
+            assertEquals(1 | 1 << 1, diagnosis.getUnknownCorners());
+            assertNotEquals(0, diagnosis.getMissingCorners());
+            assertEquals(0, diagnosis.getUnknownEdges());
+        }
+
+        @Test
+        @DisplayName("Reports a twisted corner")
+        void testTwistedCorner() {
+            // Twist the URF corner by cycling its three squares
+            Cube cube = fromMin2Phase(SOLVED);
+            CubeState state = cube.getState();
+            int u = Min2PhaseFacelets.SQUARE[8];
+            int r = Min2PhaseFacelets.SQUARE[9];
+            int f = Min2PhaseFacelets.SQUARE[20];
+            CubeColour colour = state.getColour(u);
+            state.setColourValue(u, state.getColour(f));
+            state.setColourValue(f, state.getColour(r));
+            state.setColourValue(r, colour);
+            assertEquals(CubieDiagnosis.TWISTED_CORNER, diagnosis.diagnose(cube));
+            assertEquals(1, diagnosis.getTwistedCorners());
+            assertFalse(diagnosis.hasRotationFix());
+        }
+
+        @Test
+        @DisplayName("Reports swapped edges")
+        void testParity() {
+            // Swap the stickers of the UF and UR edges
+            Cube cube = fromMin2Phase(SOLVED);
+            swapSquares(cube, Min2PhaseFacelets.SQUARE[7], Min2PhaseFacelets.SQUARE[5]);
+            swapSquares(cube, Min2PhaseFacelets.SQUARE[19], Min2PhaseFacelets.SQUARE[10]);
+            assertEquals(CubieDiagnosis.PARITY_ERROR, diagnosis.diagnose(cube));
+            assertEquals(1, diagnosis.getParity());
+        }
+
+        @Test
+        @DisplayName("Finds face rotations fixing a cube")
+        void testRotationFix() {
+            Random random = new Random(3);
+            int fixed = 0;
+            for (int i = 0; i < 50; i++) {
+                Cube cube = rotateFace(fromMin2Phase(Tools.randomCube()), random.nextInt(6), 1 + random.nextInt(3));
+                int error = diagnosis.diagnose(cube);
+                assertEquals(Tools.verify(cube.toMin2PhaseString()), error);
+                if (error == CubieDiagnosis.VALID)
+                    continue;
+                // Rotating the face back always fixes the cube, though fewer
+                // or other rotations may too
+                assertTrue(diagnosis.hasRotationFix());
+                Cube fixedCube = diagnosis.applyRotationFix(cube);
+                assertEquals(0, Tools.verify(fixedCube.toMin2PhaseString()));
+                assertTrue(new CubeValidator(fixedCube).isCubeValid());
+                fixed++;
+            }
+            assertTrue(fixed > 0);
+        }
+    }
+}
@@ -5,11 +5,16 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 public class FaceDetectorTest {
 
+    // Detector under test, a new one (with a new scale estimate) for every test
+    private final FaceDetector detector = new FaceDetector();
+
     @Nested
     @DisplayName("Valid detection tests")
     class Valid {
@@ -43,7 +48,7 @@ public class FaceDetectorTest {
 
             PredictionList predictionList = new PredictionList(predictions);
 
-            ArrayList<ArrayList<DetectionCenter>> output = FaceDetector.get_faces(predictionList);
+            ArrayList<ArrayList<DetectionCenter>> output = detector.get_faces(predictionList);
 
 
             ArrayList<Object> answers = new ArrayList<>(){};
@@ -102,7 +107,7 @@ public class FaceDetectorTest {
 
             PredictionList predictionList = new PredictionList(predictions);
 
-            ArrayList<ArrayList<DetectionCenter>> output = FaceDetector.get_faces(predictionList);
+            ArrayList<ArrayList<DetectionCenter>> output = detector.get_faces(predictionList);
 
             ArrayList<Object> answers = new ArrayList<>(){};
             answers.add(CubeColour.BLUE);
@@ -160,9 +165,9 @@ public class FaceDetectorTest {
 
             PredictionList predictionList = new PredictionList(predictions);
 
-            ArrayList<ArrayList<DetectionCenter>> input = FaceDetector.get_faces(predictionList);
+            ArrayList<ArrayList<DetectionCenter>> input = detector.get_faces(predictionList);
 
-            ArrayList<DetectionCenter> output = FaceDetector.order_face(input.get(0));
+            ArrayList<DetectionCenter> output = detector.order_face(input.get(0));
 
             ArrayList<DetectionCenter> answer = new ArrayList<>();
             answer.add(new DetectionCenter(89,179, CubeColour.ORANGE));
@@ -183,6 +188,113 @@ public class FaceDetectorTest {
             }
         }
 
+        @Test
+        @DisplayName("Groups faces from many detection results")
+        void testGetFacesMany() {
+            PredictionBatch batch = new PredictionBatch();
+            // Two 3x3 faces of 60 pixel squares, side by side
+            int[] faceLeft = {100, 700};
+            for (int f = 0; f < 2; f++) {
+                batch.add(PredictionBatch.FACE_CLASS, faceLeft[f] - 10, 90, faceLeft[f] + 190, 290, 1);
+                for (int k = 0; k < 9; k++) {
+                    int x = faceLeft[f] + (k % 3) * 60;
+                    int y = 100 + (k / 3) * 60;
+                    batch.add((k + f) % 6, x, y, x + 50, y + 50, 1);
+                }
+            }
+            // Squares outside of both faces
+            for (int k = 0; k < 20; k++) {
+                batch.add(k % 6, 50 * k, 600, 50 * k + 50, 650, 1);
+            }
+
+            ArrayList<ArrayList<DetectionCenter>> output = detector.get_faces(batch);
+
+            assertEquals(2, output.size());
+            for (int f = 0; f < 2; f++) {
+                for (int k = 0; k < 9; k++) {
+                    DetectionCenter center = output.get(f).get(k);
+                    assertEquals(faceLeft[f] + (k % 3) * 60 + 25, center.getX());
+                    assertEquals(100 + (k / 3) * 60 + 25, center.getY());
+                    assertEquals(CubeColour.values()[(k + f) % 6], center.getColour());
+                }
+            }
+        }
+
+        @Test
+        @DisplayName("Orders rotated faces")
+        void testOrderRotatedFace() {
+            Random random = new Random(11);
+            for (int angle = -40; angle <= 40; angle += 5) {
+                double cos = Math.cos(Math.toRadians(angle));
+                double sin = Math.sin(Math.toRadians(angle));
+                // Build a face with slightly jittered centers, given in a
+                // random order
+                ArrayList<DetectionCenter> expected = new ArrayList<>();
+                for (int k = 0; k < 9; k++) {
+                    double a = (k % 3 - 1) * 70 + random.nextInt(11) - 5;
+                    double b = (k / 3 - 1) * 70 + random.nextInt(11) - 5;
+                    int x = (int) Math.round(300 + a * cos - b * sin);
+                    int y = (int) Math.round(300 + a * sin + b * cos);
+                    expected.add(new DetectionCenter(x, y, CubeColour.values()[k % 6]));
+                }
+                ArrayList<DetectionCenter> input = new ArrayList<>(expected);
+                Collections.shuffle(input, random);
+
+                ArrayList<DetectionCenter> output = detector.order_face(input);
+
+                assertEquals(9, input.size());
+                for (int k = 0; k < 9; k++) {
+                    assertSame(expected.get(k), output.get(k), "angle " + angle);
+                }
+            }
+        }
+
+        @Test
+        @DisplayName("Detectors keep separate scale estimates")
+        void testSeparateScale() {
+            PredictionBatch batch = new PredictionBatch();
+            batch.add(PredictionBatch.FACE_CLASS, 0, 0, 300, 300, 1);
+            batch.add(0, 10, 10, 110, 110, 1);
+
+            FaceDetector other = new FaceDetector();
+            detector.get_faces(batch);
+            assertTrue(detector.getScaleEstimator().getSquareWidth() > 0);
+            assertEquals(0, other.getScaleEstimator().getSquareWidth());
+        }
+
+        @Test
+        @DisplayName("Sticker grid finds the same points as checking every point")
+        void testStickerGrid() {
+            Random random = new Random(7);
+            StickerGrid grid = new StickerGrid();
+            for (int round = 0; round < 50; round++) {
+                int count = random.nextInt(200);
+                int[] xs = new int[count];
+                int[] ys = new int[count];
+                for (int i = 0; i < count; i++) {
+                    xs[i] = random.nextInt(4000);
+                    ys[i] = random.nextInt(3000);
+                }
+                grid.build(xs, ys, count, 1 + random.nextInt(100));
+
+                int[] found = new int[count];
+                for (int q = 0; q < 20; q++) {
+                    int x0 = random.nextInt(4400) - 200;
+                    int y0 = random.nextInt(3400) - 200;
+                    int x1 = x0 + random.nextInt(1000);
+                    int y1 = y0 + random.nextInt(1000);
+                    int foundCount = grid.query(x0, y0, x1, y1, found);
+
+                    int expected = 0;
+                    for (int i = 0; i < count; i++) {
+                        if (FaceDetector.pointInBox(xs[i], ys[i], x0, y0, x1, y1))
+                            assertEquals(i, found[expected++]);
+                    }
+                    assertEquals(expected, foundCount);
+                }
+            }
+        }
+
     }
 
     @Nested
@@ -240,7 +352,7 @@ public class FaceDetectorTest {
 
             PredictionList predictionList = new PredictionList(predictions);
 
-            ArrayList<ArrayList<DetectionCenter>> output = FaceDetector.get_faces(predictionList);
+            ArrayList<ArrayList<DetectionCenter>> output = detector.get_faces(predictionList);
 
             ArrayList<Object> answers = new ArrayList<>(){};
             answers.add(CubeColour.NULL);
@@ -298,7 +410,7 @@ public class FaceDetectorTest {
 
             PredictionList predictionList = new PredictionList(predictions);
 
-            ArrayList<ArrayList<DetectionCenter>> output = FaceDetector.get_faces(predictionList);
+            ArrayList<ArrayList<DetectionCenter>> output = detector.get_faces(predictionList);
 
             ArrayList<Object> answers = new ArrayList<>(){};
             answers.add(CubeColour.BLUE);
@@ -356,7 +468,7 @@ public class FaceDetectorTest {
 
             PredictionList predictionList = new PredictionList(predictions);
 
-            ArrayList<ArrayList<DetectionCenter>> output = FaceDetector.get_faces(predictionList);
+            ArrayList<ArrayList<DetectionCenter>> output = detector.get_faces(predictionList);
 
             ArrayList<Object> answers = new ArrayList<>(){};
             answers.add(CubeColour.BLUE);
@@ -414,9 +526,9 @@ public class FaceDetectorTest {
 
             PredictionList predictionList = new PredictionList(predictions);
 
-            ArrayList<ArrayList<DetectionCenter>> input = FaceDetector.get_faces(predictionList);
+            ArrayList<ArrayList<DetectionCenter>> input = detector.get_faces(predictionList);
 
-            ArrayList<DetectionCenter> output = FaceDetector.order_face(input.get(0));
+            ArrayList<DetectionCenter> output = detector.order_face(input.get(0));
 
             ArrayList<DetectionCenter> answer = new ArrayList<>();
             answer.add(new DetectionCenter(89,179, CubeColour.NULL));
@@ -455,9 +567,9 @@ public class FaceDetectorTest {
 
             PredictionList predictionList = new PredictionList(predictions);
 
-            ArrayList<ArrayList<DetectionCenter>> input = FaceDetector.get_faces(predictionList);
+            ArrayList<ArrayList<DetectionCenter>> input = detector.get_faces(predictionList);
 
-            ArrayList<DetectionCenter> output = FaceDetector.order_face(input.get(0));
+            ArrayList<DetectionCenter> output = detector.order_face(input.get(0));
 
             ArrayList<DetectionCenter> answer = new ArrayList<>();
             answer.add(new DetectionCenter(0,179, CubeColour.ORANGE));
@@ -496,9 +608,9 @@ public class FaceDetectorTest {
 
             PredictionList predictionList = new PredictionList(predictions);
 
-            ArrayList<ArrayList<DetectionCenter>> input = FaceDetector.get_faces(predictionList);
+            ArrayList<ArrayList<DetectionCenter>> input = detector.get_faces(predictionList);
 
-            ArrayList<DetectionCenter> output = FaceDetector.order_face(input.get(0));
+            ArrayList<DetectionCenter> output = detector.order_face(input.get(0));
 
             ArrayList<DetectionCenter> answer = new ArrayList<>();
             answer.add(new DetectionCenter(89,0, CubeColour.ORANGE));
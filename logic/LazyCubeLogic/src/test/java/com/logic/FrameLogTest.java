@@ -0,0 +1,122 @@
+package com.logic;
+
+import cs.min2phase.Tools;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FrameLogTest {
+
+    /**
+     * Records a scan of every face of a cube, each face shown for a number of
+     * frames 100ms apart, followed by empty frames
+     * @return The log, and the frames recorded in {@code frames}
+     */
+    static byte[] recordScan(Cube cube, int framesPerFace, List<PredictionBatch> frames) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (FrameLog.Recorder recorder = new FrameLog.Recorder(bytes)) {
+            long time = 5000;
+            for (int face = 0; face < 6; face++) {
+                PredictionBatch frame = ScanSessionTest.frame(cube, face);
+                for (int i = 0; i < framesPerFace; i++) {
+                    recorder.record(frame, time += 100);
+                    frames.add(frame);
+                }
+                recorder.record(new PredictionBatch(), time += 100);
+                frames.add(new PredictionBatch());
+            }
+            assertEquals(frames.size(), recorder.getFrames());
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    @DisplayName("Frames are read back as they were recorded")
+    void testRoundTrip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PredictionBatch frame = new PredictionBatch();
+        frame.add(PredictionBatch.FACE_CLASS, -20, 40, 1300, 2400, 0.5f);
+        frame.add(3, 100, 200, 160, 260, 0.999f);
+        frame.add(0, 40000, 7, 8, -40000, 1.5f);
+        long[] times = {1_700_000_000_000L, 1_700_000_000_033L, 1_700_000_000_020L, 1_700_000_100_000L};
+        try (FrameLog.Recorder recorder = new FrameLog.Recorder(bytes)) {
+            for (long time : times) {
+                recorder.record(frame, time);
+            }
+        }
+        // 13 byte header, and 3 detections of 10 bytes in each frame
+        assertTrue(bytes.size() < 13 + times.length * (3 * 10 + 6));
+
+        FrameLog.Reader reader = new FrameLog.Reader(new ByteArrayInputStream(bytes.toByteArray()));
+        PredictionBatch read = new PredictionBatch();
+        // Time never goes backwards
+        long[] expected = {times[0], times[1], times[1], times[3]};
+        for (long time : expected) {
+            assertTrue(reader.next(read));
+            assertEquals(time, reader.getTime());
+            assertEquals(3, read.getLength());
+            assertArrayEquals(new int[]{PredictionBatch.FACE_CLASS, 3, 0}, Arrays.copyOf(read.getClasses(), 3));
+            assertArrayEquals(new int[]{-20, 40, 1300, 2400, 100, 200, 160, 260, Short.MAX_VALUE, 7, 8, Short.MIN_VALUE},
+                    Arrays.copyOf(read.getBoxes(), 12));
+            assertEquals(0.5f, read.getScores()[0], 1f / 255);
+            assertEquals(0.999f, read.getScores()[1], 1f / 255);
+            assertEquals(1f, read.getScores()[2]);
+        }
+        assertFalse(reader.next(read));
+        assertEquals(0, read.getLength());
+    }
+
+    @Test
+    @DisplayName("A log cut short ends at the last whole frame")
+    void testTruncated() throws IOException {
+        List<PredictionBatch> frames = new ArrayList<>();
+        byte[] log = recordScan(CubieDiagnosisTest.fromMin2Phase(Tools.randomCube(new Random(24))), 2, frames);
+        FrameLog.Reader reader = new FrameLog.Reader(new ByteArrayInputStream(Arrays.copyOf(log, log.length - 5)));
+        PredictionBatch read = new PredictionBatch();
+        int count = 0;
+        while (reader.next(read)) {
+            assertEquals(frames.get(count).getLength(), read.getLength());
+            count++;
+        }
+        assertEquals(frames.size() - 2, count);
+
+        // An empty log has no frames, and other files aren't read
+        assertFalse(new FrameLog.Reader(new ByteArrayInputStream(new byte[0])).next(read));
+        assertThrows(IOException.class, () ->
+                new FrameLog.Reader(new ByteArrayInputStream("not a log".getBytes())).next(read));
+    }
+
+    @Test
+    @DisplayName("Replaying a recorded scan completes the cube")
+    void testReplay() throws IOException {
+        String facelets = Tools.randomCube(new Random(24));
+        List<PredictionBatch> frames = new ArrayList<>();
+        byte[] log = recordScan(CubieDiagnosisTest.fromMin2Phase(facelets), 5, frames);
+
+        for (int run = 0; run < 2; run++) {
+            ScanSession session = new ScanSession();
+            List<ScanEvent> events = new ArrayList<>();
+            session.addListener(events::add);
+            FrameLog.Replay replay = FrameLog.replay(new ByteArrayInputStream(log), session);
+
+            assertTrue(replay.isCompleted());
+            assertTrue(replay.getFrames() < frames.size());
+            assertTrue(replay.getDetections() > 0);
+            assertTrue(replay.getFrameNanos(50) <= replay.getFrameNanos(100));
+            ScanEvent completed = events.get(events.size() - 1);
+            assertEquals(ScanEvent.Type.COMPLETED, completed.getType());
+            assertEquals(facelets, completed.getCube().toMin2PhaseString());
+            // Events get the recorded frame times
+            assertEquals(5000 + replay.getFrames() * 100L, completed.getTime());
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.logic;
+
+import cs.min2phase.Tools;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScanJournalTest {
+
+    @TempDir
+    File directory;
+
+    /**
+     * Scans every face of a cube a few times, as the detector would
+     */
+    static void scanCube(AdderQueue queue, Cube cube, int frames) {
+        for (int face = 0; face < 6; face++) {
+            for (int i = 0; i < frames; i++) {
+                // Copy the face so the queue doesn't share the cube's state,
+                // and give it in a different rotation each time
+                queue.addElement(new Face(cube.getFace(face)).rotate(i));
+                queue.addCandidateFaces();
+            }
+        }
+    }
+
+    static void assertSameQueue(AdderQueue expected, AdderQueue actual) {
+        assertEquals(expected.getCube().toMin2PhaseString(), actual.getCube().toMin2PhaseString());
+        assertEquals(expected.getQueueLength(), actual.getQueueLength());
+        for (int f = 0; f < expected.getQueueLength(); f++) {
+            Face face = expected.getFaceQueue().get(f);
+            Face other = actual.getFaceQueue().get(f);
+            for (int i = 0; i < 9; i++) {
+                assertEquals(face.getSquareColour(i), other.getSquareColour(i));
+                assertEquals(face.getSquare(i).getTimesSeen(), other.getSquare(i).getTimesSeen());
+            }
+        }
+        for (CubeColour colour : CubeColour.values()) {
+            assertEquals(expected.getSnapshot().getProgress(colour), actual.getSnapshot().getProgress(colour));
+        }
+    }
+
+    static ByteBuffer read(File file) throws IOException {
+        try (FileChannel input = new FileInputStream(file).getChannel()) {
+            ByteBuffer log = ByteBuffer.allocate((int) input.size());
+            while (log.hasRemaining() && input.read(log) != -1) {
+                // Read the whole file
+            }
+            log.flip();
+            return log;
+        }
+    }
+
+    @Test
+    @DisplayName("Recovered queue matches the recorded one")
+    void testRecover() throws IOException {
+        File file = new File(directory, "scan.log");
+        AdderQueue queue = new AdderQueue();
+        try (ScanJournal journal = new ScanJournal(file)) {
+            queue.setJournal(journal);
+            queue.setConfidenceDecay(1.0 / 16);
+            queue.setConfirmation(new SequentialConfirmation(0.01, 0.8));
+            scanCube(queue, CubieDiagnosisTest.fromMin2Phase(Tools.randomCube()), 3);
+            queue.resetFace(CubeColour.WHITE);
+        }
+        AdderQueue recovered = ScanJournal.recover(file);
+        assertEquals(1.0 / 16, recovered.getConfidenceDecay());
+        assertEquals(0.01, recovered.getConfirmation().getErrorRate());
+        assertEquals(0.8, recovered.getConfirmation().getAccuracy());
+        assertSameQueue(queue, recovered);
+        assertFalse(recovered.getSnapshot().isScanned(CubeColour.WHITE));
+        assertEquals(5, recovered.getSnapshot().getScannedFaces().size());
+    }
+
+    @Test
+    @DisplayName("Recovery only replays records after the last snapshot")
+    void testSnapshots() throws IOException {
+        File file = new File(directory, "scan.log");
+        AdderQueue queue = new AdderQueue();
+        try (ScanJournal journal = new ScanJournal(file)) {
+            queue.setJournal(journal);
+            scanCube(queue, CubieDiagnosisTest.fromMin2Phase(Tools.randomCube()), 100);
+            journal.flush();
+            // A snapshot, then at most SNAPSHOT_INTERVAL frames each with
+            // a call to add the faces to the cube
+            int replayed = ScanJournal.replay(read(file), new AdderQueue());
+            assertTrue(replayed <= 1 + 2 * AdderQueue.SNAPSHOT_INTERVAL, "Replayed " + replayed);
+        }
+        assertSameQueue(queue, ScanJournal.recover(file));
+    }
+
+    @Test
+    @DisplayName("A record cut short is ignored")
+    void testTornRecord() throws IOException {
+        File file = new File(directory, "scan.log");
+        Cube cube = CubieDiagnosisTest.fromMin2Phase(Tools.randomCube());
+        AdderQueue queue = new AdderQueue();
+        try (ScanJournal journal = new ScanJournal(file)) {
+            queue.setJournal(journal);
+            scanCube(queue, cube, 2);
+        }
+        long length = file.length();
+        try (ScanJournal journal = new ScanJournal(file)) {
+            journal.recordFrame(cube.getFace(0));
+        }
+        // Cut the last record short, as if the app was killed while writing
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.setLength(file.length() - 3);
+        }
+        assertTrue(file.length() > length);
+        assertSameQueue(queue, ScanJournal.recover(file));
+    }
+
+    @Test
+    @DisplayName("A missing journal gives a new queue")
+    void testMissing() throws IOException {
+        AdderQueue queue = ScanJournal.recover(new File(directory, "missing.log"));
+        assertEquals(0, queue.getQueueLength());
+        assertSame(ScanSnapshot.EMPTY, queue.getSnapshot());
+    }
+
+    @Test
+    @DisplayName("Closed journals drop records")
+    void testClosed() throws IOException {
+        File file = new File(directory, "scan.log");
+        ScanJournal journal = new ScanJournal(file);
+        journal.recordCandidates();
+        journal.close();
+        long length = file.length();
+        journal.recordCandidates();
+        journal.flush();
+        assertEquals(length, file.length());
+    }
+}
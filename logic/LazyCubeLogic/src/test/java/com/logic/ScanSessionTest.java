@@ -0,0 +1,208 @@
+package com.logic;
+
+import cs.min2phase.Tools;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScanSessionTest {
+
+    // Time between frames, in ms
+    private static final long FRAME_LENGTH = 100;
+
+    // Time given by the session's clock
+    private long now = 1000;
+    private final ScanSession session = new ScanSession(new AdderQueue(), () -> now);
+    private final List<ScanEvent> events = new ArrayList<>();
+
+    {
+        session.addListener(events::add);
+    }
+
+    /**
+     * Builds the detection results of a frame showing one face of a cube, as
+     * a 3x3 grid of 60 pixel squares
+     */
+    static PredictionBatch frame(Cube cube, int face) {
+        PredictionBatch batch = new PredictionBatch();
+        batch.add(PredictionBatch.FACE_CLASS, 90, 90, 290, 290, 1);
+        for (int k = 0; k < 9; k++) {
+            int x = 100 + (k % 3) * 60;
+            int y = 100 + (k / 3) * 60;
+            batch.add(cube.getState().getColour(face * 9 + k).ordinal(), x, y, x + 50, y + 50, 1);
+        }
+        return batch;
+    }
+
+    /**
+     * Adds frames, a frame length apart on the clock, until an event of the
+     * given type is emitted
+     * @return The event
+     */
+    private ScanEvent addUntil(PredictionBatch frame, ScanEvent.Type type) {
+        for (int i = 0; i < 100; i++) {
+            int seen = events.size();
+            now += FRAME_LENGTH;
+            session.addFrame(frame);
+            for (ScanEvent event : events.subList(seen, events.size())) {
+                if (event.getType() == type)
+                    return event;
+            }
+        }
+        return fail("No " + type + " event in " + events);
+    }
+
+    /**
+     * Copies a cube with some faces seen as solid faces of their centre colour
+     */
+    static Cube solidFaces(Cube cube, int... faces) {
+        Cube solid = new Cube(cube);
+        for (int face : faces) {
+            for (int k = 0; k < 9; k++) {
+                solid.getState().setColourValue(face * 9 + k, solid.getState().getColour(face * 9 + 4));
+            }
+        }
+        return solid;
+    }
+
+    private int count(ScanEvent.Type type) {
+        int count = 0;
+        for (ScanEvent event : events) {
+            if (event.getType() == type)
+                count++;
+        }
+        return count;
+    }
+
+    @Nested
+    @DisplayName("Scanning")
+    class Scanning {
+        @Test
+        @DisplayName("Scanning every face completes the cube")
+        void testComplete() {
+            String facelets = Tools.randomCube(new Random(23));
+            Cube cube = CubieDiagnosisTest.fromMin2Phase(facelets);
+            for (int face = 0; face < 6 && !session.isCompleted(); face++) {
+                ScanEvent event = addUntil(frame(cube, face), ScanEvent.Type.FACE_CONFIRMED);
+                assertEquals(CubeState.COLOURS[face], event.getColour());
+                assertEquals(now, event.getTime());
+            }
+            assertTrue(session.isCompleted());
+            assertEquals(1, count(ScanEvent.Type.COMPLETED));
+            ScanEvent completed = events.get(events.size() - 1);
+            assertEquals(ScanEvent.Type.COMPLETED, completed.getType());
+            assertEquals(facelets, completed.getCube().toMin2PhaseString());
+            assertEquals(0, count(ScanEvent.Type.RESCAN_NEEDED));
+            assertEquals(0, count(ScanEvent.Type.ROTATE_HINT));
+
+            // Frames after the cube is completed are ignored
+            int seen = events.size();
+            session.addFrame(frame(cube, 0));
+            assertEquals(seen, events.size());
+        }
+
+        @Test
+        @DisplayName("Frames can be given as prediction lists with their own time")
+        void testPredictionList() {
+            Cube cube = CubieDiagnosisTest.fromMin2Phase(Tools.randomCube(new Random(23)));
+            PredictionBatch batch = frame(cube, 3);
+            ArrayList<Prediction> predictions = new ArrayList<>();
+            int[] boxes = batch.getBoxes();
+            for (int i = 0; i < batch.getLength(); i++) {
+                predictions.add(new Prediction(99, new int[]{boxes[i * 4], boxes[i * 4 + 1],
+                        boxes[i * 4 + 2], boxes[i * 4 + 3]}, batch.getClasses()[i]));
+            }
+            for (int i = 0; i < 10; i++) {
+                session.addFrame(new PredictionList(predictions), 50 + i);
+            }
+            assertEquals(1, events.size());
+            assertEquals(ScanEvent.Type.FACE_CONFIRMED, events.get(0).getType());
+            assertEquals(CubeColour.BLUE, events.get(0).getColour());
+            assertTrue(events.get(0).getTime() < 60);
+        }
+    }
+
+    @Nested
+    @DisplayName("Timers")
+    class Timers {
+        @Test
+        @DisplayName("Rotate hint is shown when no new face is scanned for a while")
+        void testRotateHint() {
+            Cube cube = CubieDiagnosisTest.fromMin2Phase(Tools.randomCube(new Random(23)));
+            long scanned = addUntil(frame(cube, 0), ScanEvent.Type.FACE_CONFIRMED).getTime();
+            PredictionBatch empty = new PredictionBatch();
+
+            now = scanned + ScanSession.ROTATE_HINT_LENGTH;
+            session.addFrame(empty);
+            assertEquals(0, count(ScanEvent.Type.ROTATE_HINT));
+            ScanEvent hint = addUntil(empty, ScanEvent.Type.ROTATE_HINT);
+            assertEquals(scanned + ScanSession.ROTATE_HINT_LENGTH + FRAME_LENGTH, hint.getTime());
+            // Only shown once
+            session.addFrame(empty);
+            assertEquals(1, count(ScanEvent.Type.ROTATE_HINT));
+
+            // Hidden once the next face is scanned
+            addUntil(frame(cube, 1), ScanEvent.Type.FACE_CONFIRMED);
+            assertEquals(ScanEvent.Type.ROTATE_HINT_STOP, events.get(events.size() - 1).getType());
+            assertEquals(1, count(ScanEvent.Type.ROTATE_HINT_STOP));
+        }
+
+        @Test
+        @DisplayName("A face that can't be fixed is rescanned, and filled in from the others")
+        void testRescan() {
+            String facelets = Tools.randomCube(new Random(23));
+            // Red face seen as solid red, so it has too many red squares
+            Cube bad = solidFaces(CubieDiagnosisTest.fromMin2Phase(facelets), 2);
+            for (int face = 0; face < 6; face++) {
+                addUntil(frame(bad, face), ScanEvent.Type.FACE_CONFIRMED);
+            }
+            session.getAdderQueue().getPendingSearch().await();
+
+            ScanEvent rescan = addUntil(frame(bad, 2), ScanEvent.Type.RESCAN_NEEDED);
+            assertEquals(CubeColour.RED, rescan.getColour());
+            assertEquals(1, count(ScanEvent.Type.SCAN_FAIL));
+            // The failed face is dropped, then filled in from the other five
+            ScanEvent completed = addUntil(new PredictionBatch(), ScanEvent.Type.COMPLETED);
+            assertEquals(facelets, completed.getCube().toMin2PhaseString());
+            assertEquals(6, count(ScanEvent.Type.FACE_CONFIRMED));
+        }
+
+        @Test
+        @DisplayName("Faces that stay failed give a complete fail")
+        void testCompleteFail() {
+            // Orange and red faces seen as solid colours
+            Cube bad = solidFaces(CubieDiagnosisTest.fromMin2Phase(Tools.randomCube(new Random(23))), 0, 2);
+            for (int face = 0; face < 6; face++) {
+                addUntil(frame(bad, face), ScanEvent.Type.FACE_CONFIRMED);
+            }
+            session.getAdderQueue().getPendingSearch().await();
+
+            long failTime = addUntil(new PredictionBatch(), ScanEvent.Type.SCAN_FAIL).getTime();
+            // The faces that failed to be added are dropped, to be scanned again
+            assertTrue(count(ScanEvent.Type.RESCAN_NEEDED) > 0);
+            ScanSnapshot snapshot = session.getAdderQueue().getSnapshot();
+            for (ScanEvent event : events) {
+                if (event.getType() == ScanEvent.Type.RESCAN_NEEDED)
+                    assertFalse(snapshot.isScanned(event.getColour()));
+            }
+
+            now = failTime + ScanSession.COMPLETE_FAIL_LENGTH;
+            PredictionBatch empty = new PredictionBatch();
+            session.addFrame(empty);
+            assertEquals(0, count(ScanEvent.Type.COMPLETE_FAIL));
+            addUntil(empty, ScanEvent.Type.COMPLETE_FAIL);
+            session.addFrame(empty);
+            assertEquals(1, count(ScanEvent.Type.COMPLETE_FAIL));
+            assertEquals(1, count(ScanEvent.Type.SCAN_FAIL));
+            // Faces failing stop the rotate hint from being shown
+            assertEquals(0, count(ScanEvent.Type.ROTATE_HINT));
+            assertFalse(session.isCompleted());
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.logic;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SyntheticFramesTest {
+
+    /**
+     * Results of scanning a cube from generated frames
+     */
+    static final class Scan {
+        int frames;
+        int rescans;
+        boolean correct;
+    }
+
+    /**
+     * Feeds generated frames through a new scan session until the cube is
+     * completed, or a number of frames have been added
+     */
+    static Scan scan(SyntheticFrames generator, int maxFrames) {
+        Scan scan = new Scan();
+        ScanSession session = new ScanSession(new AdderQueue(), generator::getTime);
+        session.addListener(event -> {
+            if (event.getType() == ScanEvent.Type.RESCAN_NEEDED)
+                scan.rescans++;
+            else if (event.getType() == ScanEvent.Type.COMPLETED)
+                scan.correct = generator.getFacelets().equals(event.getCube().toMin2PhaseString());
+        });
+        PredictionBatch batch = new PredictionBatch();
+        while (!session.isCompleted() && scan.frames < maxFrames) {
+            session.addFrame(batch, generator.nextFrame(batch));
+            scan.frames++;
+        }
+        return scan;
+    }
+
+    @Nested
+    @DisplayName("Frames")
+    class Frames {
+        @Test
+        @DisplayName("Faces shown are found in the frames, in some rotation")
+        void testFaces() {
+            SyntheticFrames generator = new SyntheticFrames(new Random(25));
+            FaceDetector detector = new FaceDetector();
+            PredictionBatch batch = new PredictionBatch();
+            int shown = 0;
+            for (int i = 0; i < 500; i++) {
+                generator.nextFrame(batch);
+                ArrayList<ArrayList<DetectionCenter>> faces = detector.get_faces(batch);
+                int face = generator.getShownFace();
+                if (face == -1) {
+                    assertEquals(0, batch.getLength());
+                    assertTrue(faces.isEmpty());
+                    continue;
+                }
+                shown++;
+                assertEquals(10, batch.getLength());
+                assertEquals(1, faces.size());
+                Face found = new Face(detector.order_face(faces.get(0)));
+                Face real = generator.getCube().getFace(face);
+                boolean matches = false;
+                for (int rotation = 0; rotation < 4 && !matches; rotation++) {
+                    matches = FaceSignature.pack(found, 0) == FaceSignature.pack(real, rotation);
+                }
+                assertTrue(matches, "Frame " + i);
+            }
+            assertTrue(shown > 300);
+        }
+
+        @Test
+        @DisplayName("The same seed gives the same frames")
+        void testSeed() {
+            SyntheticFrames first = new SyntheticFrames(new Random(7));
+            SyntheticFrames second = new SyntheticFrames(new Random(7));
+            for (SyntheticFrames generator : new SyntheticFrames[]{first, second}) {
+                generator.setBoxJitter(0.1);
+                generator.setConfusion(0.1);
+                generator.setDropRate(0.1);
+                generator.setFalsePositives(2);
+            }
+            assertEquals(first.getFacelets(), second.getFacelets());
+            for (int i = 0; i < 200; i++) {
+                PredictionList a = first.nextPredictionList();
+                PredictionList b = second.nextPredictionList();
+                assertEquals(first.getTime(), second.getTime());
+                assertEquals(a.getClasses(), b.getClasses());
+                assertEquals(a.getPredictions(), b.getPredictions());
+                for (int k = 0; k < a.getLength(); k++) {
+                    assertArrayEquals(a.getBoxes().get(k), b.getBoxes().get(k));
+                }
+            }
+        }
+
+        @Test
+        @DisplayName("Noise changes the detected stickers")
+        void testNoise() {
+            SyntheticFrames generator = new SyntheticFrames(new Random(25));
+            generator.setConfusion(0.5);
+            generator.setDropRate(0.2);
+            generator.setFalsePositives(3);
+            PredictionBatch batch = new PredictionBatch();
+            int frames = 1000;
+            int stickers = 0;
+            int confused = 0;
+            int faces = 0;
+            for (int i = 0; i < frames; i++) {
+                generator.nextFrame(batch);
+                if (generator.getShownFace() == -1)
+                    continue;
+                faces++;
+                for (int k = 0; k < batch.getLength(); k++) {
+                    if (batch.isFace(k))
+                        continue;
+                    stickers++;
+                    if (batch.getScores()[k] < 0.8f)
+                        confused++;
+                }
+            }
+            // 9 stickers with a fifth dropped, plus 3 false positives
+            double perFace = stickers / (double) faces;
+            assertEquals(9 * 0.8 + 3, perFace, 0.5);
+            // Half the stickers (except the colours with no similar colour)
+            // and every false positive have a low score
+            assertTrue(confused > stickers / 3 && confused < stickers * 3 / 4, confused + " of " + stickers);
+        }
+    }
+
+    @Nested
+    @DisplayName("Scanning")
+    class Scanning {
+        @Test
+        @DisplayName("Clean frames complete the right cube")
+        void testClean() {
+            SyntheticFrames generator = new SyntheticFrames(new Random(25));
+            for (int i = 0; i < 5; i++) {
+                Scan scan = scan(generator, 2000);
+                assertTrue(scan.correct, "Cube " + i);
+                assertEquals(0, scan.rescans);
+                // Every face is shown within the first couple of hundred frames
+                assertTrue(scan.frames < 300, scan.frames + " frames");
+                generator.newCube();
+            }
+        }
+
+        @Test
+        @DisplayName("Noisy frames still complete most cubes")
+        void testNoisy() {
+            SyntheticFrames generator = new SyntheticFrames(new Random(26));
+            generator.setBoxJitter(0.05);
+            generator.setConfusion(0.05);
+            generator.setDropRate(0.05);
+            generator.setFalsePositives(1);
+            int cubes = 10;
+            int correct = 0;
+            int frames = 0;
+            for (int i = 0; i < cubes; i++) {
+                Scan scan = scan(generator, 3000);
+                if (scan.correct)
+                    correct++;
+                frames += scan.frames;
+                generator.newCube();
+            }
+            assertTrue(correct >= cubes * 8 / 10, correct + " of " + cubes);
+            // Noise slows scanning down, but not by much
+            assertTrue(frames / cubes < 500, frames / cubes + " frames each");
+        }
+    }
+}
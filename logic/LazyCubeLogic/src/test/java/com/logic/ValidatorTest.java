@@ -7,6 +7,7 @@ import org.junit.jupiter.api.Test;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -535,4 +536,72 @@ class ValidatorTest {
             }
 
         }
+    
+    @Nested
+    @DisplayName("Packed facelet tests")
+    class Packed {
+        /**
+         * Checks corners for duplicates by comparing every ordering of their
+         * colours
+         */
+        private boolean duplicateCornersByScan(byte[] f) {
+            int[][] c = new int[8][];
+            for (int i = 0; i < 8; i++) {
+                c[i] = new int[]{f[CubeValidator.CORNERS[i]], f[CubeValidator.OTHER_CORNERS[i][0]],
+                        f[CubeValidator.OTHER_CORNERS[i][1]]};
+            }
+            int[][] orders = {{0,1,2}, {0,2,1}, {1,0,2}, {1,2,0}, {2,0,1}, {2,1,0}};
+            for (int i = 0; i < 7; i++) {
+                if (c[i][0] == 6 || c[i][1] == 6 || c[i][2] == 6)
+                    continue;
+                for (int j = i + 1; j < 8; j++) {
+                    for (int[] o : orders) {
+                        if (c[i][0] == c[j][o[0]] && c[i][1] == c[j][o[1]] && c[i][2] == c[j][o[2]])
+                            return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Test
+        @DisplayName("Colour counts up to and above 9")
+        void testCounts() {
+            byte[] facelets = new byte[54];
+            Arrays.fill(facelets, (byte) 6);
+            for (int i = 0; i < 9; i++)
+                facelets[i] = 5;
+            assertTrue(FaceletValidator.countsAreValid(facelets));
+            facelets[9] = 5;
+            assertFalse(FaceletValidator.countsAreValid(facelets));
+            // Unknown squares can appear any number of times
+            Arrays.fill(facelets, (byte) 6);
+            assertTrue(FaceletValidator.countsAreValid(facelets));
+        }
+
+        @Test
+        @DisplayName("Duplicate corners match comparing every colour order")
+        void testDuplicateCorners() {
+            Random random = new Random(5);
+            byte[] facelets = new byte[54];
+            for (int t = 0; t < 20000; t++) {
+                // Use few colours, so duplicates are common
+                for (int i = 0; i < 54; i++)
+                    facelets[i] = (byte) (random.nextInt(8) == 0 ? 6 : random.nextInt(3));
+                assertEquals(duplicateCornersByScan(facelets), FaceletValidator.duplicateCorners(facelets));
+            }
+        }
+
+        @Test
+        @DisplayName("Only edges between the given faces are checked")
+        void testEdgeFaceMask() {
+            byte[] facelets = new byte[54];
+            Arrays.fill(facelets, (byte) 6);
+            // Orange and red on the edge between the orange and white faces
+            facelets[1] = 0;
+            facelets[39] = 2;
+            assertFalse(FaceletValidator.edgesValid(facelets, FaceletValidator.faceMask(new int[]{0, 4})));
+            assertTrue(FaceletValidator.edgesValid(facelets, FaceletValidator.faceMask(new int[]{0, 1})));
+        }
     }
+}